@@ -0,0 +1,208 @@
+package edu.berean.robotics.control;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The LoopScheduler runs a loop at a fixed rate.  Each call to waitForTick() waits until the
+ * next tick's deadline.  Deadlines are kept on the DoppleClock and advance by exactly one
+ * period per tick, so time spent in the loop body does not make the rate drift.  On a virtual
+ * clock the wait simply moves the clock to the deadline.
+ *
+ * Thread.sleep() on Android can wake up a millisecond or two late, so the scheduler sleeps
+ * until shortly before the deadline and then spins (yielding) for the rest.
+ *
+ * When the loop body runs past the next deadline (an overrun) the scheduler either skips the
+ * ticks that were missed and lines up with the next one, or catches up by running the missed
+ * ticks back to back.  Either way the overrun is counted once; the catch-up ticks, which start
+ * already late, are not counted again.  The scheduler also keeps the mean, standard deviation
+ * and worst case of the measured period so that the rate can be checked.
+ */
+public class LoopScheduler {
+
+    public enum OverrunPolicy {
+        /** drop the missed ticks and wait for the next deadline on the original schedule */
+        SKIP,
+        /** run the missed ticks back to back until the loop is back on schedule */
+        CATCH_UP
+    }
+
+    public static final long DEFAULT_PERIOD_MS = 20;
+    public static final long DEFAULT_SPIN_NANOS = 2000000L;     // spin for the last 2 ms
+    public static final int MAX_CATCH_UP_TICKS = 5;             // beyond this we resynchronize
+
+    private long periodNanos;
+    private OverrunPolicy overrunPolicy;
+    private long spinNanos = DEFAULT_SPIN_NANOS;
+
+    private long nextDeadline = 0;
+    private long lastTick = 0;
+
+    private long tickCount = 0;
+    private long overrunCount = 0;
+    private long skippedTicks = 0;
+
+    // running statistics of the measured period (Welford's method)
+    private long intervalCount = 0;
+    private double meanNanos = 0;
+    private double m2 = 0;
+    private long maxJitterNanos = 0;
+
+    /**
+     * Creates a scheduler that skips missed ticks.
+     * @param periodMs the loop period
+     */
+    public LoopScheduler(long periodMs){
+        this(periodMs, OverrunPolicy.SKIP);
+    }
+
+    /**
+     * @param periodMs the loop period
+     * @param overrunPolicy what to do when the loop body runs past the next deadline
+     */
+    public LoopScheduler(long periodMs, OverrunPolicy overrunPolicy){
+        this.periodNanos = periodMs * 1000000L;
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * Changes the period.  The new period takes effect from the next tick.
+     */
+    public void setPeriodMs(long periodMs){
+        this.periodNanos = periodMs * 1000000L;
+    }
+
+    public long getPeriodMs(){
+        return periodNanos / 1000000L;
+    }
+
+    public void setOverrunPolicy(OverrunPolicy overrunPolicy){
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * How long before a deadline to stop sleeping and start spinning.  More spin is more accurate
+     * and costs more CPU; zero turns spinning off.
+     */
+    public void setSpinNanos(long spinNanos){
+        this.spinNanos = spinNanos;
+    }
+
+    /**
+     * Starts the schedule over from now.  The first tick is one period from now.  Call this
+     * before a loop that should start on a fresh schedule; the statistics are kept.
+     */
+    public void start(){
+        lastTick = DoppleClock.current().nanoTime();
+        nextDeadline = lastTick + periodNanos;
+    }
+
+    /**
+     * Waits for the next tick.  The first call (without start()) starts the schedule and waits
+     * one full period.
+     *
+     * @throws InterruptedException
+     */
+    public void waitForTick() throws InterruptedException {
+
+        if (nextDeadline == 0) start();
+
+        DoppleClock clock = DoppleClock.current();
+        long now = clock.nanoTime();
+        if (now > nextDeadline) {
+            // a catch-up tick starts after its deadline already; only count the body that had
+            // time to make its deadline and missed it
+            if (lastTick < nextDeadline) overrunCount++;
+            long behind = now - nextDeadline;
+            if (overrunPolicy == OverrunPolicy.SKIP || behind > MAX_CATCH_UP_TICKS * periodNanos) {
+                long missed = behind / periodNanos + 1;
+                skippedTicks += missed;
+                nextDeadline += missed * periodNanos;
+            }
+        }
+
+        // only the real clock is late waking up; a virtual clock sleeps right to the deadline
+        long spin = clock == DoppleClock.SYSTEM ? spinNanos : 0;
+        long sleepNanos = nextDeadline - now - spin;
+        if (sleepNanos > 0) {
+            clock.sleepNanos(sleepNanos);
+        }
+        while (clock.nanoTime() < nextDeadline) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            Thread.yield();
+        }
+
+        long tick = clock.nanoTime();
+        recordInterval(tick - lastTick);
+        lastTick = tick;
+        nextDeadline += periodNanos;
+        tickCount++;
+    }
+
+    private void recordInterval(long intervalNanos){
+        intervalCount++;
+        double delta = intervalNanos - meanNanos;
+        meanNanos += delta / intervalCount;
+        m2 += delta * (intervalNanos - meanNanos);
+        long jitter = Math.abs(intervalNanos - periodNanos);
+        if (jitter > maxJitterNanos) maxJitterNanos = jitter;
+    }
+
+    /**
+     * Forget the statistics (but keep the schedule).
+     */
+    public void resetStatistics(){
+        tickCount = 0;
+        overrunCount = 0;
+        skippedTicks = 0;
+        intervalCount = 0;
+        meanNanos = 0;
+        m2 = 0;
+        maxJitterNanos = 0;
+    }
+
+    public long getTickCount(){
+        return tickCount;
+    }
+
+    /**
+     * @return how many times the loop body ran past the next deadline
+     */
+    public long getOverrunCount(){
+        return overrunCount;
+    }
+
+    /**
+     * @return how many ticks were dropped because of overruns
+     */
+    public long getSkippedTicks(){
+        return skippedTicks;
+    }
+
+    /**
+     * @return the mean measured period in milliseconds
+     */
+    public double getMeanPeriodMs(){
+        return meanNanos / 1e6;
+    }
+
+    /**
+     * @return the standard deviation of the measured period in milliseconds
+     */
+    public double getJitterMs(){
+        if (intervalCount < 2) return 0;
+        return Math.sqrt(m2 / (intervalCount - 1)) / 1e6;
+    }
+
+    /**
+     * @return the largest difference between a measured period and the requested period, in milliseconds
+     */
+    public double getMaxJitterMs(){
+        return maxJitterNanos / 1e6;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%d ticks at %d ms: mean %.3f ms, jitter %.3f ms, max jitter %.3f ms, %d overruns, %d skipped",
+                tickCount, getPeriodMs(), getMeanPeriodMs(), getJitterMs(), getMaxJitterMs(), overrunCount, skippedTicks);
+    }
+}
@@ -0,0 +1,36 @@
+package edu.berean.robotics.control;
+
+/**
+ * The MotorMoveResult describes how a move awaited by the MotorMover finished:
+ * whether the motors arrived, how long it took and how far off the worst motor was.
+ */
+public class MotorMoveResult {
+
+    /** STOPPED: a motor stopped short of its target (a stall or a mode change) */
+    public enum Status { COMPLETED, STOPPED, TIMED_OUT, ABORTED }
+
+    public final Status status;
+    public final long elapsedMs;
+    public final int polls;
+    public final int maxError;
+
+    public MotorMoveResult(Status status, long elapsedMs, int polls, int maxError){
+        this.status = status;
+        this.elapsedMs = elapsedMs;
+        this.polls = polls;
+        this.maxError = maxError;
+    }
+
+    /**
+     * Returns true if all of the motors reached their targets.
+     * @return
+     */
+    public boolean completed(){
+        return status == Status.COMPLETED;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("move %s in %d ms (%d polls, max error %d)", status, elapsedMs, polls, maxError);
+    }
+}
@@ -0,0 +1,136 @@
+package edu.berean.robotics.control;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The MotorMover issues RUN_TO_POSITION moves and waits for them to finish without spinning
+ * on isBusy() as fast as the CPU allows.  Motors are polled at a fixed rate until every motor
+ * is within tolerance of its target or reports it is no longer busy, the timeout expires, or
+ * the opmode is stopped.  A motor that is no longer busy but isn't within tolerance (it stalled,
+ * or its mode was changed) stopped short, and the move is reported STOPPED rather than
+ * COMPLETED.
+ *
+ * Several motors can be started and then awaited together, so a move that uses more than one
+ * motor finishes when the slowest motor arrives.
+ *
+ * It is expected that this is used from a LinearOpMode, as it sleeps between polls (on the
+ * DoppleClock, so that it runs instantly on a virtual clock) and stops when the opmode does.
+ */
+public class MotorMover {
+
+    private static String LOG_TAG = "MotorMover - ";
+
+    public static final long DEFAULT_POLL_PERIOD_MS = 20;
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    public static final int DEFAULT_TOLERANCE = 10;   // encoder counts
+
+    private LinearOpMode opMode;
+    private long pollPeriodMs;
+    private long timeoutMs;
+    private int tolerance;
+
+    /**
+     * Creates a MotorMover with the default poll rate, timeout and tolerance.
+     * @param opMode the running opmode, used to check it is still active
+     */
+    public MotorMover(LinearOpMode opMode){
+        this(opMode, DEFAULT_POLL_PERIOD_MS, DEFAULT_TIMEOUT_MS, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Creates a MotorMover.
+     *
+     * @param opMode the running opmode, used to check it is still active
+     * @param pollPeriodMs how often to check the motors
+     * @param timeoutMs how long to wait for a move before giving up
+     * @param tolerance how close (in encoder counts) a motor must be to its target to count as arrived
+     */
+    public MotorMover(LinearOpMode opMode, long pollPeriodMs, long timeoutMs, int tolerance){
+        this.opMode = opMode;
+        this.pollPeriodMs = pollPeriodMs;
+        this.timeoutMs = timeoutMs;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Sends a motor toward a target position using RUN_TO_POSITION.  This does not wait;
+     * call await() with this and any other motors started as part of the same move.
+     *
+     * @param motor the motor to move
+     * @param targetPosition the encoder position to move to
+     * @param power the power to move at
+     */
+    public void startMove(DcMotor motor, int targetPosition, double power){
+        motor.setTargetPosition(targetPosition);
+        motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        motor.setPower(power);
+    }
+
+    /**
+     * Moves a single motor to a target position and waits for it to get there.
+     *
+     * @param motor the motor to move
+     * @param targetPosition the encoder position to move to
+     * @param power the power to move at
+     * @return the result of the move
+     */
+    public MotorMoveResult move(DcMotor motor, int targetPosition, double power){
+        startMove(motor, targetPosition, power);
+        return await(motor);
+    }
+
+    /**
+     * Waits for all of the motors to reach their target positions.
+     *
+     * @param motors the motors that are part of this move
+     * @return the result of the move
+     */
+    public MotorMoveResult await(DcMotor... motors){
+
+        long startTime = DoppleClock.current().nanoTime();
+        long deadline = startTime + timeoutMs * 1000000L;
+        int polls = 0;
+        int maxError = 0;
+
+        while (opMode.opModeIsActive()) {
+
+            polls++;
+            maxError = 0;
+            boolean allDone = true;
+            boolean stoppedShort = false;
+
+            for (DcMotor motor : motors) {
+                int error = Math.abs(motor.getTargetPosition() - motor.getCurrentPosition());
+                maxError = Math.max(maxError, error);
+                if (error > tolerance) {
+                    if (motor.isBusy()) allDone = false;
+                    else stoppedShort = true;
+                }
+            }
+
+            long now = DoppleClock.current().nanoTime();
+
+            if (allDone) {
+                return finish(stoppedShort ? MotorMoveResult.Status.STOPPED : MotorMoveResult.Status.COMPLETED,
+                        startTime, now, polls, maxError);
+            }
+            if (now >= deadline) {
+                return finish(MotorMoveResult.Status.TIMED_OUT, startTime, now, polls, maxError);
+            }
+
+            DoppleClock.current().sleep(pollPeriodMs);
+        }
+
+        return finish(MotorMoveResult.Status.ABORTED, startTime, DoppleClock.current().nanoTime(), polls, maxError);
+    }
+
+    private MotorMoveResult finish(MotorMoveResult.Status status, long startTime, long endTime, int polls, int maxError){
+        MotorMoveResult result = new MotorMoveResult(status, (endTime - startTime) / 1000000L, polls, maxError);
+        RobotLog.d(LOG_TAG + result.toString());
+        return result;
+    }
+}
@@ -0,0 +1,237 @@
+package edu.berean.robotics.control;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.Range;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The PathExecutor drives a TankDrive robot along a series of PathSegments using the drive
+ * encoders.  Each segment gets a trapezoidal velocity profile and the executor follows the
+ * profile at a fixed control rate: the motors get a feed forward power for the profile velocity
+ * plus a correction for how far each side is from where the profile says it should be.
+ *
+ * Segments that keep the wheels turning the same way (drive forward then drive forward again)
+ * are run back to back without slowing down in between.  A segment that changes direction
+ * (a turn after a drive) slows to a stop first, as it has to.
+ *
+ * It is expected that this is used from a LinearOpMode.  Control updates are paced by a
+ * LoopScheduler, and its timing statistics are logged at the end of each path.
+ */
+public class PathExecutor {
+
+    private static String LOG_TAG = "PathExecutor - ";
+
+    public static final long DEFAULT_CONTROL_PERIOD_MS = 20;
+    public static final double DEFAULT_POSITION_GAIN = 0.1;     // power per inch of error
+    public static final double SETTLE_TOLERANCE_INCHES = 0.25;
+    public static final long SETTLE_TIMEOUT_MS = 500;
+
+    private LinearOpMode opMode;
+    private TankDrive drive;
+    private double maxVelocity;
+    private double acceleration;
+    private LoopScheduler ticker = new LoopScheduler(DEFAULT_CONTROL_PERIOD_MS);
+    private double positionGain = DEFAULT_POSITION_GAIN;
+
+    /**
+     * Creates a PathExecutor.
+     *
+     * @param opMode the running opmode
+     * @param drive the robot's drive train
+     * @param maxVelocity the fastest the robot should drive, in inches per second
+     * @param acceleration how quickly the robot should speed up and slow down, in inches per second per second
+     */
+    public PathExecutor(LinearOpMode opMode, TankDrive drive, double maxVelocity, double acceleration){
+        this.opMode = opMode;
+        this.drive = drive;
+        this.maxVelocity = maxVelocity;
+        this.acceleration = acceleration;
+    }
+
+    public void setControlPeriod(long controlPeriodMs){
+        ticker.setPeriodMs(controlPeriodMs);
+    }
+
+    public void setPositionGain(double positionGain){
+        this.positionGain = positionGain;
+    }
+
+    /**
+     * Drive the segments in order.  This returns when the path is complete or the opmode stops.
+     *
+     * @param segments the path to drive
+     * @return true if the whole path was driven
+     */
+    public boolean run(PathSegment... segments){
+
+        int segmentCount = segments.length;
+        if (segmentCount == 0) return true;
+
+        TrapezoidalProfile[] profiles = buildProfiles(segments);
+
+        DcMotor[] leftMotors = drive.getLeftDriveMotors();
+        DcMotor[] rightMotors = drive.getRightDriveMotors();
+        setMode(leftMotors, DcMotor.RunMode.RUN_USING_ENCODER);
+        setMode(rightMotors, DcMotor.RunMode.RUN_USING_ENCODER);
+
+        double countsPerInch = drive.getDriveCountsPerInch();
+        double feedForward = countsPerInch / drive.getMaxDriveCountsPerSecond();
+        double leftStart = averagePosition(leftMotors);
+        double rightStart = averagePosition(rightMotors);
+
+        // distance covered by segments that are already finished
+        double leftDone = 0;
+        double rightDone = 0;
+
+        long pathStart = DoppleClock.current().nanoTime();
+        long segmentStart = pathStart;
+        int current = 0;
+        ticker.resetStatistics();
+        ticker.start();
+
+        RobotLog.d(LOG_TAG + String.format("running %d segments", segmentCount));
+
+        while (opMode.opModeIsActive()) {
+
+            long now = DoppleClock.current().nanoTime();
+            double t = (now - segmentStart) / 1e9;
+
+            // move on to the next segment(s) once the profile time has run out
+            while (current < segmentCount && t >= profiles[current].getDuration()) {
+                long duration = (long) (profiles[current].getDuration() * 1e9);
+                leftDone += segments[current].leftInches;
+                rightDone += segments[current].rightInches;
+                segmentStart += duration;
+                t -= duration / 1e9;
+                current++;
+            }
+            if (current >= segmentCount) break;
+
+            PathSegment segment = segments[current];
+            TrapezoidalProfile profile = profiles[current];
+            double length = segment.getLength();
+            double fraction = profile.getPosition(t) / length;
+            double velocity = profile.getVelocity(t) / length;
+
+            double leftError = leftDone + segment.leftInches * fraction
+                    - (averagePosition(leftMotors) - leftStart) / countsPerInch;
+            double rightError = rightDone + segment.rightInches * fraction
+                    - (averagePosition(rightMotors) - rightStart) / countsPerInch;
+
+            setPower(leftMotors, segment.leftInches * velocity * feedForward + positionGain * leftError);
+            setPower(rightMotors, segment.rightInches * velocity * feedForward + positionGain * rightError);
+
+            if (!waitForTick()) break;
+        }
+
+        boolean completed = current >= segmentCount;
+        if (completed) {
+            settle(leftMotors, rightMotors, leftStart + leftDone * countsPerInch,
+                    rightStart + rightDone * countsPerInch, countsPerInch);
+        }
+
+        setPower(leftMotors, 0);
+        setPower(rightMotors, 0);
+
+        RobotLog.d(LOG_TAG + String.format("path %s in %d ms", completed ? "completed" : "stopped",
+                (DoppleClock.current().nanoTime() - pathStart) / 1000000L));
+        RobotLog.d(LOG_TAG + "control loop: " + ticker.toString());
+
+        return completed;
+    }
+
+    /**
+     * Work out the velocity at each boundary between segments, then build the profile for each
+     * segment.  A boundary can only be passed at speed if the segments blend, and the speed is
+     * limited by how quickly the robot can slow down for the next stop (backward pass) and how
+     * quickly it can get up to speed from the last one (forward pass).
+     */
+    private TrapezoidalProfile[] buildProfiles(PathSegment[] segments){
+
+        int segmentCount = segments.length;
+        double[] boundaryVelocity = new double[segmentCount + 1];
+
+        for (int i = 1; i < segmentCount; i++) {
+            boundaryVelocity[i] = segments[i - 1].canBlendInto(segments[i]) ? maxVelocity : 0;
+        }
+
+        for (int i = segmentCount - 1; i >= 0; i--) {
+            boundaryVelocity[i] = Math.min(boundaryVelocity[i],
+                    TrapezoidalProfile.reachableVelocity(boundaryVelocity[i + 1], segments[i].getLength(), acceleration));
+        }
+
+        for (int i = 0; i < segmentCount; i++) {
+            boundaryVelocity[i + 1] = Math.min(boundaryVelocity[i + 1],
+                    TrapezoidalProfile.reachableVelocity(boundaryVelocity[i], segments[i].getLength(), acceleration));
+        }
+
+        TrapezoidalProfile[] profiles = new TrapezoidalProfile[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            profiles[i] = new TrapezoidalProfile(segments[i].getLength(), boundaryVelocity[i],
+                    boundaryVelocity[i + 1], maxVelocity, acceleration);
+            RobotLog.d(LOG_TAG + String.format("segment %d %s: %.2f s", i, segments[i].toString(), profiles[i].getDuration()));
+        }
+
+        return profiles;
+    }
+
+    /**
+     * Hold the final position for a moment so that the wheels catch up with the end of the
+     * profile rather than coasting short of it.
+     */
+    private void settle(DcMotor[] leftMotors, DcMotor[] rightMotors, double leftTarget, double rightTarget,
+                        double countsPerInch){
+
+        long deadline = DoppleClock.current().nanoTime() + SETTLE_TIMEOUT_MS * 1000000L;
+
+        while (opMode.opModeIsActive() && DoppleClock.current().nanoTime() < deadline) {
+            double leftError = (leftTarget - averagePosition(leftMotors)) / countsPerInch;
+            double rightError = (rightTarget - averagePosition(rightMotors)) / countsPerInch;
+
+            if (Math.abs(leftError) < SETTLE_TOLERANCE_INCHES && Math.abs(rightError) < SETTLE_TOLERANCE_INCHES)
+                break;
+
+            setPower(leftMotors, positionGain * leftError);
+            setPower(rightMotors, positionGain * rightError);
+
+            if (!waitForTick()) break;
+        }
+    }
+
+    /**
+     * @return false if the opmode thread was interrupted (the opmode is being stopped)
+     */
+    private boolean waitForTick(){
+        try {
+            ticker.waitForTick();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static double averagePosition(DcMotor[] motors){
+        double total = 0;
+        for (DcMotor motor : motors) {
+            total += motor.getCurrentPosition();
+        }
+        return total / motors.length;
+    }
+
+    private static void setPower(DcMotor[] motors, double power){
+        power = Range.clip(power, -1.0, 1.0);
+        for (DcMotor motor : motors) {
+            motor.setPower(power);
+        }
+    }
+
+    private static void setMode(DcMotor[] motors, DcMotor.RunMode mode){
+        for (DcMotor motor : motors) {
+            motor.setMode(mode);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package edu.berean.robotics.control;
+
+/**
+ * A PathSegment is one leg of an autonomous path for a tank drive robot: either a straight
+ * drive or a turn in place.  Segments are expressed as the distance each side of the robot
+ * needs to travel, the same way the classic encoderDrive(speed, leftInches, rightInches) works.
+ */
+public class PathSegment {
+
+    public final double leftInches;
+    public final double rightInches;
+
+    /**
+     * Creates a segment where each side travels its own distance.
+     * @param leftInches distance for the left wheels (negative is backward)
+     * @param rightInches distance for the right wheels (negative is backward)
+     */
+    public PathSegment(double leftInches, double rightInches){
+        this.leftInches = leftInches;
+        this.rightInches = rightInches;
+    }
+
+    /**
+     * A straight drive.
+     * @param inches distance to drive, negative drives backward
+     */
+    public static PathSegment drive(double inches){
+        return new PathSegment(inches, inches);
+    }
+
+    /**
+     * A turn in place.
+     * @param degrees angle to turn, positive turns right (clockwise)
+     * @param trackWidthInches the distance between the left and right wheels
+     */
+    public static PathSegment turn(double degrees, double trackWidthInches){
+        double arc = Math.toRadians(degrees) * trackWidthInches / 2;
+        return new PathSegment(arc, -arc);
+    }
+
+    /**
+     * @return the distance the busiest side travels; this is the distance the profile covers
+     */
+    public double getLength(){
+        return Math.max(Math.abs(leftInches), Math.abs(rightInches));
+    }
+
+    /**
+     * Two segments can be run into each other without stopping if the wheels keep turning
+     * the same way at the same ratio, i.e. drive forward followed by drive forward.
+     */
+    public boolean canBlendInto(PathSegment next){
+        double length = getLength();
+        double nextLength = next.getLength();
+        if (length == 0 || nextLength == 0) return false;
+        return Math.abs(leftInches / length - next.leftInches / nextLength) < 1e-6 &&
+                Math.abs(rightInches / length - next.rightInches / nextLength) < 1e-6;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("[left %.1f in, right %.1f in]", leftInches, rightInches);
+    }
+}
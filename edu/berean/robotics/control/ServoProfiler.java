@@ -0,0 +1,139 @@
+package edu.berean.robotics.control;
+
+import com.qualcomm.robotcore.hardware.Servo;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The ServoProfiler moves a servo toward a target position at a fixed rate (in position units
+ * per second) rather than by a fixed amount per loop.  The position is computed from the elapsed
+ * monotonic time since the target was set, so the servo moves at the same speed no matter how
+ * fast the opmode loop is running.
+ *
+ * The servo is only written when the position, quantized to the servo's resolution, actually
+ * changes.  A servo that is sitting still (or moving slowly) is not sent the same value every loop.
+ *
+ * To use, create a profiler for a servo, call setTarget() when the servo should move
+ * and call update() once per loop.
+ */
+public class ServoProfiler {
+
+    // the MR servo controller takes an 8 bit position
+    public static final double DEFAULT_RESOLUTION = 1.0 / 255.0;
+
+    private Servo servo;
+    private double unitsPerSecond;
+    private double resolution;
+
+    private double startPosition;
+    private double targetPosition;
+    private double currentPosition;
+    private long startTimeNanos;
+    private long lastWrittenStep = Long.MIN_VALUE;
+    private int writeCount = 0;
+
+    /**
+     * Creates a profiler using the default (8 bit) servo resolution.
+     *
+     * @param servo the servo to move
+     * @param initialPosition the position the servo was initialized to
+     * @param unitsPerSecond how fast to move, in servo position units per second
+     */
+    public ServoProfiler(Servo servo, double initialPosition, double unitsPerSecond){
+        this(servo, initialPosition, unitsPerSecond, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Creates a profiler.
+     *
+     * @param servo the servo to move
+     * @param initialPosition the position the servo was initialized to
+     * @param unitsPerSecond how fast to move, in servo position units per second
+     * @param resolution the smallest position change worth sending to the servo
+     */
+    public ServoProfiler(Servo servo, double initialPosition, double unitsPerSecond, double resolution){
+        this.servo = servo;
+        this.unitsPerSecond = unitsPerSecond;
+        this.resolution = resolution;
+        this.startPosition = initialPosition;
+        this.targetPosition = initialPosition;
+        this.currentPosition = initialPosition;
+        this.startTimeNanos = DoppleClock.current().nanoTime();
+        this.lastWrittenStep = step(initialPosition);
+    }
+
+    /**
+     * Start moving toward a new target from wherever the servo currently is.  Setting the
+     * same target again does not restart the move.
+     *
+     * @param target the position to move to
+     */
+    public void setTarget(double target){
+        if (target == targetPosition) return;
+        startPosition = currentPosition;
+        targetPosition = target;
+        startTimeNanos = DoppleClock.current().nanoTime();
+    }
+
+    /**
+     * Change the rate of movement.  A move in progress continues from the current position.
+     *
+     * @param unitsPerSecond how fast to move, in servo position units per second
+     */
+    public void setRate(double unitsPerSecond){
+        startPosition = currentPosition;
+        startTimeNanos = DoppleClock.current().nanoTime();
+        this.unitsPerSecond = unitsPerSecond;
+    }
+
+    /**
+     * Computes the position for the current time and writes it to the servo if the quantized
+     * position has changed since the last write.  Call this once per loop.
+     *
+     * @return true if the servo has reached its target
+     */
+    public boolean update(){
+        double distance = targetPosition - startPosition;
+        double travelled = unitsPerSecond * (DoppleClock.current().nanoTime() - startTimeNanos) / 1e9;
+
+        if (travelled >= Math.abs(distance)) {
+            currentPosition = targetPosition;
+        } else {
+            currentPosition = startPosition + Math.signum(distance) * travelled;
+        }
+
+        long currentStep = step(currentPosition);
+        if (currentStep != lastWrittenStep) {
+            servo.setPosition(currentPosition);
+            lastWrittenStep = currentStep;
+            writeCount++;
+        }
+
+        return isAtTarget();
+    }
+
+    public boolean isAtTarget(){
+        return currentPosition == targetPosition;
+    }
+
+    public double getPosition(){
+        return currentPosition;
+    }
+
+    public double getTarget(){
+        return targetPosition;
+    }
+
+    /**
+     * Returns the number of times the servo has actually been written.  Handy for checking
+     * how much bus traffic the profiler is saving.
+     * @return
+     */
+    public int getWriteCount(){
+        return writeCount;
+    }
+
+    private long step(double position){
+        return Math.round(position / resolution);
+    }
+}
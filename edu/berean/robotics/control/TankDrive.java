@@ -0,0 +1,37 @@
+package edu.berean.robotics.control;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * The TankDrive interface is implemented by robots that drive with a left and right set of
+ * wheels, each with encoders.  It gives drive-level code (such as the PathExecutor) what it
+ * needs to know about the drive train without knowing which robot it is running on.
+ */
+public interface TankDrive {
+
+    /**
+     * @return the motors driving the left side of the robot.  Positive power drives forward.
+     */
+    DcMotor[] getLeftDriveMotors();
+
+    /**
+     * @return the motors driving the right side of the robot.  Positive power drives forward.
+     */
+    DcMotor[] getRightDriveMotors();
+
+    /**
+     * @return the number of encoder counts for one inch of wheel travel
+     */
+    double getDriveCountsPerInch();
+
+    /**
+     * @return the distance between the left and right wheels, in inches
+     */
+    double getTrackWidthInches();
+
+    /**
+     * @return the encoder speed (counts per second) the drive motors run at with a power of 1.0
+     * in RUN_USING_ENCODER mode
+     */
+    double getMaxDriveCountsPerSecond();
+}
@@ -0,0 +1,124 @@
+package edu.berean.robotics.control;
+
+/**
+ * A TrapezoidalProfile describes how to cover a distance by accelerating at a constant rate,
+ * cruising at a maximum velocity and then decelerating at the same rate.  The start and end
+ * velocities do not have to be zero, which allows profiles to be chained together without
+ * stopping in between.
+ *
+ * If the distance is too short to reach the maximum velocity the cruise phase is dropped and
+ * the profile becomes a triangle.
+ *
+ * All values are in consistent units (for example inches, inches/sec and inches/sec/sec) and
+ * distance is always positive; the caller applies the direction.
+ */
+public class TrapezoidalProfile {
+
+    private double distance;
+    private double startVelocity;
+    private double endVelocity;
+    private double acceleration;
+
+    private double peakVelocity;
+    private double accelTime;
+    private double cruiseTime;
+    private double decelTime;
+    private double accelDistance;
+    private double cruiseDistance;
+
+    /**
+     * Creates a profile.  The end velocity must be reachable from the start velocity within the
+     * distance (see reachableVelocity()).
+     *
+     * @param distance the distance to cover
+     * @param startVelocity the velocity at the start of the profile
+     * @param endVelocity the velocity at the end of the profile
+     * @param maxVelocity the fastest the profile may go
+     * @param acceleration the rate to accelerate and decelerate at
+     */
+    public TrapezoidalProfile(double distance, double startVelocity, double endVelocity,
+                              double maxVelocity, double acceleration){
+
+        this.distance = Math.abs(distance);
+        this.startVelocity = startVelocity;
+        this.endVelocity = endVelocity;
+        this.acceleration = acceleration;
+
+        double accelNeeded = (maxVelocity * maxVelocity - startVelocity * startVelocity) / (2 * acceleration);
+        double decelNeeded = (maxVelocity * maxVelocity - endVelocity * endVelocity) / (2 * acceleration);
+
+        if (accelNeeded + decelNeeded <= this.distance) {
+            peakVelocity = maxVelocity;
+        } else {
+            peakVelocity = Math.sqrt((2 * acceleration * this.distance
+                    + startVelocity * startVelocity + endVelocity * endVelocity) / 2);
+            accelNeeded = (peakVelocity * peakVelocity - startVelocity * startVelocity) / (2 * acceleration);
+            decelNeeded = (peakVelocity * peakVelocity - endVelocity * endVelocity) / (2 * acceleration);
+        }
+
+        accelDistance = accelNeeded;
+        cruiseDistance = Math.max(0, this.distance - accelNeeded - decelNeeded);
+        accelTime = (peakVelocity - startVelocity) / acceleration;
+        cruiseTime = peakVelocity > 0 ? cruiseDistance / peakVelocity : 0;
+        decelTime = (peakVelocity - endVelocity) / acceleration;
+    }
+
+    /**
+     * The fastest velocity that can be reached (or the slowest that can be slowed to) from a
+     * velocity over a distance with the given acceleration.
+     */
+    public static double reachableVelocity(double fromVelocity, double distance, double acceleration){
+        return Math.sqrt(fromVelocity * fromVelocity + 2 * acceleration * Math.abs(distance));
+    }
+
+    /**
+     * @return the time (in seconds) it takes to run the whole profile
+     */
+    public double getDuration(){
+        return accelTime + cruiseTime + decelTime;
+    }
+
+    public double getDistance(){
+        return distance;
+    }
+
+    /**
+     * @param t time in seconds since the start of the profile
+     * @return the distance that should have been covered at time t
+     */
+    public double getPosition(double t){
+        if (t <= 0) return 0;
+        if (t < accelTime) {
+            return startVelocity * t + 0.5 * acceleration * t * t;
+        }
+        t -= accelTime;
+        if (t < cruiseTime) {
+            return accelDistance + peakVelocity * t;
+        }
+        t -= cruiseTime;
+        if (t < decelTime) {
+            return accelDistance + cruiseDistance + peakVelocity * t - 0.5 * acceleration * t * t;
+        }
+        return distance;
+    }
+
+    /**
+     * @param t time in seconds since the start of the profile
+     * @return the velocity the profile calls for at time t
+     */
+    public double getVelocity(double t){
+        if (t <= 0) return startVelocity;
+        if (t < accelTime) {
+            return startVelocity + acceleration * t;
+        }
+        t -= accelTime;
+        if (t < cruiseTime) {
+            return peakVelocity;
+        }
+        t -= cruiseTime;
+        if (t < decelTime) {
+            return peakVelocity - acceleration * t;
+        }
+        return endVelocity;
+    }
+}
@@ -2,17 +2,21 @@ package edu.berean.robotics.dopple;
 
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 import com.qualcomm.robotcore.hardware.DcMotor;
-import com.qualcomm.robotcore.hardware.DcMotorImpl;
+import com.qualcomm.robotcore.hardware.Gamepad;
 import com.qualcomm.robotcore.hardware.HardwareDevice;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.hardware.ServoImpl;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Set;
+
+import edu.berean.robotics.dopple.util.DoppleBotHistoryHelper;
+import edu.berean.robotics.input.InputTrack;
+import edu.berean.robotics.sensors.HardwareReadCache;
 
 
 /**
@@ -36,7 +40,18 @@ public abstract class DoppleBot {
 
     private boolean robotRecordingIsOn = false;
     private DoppleBotRecorder historyRecorder;
-    private ArrayList initialStateValues = new ArrayList(Arrays.asList(0));
+    private InputTrack inputTrack;
+    private long recordingStartMs;
+    private FlightRecorder flightRecorder;
+    private long idleResidualMs = DoppleBotRecorder.DEFAULT_IDLE_RESIDUAL_MS;
+    private ArrayList<MeasuredChannel> measuredChannels = new ArrayList<MeasuredChannel>();
+    private HashMap<Integer,ArrayList<DoppleEventListener>> eventListeners = new HashMap<Integer,ArrayList<DoppleEventListener>>();
+    private HashMap<String,DoppleComponentAdapter> componentAdapters = new HashMap<String,DoppleComponentAdapter>();
+    private HashMap<String,String> componentTracks = new HashMap<String,String>();
+    private HashMap<String,Double> initialStateValues = new HashMap<String,Double>();
+    private HardwareReadCache readCache = new HardwareReadCache();
+    private HashMap<String,HardwareDevice> initializedDevices = new HashMap<String,HardwareDevice>();
+    private String initReport = "";
 
 
 
@@ -73,6 +88,27 @@ public abstract class DoppleBot {
         return robotComponents;
     }
 
+    /**
+     * Start a new loop in the read cache.  Call this at the top of each loop, then read motor
+     * powers, encoders, servo positions and sensors through reads() for the rest of the loop;
+     * each is read from the hardware the first time it is asked for.  Write a device the loop
+     * has read through reads().setPower() or reads().setPosition(), so later reads see the write.
+     * The measured channels are sampled through the cache too; the recorder and the flight
+     * recorder read the components from the devices, so they record what was last commanded.
+     */
+    public void refreshReads(){
+        readCache.refresh();
+    }
+
+    /**
+     * Get the per-loop read cache.  Every recorded component is in the cache; subclasses add
+     * any sensors they want cached as well.
+     * @return
+     */
+    public HardwareReadCache reads(){
+        return readCache;
+    }
+
     /**
      * Instruct the robot to set things up for recording.  This doesn't actually record any
      * data, but ensures that the infrastructure is readied.  use the robotRecordingIsOn() method
@@ -82,7 +118,11 @@ public abstract class DoppleBot {
 
         RobotLog.i(LOG_TAG + "start recording");
         robotRecordingIsOn = true;
-        historyRecorder = new DoppleBotRecorder(robotComponents);
+        historyRecorder = new DoppleBotRecorder(robotComponents, componentTracks, readCache);
+        historyRecorder.setIdleResidualMs(idleResidualMs);
+        for (MeasuredChannel channel : measuredChannels) historyRecorder.addMeasuredChannel(channel);
+        inputTrack = new InputTrack();
+        recordingStartMs = DoppleClock.current().currentTimeMillis();
 
     }
     /**
@@ -92,13 +132,73 @@ public abstract class DoppleBot {
     public void updateRecording(){
 
         if (robotRecordingIsOn) {
-            RobotLog.i(LOG_TAG + "update recording");
             historyRecorder.update();
         } else {
             RobotLog.w(LOG_TAG + "can't update recording: recording is OFF!");
         }
     }
 
+    /**
+     * Record what the drivers are doing along with the robot's state.  Call this instead of
+     * updateRecording() from a teleop loop to also keep an input track: the state of both
+     * gamepads on every loop, written next to the recording so the session can be replayed
+     * through the opmode off the robot.
+     */
+    public void updateRecording(Gamepad gamepad1, Gamepad gamepad2){
+
+        if (robotRecordingIsOn) {
+            inputTrack.add(DoppleClock.current().currentTimeMillis() - recordingStartMs, gamepad1, gamepad2);
+        }
+        updateRecording();
+    }
+
+    /**
+     * Set how much of the idle time before the first change and after the last change of a
+     * recording is kept (see DoppleBotRecorder), or DoppleBotRecorder.KEEP_IDLE to keep all of
+     * it.  Takes effect at the next startRecording().
+     */
+    public void setIdleResidualMs(long residualMs){
+        idleResidualMs = residualMs;
+    }
+
+    /**
+     * Measure something in every recording, e.g. an encoder or the battery voltage, alongside
+     * the recorded commands.  This is expected to be called from initializeRobot().
+     */
+    public void addMeasuredChannel(MeasuredChannel... channels){
+        for (MeasuredChannel channel : channels) measuredChannels.add(channel);
+    }
+
+    /**
+     * Measure the battery voltage in every recording, from the first voltage sensor in the
+     * hardware map.  A robot without one records no battery channel.
+     */
+    protected void measureBattery(HardwareMap hwMap, long periodMs){
+        for (VoltageSensor sensor : hwMap.voltageSensor) {
+            addMeasuredChannel(MeasuredChannel.batteryVoltage("battery", sensor, periodMs));
+            return;
+        }
+        RobotLog.w(LOG_TAG + "no voltage sensor; the battery is not measured");
+    }
+
+    /**
+     * Mark an event in the recording, e.g. "catapult fired".  Events are stored with the
+     * recording and played back to the listeners added with addEventListener().  This is cheap
+     * and does nothing when the robot isn't recording, so it can be called from any opmode.
+     *
+     * @param code the event's code; what the codes mean is up to the opmodes
+     */
+    public void mark(int code){
+        mark(code, 0);
+    }
+
+    /**
+     * Mark an event with a value, e.g. the color a beacon was pressed for.
+     */
+    public void mark(int code, double payload){
+        if (robotRecordingIsOn) historyRecorder.mark(code, payload);
+    }
+
     /**
      * Instruct the robot to stop recording.  This will result in the robot writing the output
      * of the robot's history to a file.  A new file is created each time the recording is
@@ -109,12 +209,32 @@ public abstract class DoppleBot {
         RobotLog.i(LOG_TAG + "stop recording");
 
         if (robotRecordingIsOn){
-            historyRecorder.writeHistory();
+            historyRecorder.finish();
+            File historyFile = historyRecorder.writeHistory();
+            // the input track is kept on the trimmed recording's timeline, so a replay of the
+            // session lines up with the playback
+            inputTrack.clampTimes(historyRecorder.getTrimStartMs(), historyRecorder.getTrimEndMs());
+            if (historyFile != null && inputTrack.size() > 0) writeInputTrack(historyFile);
         } else {
             RobotLog.w(LOG_TAG + "can't stop recording: recording is OFF!");
         }
     }
 
+    private void writeInputTrack(File historyFile){
+
+        File inputFile = DoppleBotHistoryHelper.getInputTrackFile(historyFile);
+        File inputDirectory = inputFile.getParentFile();
+        if (!inputDirectory.isDirectory() && !inputDirectory.mkdirs()) {
+            RobotLog.w(LOG_TAG + inputDirectory.getAbsolutePath() + " could not be created; input not saved");
+            return;
+        }
+        try {
+            inputTrack.write(inputFile);
+        } catch (IOException e) {
+            RobotLog.e(LOG_TAG + "error writing input track: " + e.getMessage());
+        }
+    }
+
     /**
      * Returns a boolean of true if the robot is currently recording history and false if it is not
      * recording history.
@@ -124,6 +244,55 @@ public abstract class DoppleBot {
         return robotRecordingIsOn;
     }
 
+    /**
+     * Keep the last few seconds of the robot's state in a flight recorder, whether or not the
+     * robot is recording.  Call after initializeRobot(), then updateFlightRecorder() every loop.
+     */
+    public void startFlightRecorder(){
+        startFlightRecorder(FlightRecorder.DEFAULT_SECONDS);
+    }
+
+    public void startFlightRecorder(double seconds){
+        flightRecorder = new FlightRecorder(robotComponents, seconds);
+    }
+
+    /**
+     * Keep the robot's current state in the flight recorder.  This is cheap enough for every loop.
+     */
+    public void updateFlightRecorder(){
+        if (flightRecorder != null) flightRecorder.update();
+    }
+
+    /**
+     * Write the flight recorder's last few seconds to ROBO_DATA/flight/.
+     *
+     * @param reason why, e.g. "request" or "exception"; it goes in the file name
+     * @return the file written, or null if there is no flight recorder or it could not be written
+     */
+    public File dumpFlightRecorder(String reason){
+        if (flightRecorder == null) {
+            RobotLog.w(LOG_TAG + "can't dump the flight recorder: it was never started");
+            return null;
+        }
+        return flightRecorder.dump(reason);
+    }
+
+    /**
+     * Stop everything that moves on its own and dump the flight recorder.  The opmode is left
+     * running; it is up to the opmode not to drive the robot again.
+     *
+     * @param reason why the robot was stopped, one word; it goes in the dump's file name
+     */
+    public void emergencyStop(String reason){
+
+        RobotLog.w(LOG_TAG + "EMERGENCY STOP: " + reason);
+        for (String name : robotComponents.keySet()) {
+            componentAdapters.get(name).reset(robotComponents.get(name));
+        }
+        updateFlightRecorder();
+        dumpFlightRecorder(reason);
+    }
+
     /**
      * Instruct the robot to replay a recording of it's history by sending an instance of the
      * DoppleBotHistoryRecord (as robotHistory) to this method.  The robot will examine the states
@@ -131,123 +300,203 @@ public abstract class DoppleBot {
      * robot to execute with those state value for the period of time indicated in the data.
      *
      * It is expected that this will always be called from an LinerOpMode class (or subclass) as that is the only
-     * way to execute operations within the FTC infrastructure.  In order to facilitate the timing
-     * between state changes, the calling OpMode itself must be passed in (as it contains the "sleep" function)
-     * needed to allow the robot to operate in the state requested for the time requested.
+     * way to execute operations within the FTC infrastructure.  The robot holds each state for the time
+     * requested by sleeping on the DoppleClock, so off the robot a virtual clock plays a recording back
+     * instantly.  The calling OpMode itself must be passed in so playback only starts while it is active.
      *
      * @param robotHistory
      * @param opMode
      */
     public void startPlayback(DoppleBotHistoryRecord robotHistory, LinearOpMode opMode){
 
-        ArrayList<String> componentNames = robotHistory.getHeaderRow();
-        ArrayList<ArrayList> valueRows = robotHistory.getValueRows();
-
-        int rowsPlayedBack = 1;
-
         if (robotHistoryIsValid(robotHistory) && opMode.opModeIsActive()){
-            RobotLog.d(LOG_TAG + String.format("component names: %s", componentNames.toString()));
-            for (ArrayList valueRow: valueRows) {
-                long timeToRun = 0;
-                timeToRun = play(componentNames, valueRow);
-                RobotLog.d(LOG_TAG + String.format("playing row %d of %d: %s for %d", rowsPlayedBack, valueRows.size(), valueRow.toString(), timeToRun));
-                opMode.sleep(timeToRun);
-                rowsPlayedBack++;
-            }
-            RobotLog.d(LOG_TAG + "Playback completed; making robot still.");
-            stopPlayback(componentNames);
+            playHistory(robotHistory);
         } else
             RobotLog.w(LOG_TAG + "Cannot playback robot.  Table contains invalid data for robot.");
 
     }
 
     /**
-     * This protected method is used by subclasses to add the components of the robot that will be recorded.
-     * The doppleBot class will then be able to know which to pay attention to.  As part of adding a component
-     * the initial state of the component can be recorded and used later when turning off.
+     * Have playback call a listener when it reaches an event with a code, at the time the event
+     * was marked.  e.g. an autonomous can check a sensor at the moment a beacon was pressed.
+     */
+    public void addEventListener(int code, DoppleEventListener listener){
+        if (!eventListeners.containsKey(code)) eventListeners.put(code, new ArrayList<DoppleEventListener>());
+        eventListeners.get(code).add(listener);
+    }
+
+    public void removeEventListeners(){
+        eventListeners.clear();
+    }
+
+    /**
+     * Play a recording back without an opmode, e.g. off the robot on stand-in hardware.  This is
+     * what startPlayback() does once the opmode is active: each row is held for its time on the
+     * DoppleClock and the robot is made still at the end.  The recording's events are passed to
+     * their listeners at their times, splitting the wait for the row they fall in.
      *
-     * @param name a String that contains the name of the device for access. it's key value
-     * @param currentComponent a HardwareDevice that is mapped to the name. As of now it must be a DCmotor or Servo
+     * @param robotHistory
      */
-    protected void addRobotComponent(String name, HardwareDevice currentComponent)
-    {
-        if (currentComponent.getClass().equals(DcMotorImpl.class) ||
-                currentComponent.getClass().equals(ServoImpl.class))
-        {
-            robotComponents.put(name,currentComponent);
-
-            if (currentComponent.getClass().equals(DcMotorImpl.class)) {
-                double value = ((DcMotorImpl) currentComponent).getPower();
-                initialStateValues.add(value);
-            }
+    public void playHistory(DoppleBotHistoryRecord robotHistory){
 
-            if (currentComponent.getClass().equals(ServoImpl.class)) {
-                double value = ((ServoImpl) currentComponent).getPosition();
-                initialStateValues.add(value);
+        ArrayList<ArrayList> valueRows = robotHistory.getValueRows();
+        DoppleEventTrack events = robotHistory.getEvents();
+        RobotLog.d(LOG_TAG + String.format("component names: %s, %d events", robotHistory.getHeaderRow().toString(), events.size()));
+
+        DoppleBotPlayer player = new DoppleBotPlayer(this, robotHistory);
+        long elapsed = 0;       // recorded time played so far
+        int nextEvent = 0;
+        for (int row = 0; row < player.getRowCount(); row++) {
+            long timeToRun = player.playRow(row);
+            RobotLog.d(LOG_TAG + String.format("playing row %d of %d: %s for %d", row + 1, valueRows.size(), valueRows.get(row).toString(), timeToRun));
+
+            long rowEnd = elapsed + timeToRun;
+            while (nextEvent < events.size() && events.getTimeMs(nextEvent) < rowEnd) {
+                long eventTime = Math.max(elapsed, events.getTimeMs(nextEvent));
+                DoppleClock.current().sleep(eventTime - elapsed);
+                elapsed = eventTime;
+                dispatchEvent(player, events, nextEvent++);
             }
+            DoppleClock.current().sleep(rowEnd - elapsed);
+            elapsed = rowEnd;
+        }
+        // events marked as recording stopped, after the last change
+        for (; nextEvent < events.size(); nextEvent++) {
+            dispatchEvent(player, events, nextEvent);
+        }
+        RobotLog.d(LOG_TAG + "Playback completed; making robot still.");
+        stopPlayback();
+    }
 
-            RobotLog.d(LOG_TAG + "Initial state is currently: " + initialStateValues.toString());
+    // a listener may write recorded devices, so the next row writes every device again rather
+    // than only what changed
+    private void dispatchEvent(DoppleBotPlayer player, DoppleEventTrack events, int event){
+        int code = events.getCode(event);
+        RobotLog.d(LOG_TAG + String.format("event %d (%f) at %d ms", code, events.getPayload(event), events.getTimeMs(event)));
+        ArrayList<DoppleEventListener> listeners = eventListeners.get(code);
+        if (listeners == null) return;
+        for (DoppleEventListener listener : listeners) {
+            listener.onEvent(code, events.getPayload(event));
         }
+        player.invalidate();
     }
 
     /**
-     * This method sets the robot to the initialized state
-     * Pass in an arrayList of all the robot component names and it uses the initialStateValues
-     * variable to set the state of all components back to that initial state.
+     * This protected method is used by subclasses to add the components of the robot that will be recorded.
+     * The doppleBot class will then be able to know which to pay attention to.  As part of adding a component
+     * the initial state of the component can be recorded and used later when turning off.
      *
-     * @param componentNames
+     * @param name a String that contains the name of the device for access. it's key value
+     * @param currentComponent a HardwareDevice that is mapped to the name. It must be a type the
+     *                         DoppleComponentRegistry has an adapter for
      */
-    private void stopPlayback(ArrayList<String> componentNames){
-        long time = play(componentNames, initialStateValues);
+    protected void addRobotComponent(String name, HardwareDevice currentComponent)
+    {
+        addRobotComponent(name, currentComponent, DoppleDeviceSpec.DEFAULT_TRACK);
     }
 
     /**
-     * private method to play a single row from a robot history table.  Actually, it sets the state
-     * of the robot for that row's data and returns the amount of time that it should execute
-     * to the caller.  The caller will then be responsible for the delay until the next state
-     * is sent to this method.
-     *
+     * Add a component that is recorded on a track of its own, or with the other components on
+     * that track.  See DoppleDeviceSpec.onTrack().
      *
-     * @param componentNames
-     * @param values
-     * @return
+     * @param name the component's name
+     * @param currentComponent the device
+     * @param track the name of the track to record it on
      */
-    private long play(ArrayList<String> componentNames, ArrayList values){
-
-        if (componentNames.size() != values.size())
-        {
-            RobotLog.e(LOG_TAG + "ERROR playing back.  The number of component values doesn't match the number of component names in the playback request!");
-            throw new RuntimeException("ERROR playing back.  The number of component values doesn't match the number of component names in the playback request!");
+    protected void addRobotComponent(String name, HardwareDevice currentComponent, String track)
+    {
+        DoppleComponentAdapter adapter = DoppleComponentRegistry.forDevice(currentComponent);
+        if (adapter == null) {
+            RobotLog.w(LOG_TAG + String.format("%s is a %s, which can't be recorded; not adding it",
+                    name, currentComponent.getClass().getSimpleName()));
+            return;
         }
 
-        int timeToRun = (Integer) values.get(0); //the first value should be the time in milliseconds
-        for (int i = 1; i < componentNames.size() ; i++) {
-
-            HardwareDevice currentComponent = robotComponents.get(componentNames.get(i));
+        robotComponents.put(name, currentComponent);
+        componentAdapters.put(name, adapter);
+        componentTracks.put(name, track);
+        initialStateValues.put(name, adapter.read(currentComponent));
 
-            if (currentComponent.getClass().equals(DcMotorImpl.class) ||
-                    currentComponent.getClass().equals(ServoImpl.class)) {
+        if (currentComponent instanceof DcMotor) readCache.add((DcMotor) currentComponent);
+        if (currentComponent instanceof Servo) readCache.add((Servo) currentComponent);
 
-                if (currentComponent.getClass().equals(DcMotorImpl.class)) {
-                    double currentPower = (Double) values.get(i);
-                    ((DcMotor) currentComponent).setPower(currentPower);
-                    RobotLog.d(LOG_TAG + String.format("playing: %s at power %f", componentNames.get(i), currentPower));
-                }
+        RobotLog.d(LOG_TAG + "Initial state is currently: " + initialStateValues.toString());
+    }
 
-                if (currentComponent.getClass().equals(ServoImpl.class)) {
-                    double currentPosition = (Double) values.get(i);
-                    ((Servo) currentComponent).setPosition(currentPosition);
-                    RobotLog.d(LOG_TAG + String.format("playing: %s at position value %f", componentNames.get(i),currentPosition));
-                }
+    /**
+     * Get the adapters used to record and play back the robot components, by component name.
+     * @return
+     */
+    public HashMap<String, DoppleComponentAdapter> getComponentAdapters(){
+        return componentAdapters;
+    }
 
+    /**
+     * Get the track each robot component is recorded on, by component name.
+     * @return
+     */
+    public HashMap<String, String> getComponentTracks(){
+        return componentTracks;
+    }
 
+    /**
+     * Build, initialize and register the robot's motors and servos from a list of specs.  This is
+     * expected to be called from initializeRobot().  Every device is set up the same way and
+     * every recorded device is registered under its record name; afterwards the devices can be
+     * fetched with getMotor() and getServo().  How long each device took is logged and kept
+     * in getInitReport().
+     *
+     * @param hardwareMap the opmode's hardware map
+     * @param specs the devices on the robot
+     */
+    protected void initializeDevices(HardwareMap hardwareMap, DoppleDeviceSpec... specs){
 
-            }
+        DoppleDeviceInitializer initializer = new DoppleDeviceInitializer(hardwareMap, specs);
+        initializer.run();
 
+        for (int i = 0; i < initializer.getDeviceCount(); i++) {
+            DoppleDeviceSpec spec = initializer.getSpec(i);
+            HardwareDevice device = initializer.getDevice(i);
+            if (device == null) continue;
+            initializedDevices.put(spec.name, device);
+            if (spec.recorded) addRobotComponent(spec.recordName, device, spec.track);
         }
 
-        return timeToRun;
+        initReport = initializer.getReport();
+        RobotLog.i(LOG_TAG + initReport);
+    }
+
+    /**
+     * @return a motor built by initializeDevices(), or null if it was optional and not found
+     */
+    protected DcMotor getMotor(String name){
+        return (DcMotor) initializedDevices.get(name);
+    }
+
+    /**
+     * @return a servo built by initializeDevices(), or null if it was optional and not found
+     */
+    protected Servo getServo(String name){
+        return (Servo) initializedDevices.get(name);
+    }
+
+    /**
+     * Get the timing of the last initializeDevices() call, one line per device.
+     * @return
+     */
+    public String getInitReport(){
+        return initReport;
+    }
 
+    /**
+     * This method sets the robot to the initialized state.  It uses the initialStateValues
+     * variable to set the state of all components back to the state they had when they
+     * were added.
+     */
+    private void stopPlayback(){
+        for (String name : robotComponents.keySet()) {
+            componentAdapters.get(name).write(robotComponents.get(name), initialStateValues.get(name));
+        }
     }
 
     private boolean robotHistoryIsValid(DoppleBotHistoryRecord recordToValidate){
@@ -38,6 +38,7 @@ public class DoppleBotHistoryRecord {
 
     private ArrayList<String> historyTableHeaderRow = new ArrayList<String>();
     private ArrayList<ArrayList> historyTableValueRows = new ArrayList<ArrayList>();
+    private DoppleEventTrack events = new DoppleEventTrack();
 
     public DoppleBotHistoryRecord(){
 
@@ -104,4 +105,16 @@ public class DoppleBotHistoryRecord {
         return historyTableValueRows;
     }
 
+    /**
+     * Returns the events marked during the recording; empty if there were none.
+     * @return
+     */
+    public DoppleEventTrack getEvents(){
+        return events;
+    }
+
+    public void setEvents(DoppleEventTrack events){
+        this.events = events;
+    }
+
 }
@@ -0,0 +1,88 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A DoppleBotPlayer sets a robot to the states in a DoppleBotHistoryRecord, one row at a time.
+ * Each column's device and adapter are found once, when the player is made, so playing a row
+ * is one write per device.  Columns for components the robot doesn't have are skipped, and so
+ * are values that are the same as the row before: a device is only written when it changes,
+ * e.g. only the devices on the track that changed in a recording made in tracks.
+ *
+ * The player doesn't wait; playRow() returns how long the row's state should be held and the
+ * caller does the waiting (see DoppleBot.startPlayback()).
+ */
+public class DoppleBotPlayer {
+
+    private static String LOG_TAG = "DoppleBotPlayer - ";
+
+    private ArrayList<String> componentNames;
+    private ArrayList<ArrayList> valueRows;
+    private HardwareDevice[] columnDevices;
+    private DoppleComponentAdapter[] columnAdapters;
+    private double[] lastValues;
+
+    public DoppleBotPlayer(DoppleBot robot, DoppleBotHistoryRecord robotHistory){
+
+        componentNames = robotHistory.getHeaderRow();
+        valueRows = robotHistory.getValueRows();
+
+        columnDevices = new HardwareDevice[componentNames.size()];
+        columnAdapters = new DoppleComponentAdapter[componentNames.size()];
+        lastValues = new double[componentNames.size()];
+        Arrays.fill(lastValues, Double.NaN);    // so the first row writes everything
+        for (int i = 1; i < componentNames.size(); i++) {
+            columnDevices[i] = robot.getRobotComponents().get(componentNames.get(i));
+            columnAdapters[i] = robot.getComponentAdapters().get(componentNames.get(i));
+            if (columnDevices[i] == null)
+                RobotLog.w(LOG_TAG + "recording has a component this robot doesn't have; skipping it: " + componentNames.get(i));
+        }
+    }
+
+    /**
+     * Forget what the player has written, so the next row writes every device again.  Call this
+     * when something else may have written the robot's devices during playback, e.g. an event
+     * listener.
+     */
+    public void invalidate(){
+        Arrays.fill(lastValues, Double.NaN);
+    }
+
+    public int getRowCount(){
+        return valueRows.size();
+    }
+
+    /**
+     * Set the robot to the state in a row.
+     *
+     * @param row the row, from 0
+     * @return how long to hold the state, in milliseconds
+     */
+    public long playRow(int row){
+
+        ArrayList values = valueRows.get(row);
+        if (componentNames.size() != values.size())
+        {
+            RobotLog.e(LOG_TAG + "ERROR playing back.  The number of component values doesn't match the number of component names in the playback request!");
+            throw new RuntimeException("ERROR playing back.  The number of component values doesn't match the number of component names in the playback request!");
+        }
+
+        long timeToRun = ((Number) values.get(0)).longValue(); //the first value should be the time in milliseconds
+        for (int i = 1; i < componentNames.size() ; i++) {
+
+            if (columnDevices[i] == null) continue;
+
+            double currentValue = (Double) values.get(i);
+            if (currentValue == lastValues[i]) continue;
+            lastValues[i] = currentValue;
+            columnAdapters[i].write(columnDevices[i], currentValue);
+            RobotLog.d(LOG_TAG + String.format("playing: %s at %f", componentNames.get(i), currentValue));
+        }
+
+        return timeToRun;
+    }
+}
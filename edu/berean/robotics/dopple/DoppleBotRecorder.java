@@ -2,26 +2,46 @@ package edu.berean.robotics.dopple;
 
 import android.os.Environment;
 
-import com.qualcomm.robotcore.hardware.DcMotor;
-import com.qualcomm.robotcore.hardware.DcMotorImpl;
 import com.qualcomm.robotcore.hardware.HardwareDevice;
-import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.hardware.ServoImpl;
 import com.qualcomm.robotcore.util.RobotLog;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Locale;
-import java.util.Set;
+
+import edu.berean.robotics.sensors.HardwareReadCache;
 
 /**
  * The DoppleBotRecorder class is used as the control logic for recording a robot's state to a file.
+ *
+ * Components are recorded in tracks (see DoppleDeviceSpec.onTrack()).  Each track has its own
+ * change detection and its own history: a row is added to a track only when one of its own
+ * components changes, and its time is how long the track held its previous state.  A track's
+ * times add up to when each of its rows started, so all the tracks share one timeline from the
+ * start of the recording.  A robot that doesn't name tracks records one track, as before.
+ *
+ * Measured channels (encoders, sensors, the battery; see MeasuredChannel) are sampled on
+ * update() too, each at its own period, into DoppleMeasurements.  They are not part of any
+ * track's change detection.
+ *
+ * Idle time at either end of a recording is trimmed as it is recorded.  Until something first
+ * changes, every track is in its initial state; when the first change comes, the recording is
+ * started over from the idle residual before it, so the tracks' first rows only hold the
+ * initial state that long.  When the recording finishes with every track back in its initial
+ * state, it ends the idle residual after the last change.  Only the last change time is kept
+ * to do this, so nothing extra is buffered.  Events and measured samples are moved into (or
+ * dropped from, for samples) the window that was kept.  setIdleResidualMs(KEEP_IDLE) records
+ * everything.
+ *
  * Created by wdhoward on 3/5/16.
  */
 public class DoppleBotRecorder {
@@ -33,38 +53,96 @@ public class DoppleBotRecorder {
     private static String ROBOT_HISTORY_DIRECTORY = "/ROBO_DATA/";
     private static String LOG_TAG = "DoppleBotRecorder - ";
 
-    private DoppleBotHistoryRecord doppleBotHistoryRecord;
-
-    private HashMap<String, Double> previousRobotComponentValues;
-    private HashMap<String, Double> currentRobotComponentValues;
+    public static final long DEFAULT_IDLE_RESIDUAL_MS = 250;
+    public static final long KEEP_IDLE = -1;
 
-    private HashMap<String, HardwareDevice> currentComponentSnapshot;
-
-    private Set<String> robotComponentNames;
+    /**
+     * One track: its components, in header order, with their adapters resolved once here rather
+     * than on every update, and its own history.
+     */
+    private static class Track {
+        String name;
+        String[] componentNames;
+        HardwareDevice[] components;
+        DoppleComponentAdapter[] adapters;
+        double[] initialValues;
+        double[] previousValues;
+        double[] currentValues;
+        DoppleBotHistoryRecord history;
+        long startTime;
+    }
 
-    long startTime;
+    private Track[] tracks;
+    private HardwareReadCache reads;
+    private DoppleEventTrack events = new DoppleEventTrack();
+    private MeasuredChannel[] measuredChannels = new MeasuredChannel[0];
+    private long[] nextSampleTimes = new long[0];
+    private DoppleMeasurements measurements = new DoppleMeasurements();
+    private long recordingStartTime;
+    private long idleResidualMs = DEFAULT_IDLE_RESIDUAL_MS;
+    private boolean leadInTrimmed = false;
+    private long lastChangeTime;
+    private long trimStartMs = 0;
+    private long trimEndMs = -1;
 
     /**
      * Constructor
      * returns a DoppleBotRecorder that has been established with a set of expected components
      * These "robot components' are passed in the form of a HashMap of String, HardwareDevices.
      * The recorder must know about the components of the robot in order to be able to recognize
-     * the state of the robot and its change over time.
+     * the state of the robot and its change over time.  All the components are recorded on one
+     * track.
      *
      * @param robotComponents
      */
     public DoppleBotRecorder(HashMap<String, HardwareDevice> robotComponents){
+        this(robotComponents, new HashMap<String, String>());
+    }
+
+    /**
+     * Returns a DoppleBotRecorder that records each component on its track.
+     *
+     * @param robotComponents
+     * @param componentTracks the track name of each component, as DoppleBot.getComponentTracks();
+     *                        components not in it are recorded on the default track
+     */
+    public DoppleBotRecorder(HashMap<String, HardwareDevice> robotComponents, HashMap<String, String> componentTracks){
+        this(robotComponents, componentTracks, null);
+    }
+
+    /**
+     * Returns a DoppleBotRecorder that records each component on its track, sampling the
+     * measured channels through the robot's read cache (see DoppleBot.reads()), so an encoder
+     * or sensor the loop has already read isn't read from the hardware again.  The components
+     * themselves are read from the devices: a recording is what the loop commanded, including
+     * anything it wrote after reading the cache.
+     *
+     * @param robotComponents
+     * @param componentTracks
+     * @param reads the read cache, or null to read the devices directly
+     */
+    public DoppleBotRecorder(HashMap<String, HardwareDevice> robotComponents, HashMap<String, String> componentTracks,
+                             HardwareReadCache reads){
 
+        this.reads = reads;
         if (robotComponents.isEmpty()){
             RobotLog.e(LOG_TAG + "could not initialize history.  Robot has no components.");
             throw new RuntimeException("Could not initialize history.  Robot has no components.");
 
         } else {
             RobotLog.i(String.format(LOG_TAG + "%d components found in the robot.", robotComponents.size()));
-            currentComponentSnapshot = robotComponents;
-            buildRobotHistoryTableHeader();
-            startTimer();
-            previousRobotComponentValues = getRobotValuesHashMap(robotComponents);
+            snapshotComponents(robotComponents, componentTracks);
+            long startTime = startTimer();
+            recordingStartTime = startTime;
+            for (Track track : tracks) {
+                buildTrackHeader(track);
+                track.startTime = startTime;
+                track.previousValues = new double[track.components.length];
+                track.currentValues = new double[track.components.length];
+                readTrackValues(track, track.previousValues);
+                track.initialValues = track.previousValues.clone();
+            }
+            RobotLog.i(String.format(LOG_TAG + "recording %d tracks", tracks.length));
         }
 
     }
@@ -72,9 +150,9 @@ public class DoppleBotRecorder {
     /**
      * After instantiating the DoppleBotRecorder, the DoppleBotRecorder needs to be told to
      * make sure to update itself whenever the state is perceived to have changed.
-     * The update() method will examine the currentComponentSnapshot that were provided during
-     * construction.  If the state of these components has changed, the update method will
-     * amend the new data to the history.
+     * The update() method will examine the robot components that were provided during
+     * construction.  If the state of a track's components has changed, the update method will
+     * amend the new data to that track's history.
      *
      * Call the update() method when you suspect the robot state may have changed and the history
      * needs to be updated.  The update method will determine if the state has, indeed, changed
@@ -83,36 +161,180 @@ public class DoppleBotRecorder {
      */
     public void update(){
 
-        currentRobotComponentValues = getRobotValuesHashMap(currentComponentSnapshot);
+        long now = DoppleClock.current().currentTimeMillis();
+        sampleMeasuredChannels(now);
+        int changed = 0;
+        for (Track track : tracks) {
+
+            readTrackValues(track, track.currentValues);
+
+            if (trackStateHasChanged(track)){
+                changed++;
+                if (!leadInTrimmed) trimLeadIn(now);
+                lastChangeTime = now;
+                addPreviousStateToTrackHistory(track, now);
+                double[] swap = track.previousValues;
+                track.previousValues = track.currentValues;
+                track.currentValues = swap;
+            }
+        }
+        // once per update, not per track: this runs every loop
+        if (changed > 0) RobotLog.d(String.format(LOG_TAG + "%d of %d tracks changed, adding history.", changed, tracks.length));
+    }
+
+    /**
+     * Set how much of the idle time at each end of the recording to keep, or KEEP_IDLE to keep
+     * all of it.  Set this before the first update().
+     *
+     * @param residualMs milliseconds of idle to keep before the first change and after the last
+     */
+    public void setIdleResidualMs(long residualMs){
+        idleResidualMs = residualMs;
+    }
 
-        if (robotStateHasChanged()){
-            RobotLog.i(LOG_TAG + "state has changed, adding history.");
-            addPreviousStateToRobotHistory();
-            previousRobotComponentValues = currentRobotComponentValues;
-        } else {
-            RobotLog.i(String.format(LOG_TAG + "Same robot state found, skipping. %d rows.", doppleBotHistoryRecord.getValueRows().size()));
+    /**
+     * @return where the recording was trimmed to start, in milliseconds after the recorder was
+     * created; 0 if nothing was trimmed
+     */
+    public long getTrimStartMs(){
+        return trimStartMs;
+    }
+
+    /**
+     * @return where the recording was trimmed to end, in milliseconds after the recorder was
+     * created; -1 until finish() is called
+     */
+    public long getTrimEndMs(){
+        return trimEndMs;
+    }
+
+    // the first change: start the recording the residual before it.  No rows have been added
+    // yet, so every track still starts at the start of the recording.
+    private void trimLeadIn(long now){
+
+        leadInTrimmed = true;
+        if (idleResidualMs < 0) return;
+
+        long start = Math.max(recordingStartTime, now - idleResidualMs);
+        trimStartMs = start - recordingStartTime;
+        for (Track track : tracks) {
+            track.startTime = start;
+        }
+        RobotLog.i(String.format(LOG_TAG + "trimmed %d ms of idle lead-in", trimStartMs));
+    }
+
+    /**
+     * Sample a measured channel at its period from now on.  The channel is reset, so nothing it
+     * kept from an earlier recording carries over.
+     */
+    public void addMeasuredChannel(MeasuredChannel channel){
+        channel.reset();
+        measurements.addChannel(channel.name);
+        measuredChannels = Arrays.copyOf(measuredChannels, measuredChannels.length + 1);
+        measuredChannels[measuredChannels.length - 1] = channel;
+        nextSampleTimes = Arrays.copyOf(nextSampleTimes, measuredChannels.length);
+        nextSampleTimes[measuredChannels.length - 1] = recordingStartTime;
+    }
+
+    /**
+     * Get the samples of the measured channels so far.
+     * @return
+     */
+    public DoppleMeasurements getMeasurements(){
+        return measurements;
+    }
+
+    // each channel is sampled when its period has passed; a late loop doesn't cause a burst
+    private void sampleMeasuredChannels(long now){
+
+        long nowNanos = DoppleClock.current().nanoTime();
+        for (int i = 0; i < measuredChannels.length; i++) {
+            if (now < nextSampleTimes[i]) continue;
+            measurements.add(i, now - recordingStartTime, measuredChannels[i].sample(reads, nowNanos));
+            nextSampleTimes[i] = now + measuredChannels[i].periodMs;
         }
     }
 
+    /**
+     * Mark an event at the current time.  This only appends to the event track, so it is cheap
+     * enough to call from anywhere in a loop.
+     *
+     * @param code the event's code
+     * @param payload a value to keep with it
+     */
+    public void mark(int code, double payload){
+        events.add(DoppleClock.current().currentTimeMillis() - recordingStartTime, code, payload);
+    }
+
+    /**
+     * Get the events marked so far.
+     * @return
+     */
+    public DoppleEventTrack getEvents(){
+        return events;
+    }
+
+    /**
+     * Add each track's current state to its history, held until the end of the recording.  Call
+     * this once when recording stops, so every track runs to the end in its final state.  The end
+     * is now, or the idle residual after the last change if the robot is back in its initial
+     * state.
+     */
+    public void finish(){
+
+        update();
+        long now = DoppleClock.current().currentTimeMillis();
+        if (!leadInTrimmed) {
+            // nothing ever changed: the whole recording is idle
+            trimLeadIn(now);
+            lastChangeTime = now;
+        }
+
+        long end = now;
+        if (idleResidualMs >= 0 && robotIsInInitialState()) {
+            end = Math.min(now, lastChangeTime + idleResidualMs);
+            RobotLog.i(String.format(LOG_TAG + "trimmed %d ms of idle tail", now - end));
+        }
+        for (Track track : tracks) {
+            addPreviousStateToTrackHistory(track, end);
+        }
+
+        trimEndMs = end - recordingStartTime;
+        measurements.trim(trimStartMs, trimEndMs);
+        events.clampTimes(trimStartMs, trimEndMs);
+    }
+
+    private boolean robotIsInInitialState(){
+        for (Track track : tracks) {
+            if (!Arrays.equals(track.previousValues, track.initialValues)) return false;
+        }
+        return true;
+    }
+
     /**
      * The writeHistory() method will instruct the recorder to persist the current robot history
      * data to a file on the external storage of the RobotController device.
+     *
+     * @return the file written, or null if the history could not be written
      */
-    public void writeHistory(){
+    public File writeHistory(){
 
+        File historyFile = null;
 
 
-        int currentRow = 1;
-        ArrayList valueRows = doppleBotHistoryRecord.getValueRows();
 
-        RobotLog.i("**********************************************************");
-        RobotLog.i(String.format("%s", doppleBotHistoryRecord.getHeaderRow().toString()));
-        RobotLog.i("**********************************************************");
+        for (Track track : tracks) {
+            int currentRow = 1;
 
-        Iterator rowIterator = valueRows.iterator();
-        while (rowIterator.hasNext()){
-            RobotLog.i(String.format("%d - %s", currentRow, (rowIterator.next()).toString()));
-            currentRow++;
+            RobotLog.i("**********************************************************");
+            RobotLog.i(String.format("%s", track.history.getHeaderRow().toString()));
+            RobotLog.i("**********************************************************");
+
+            Iterator rowIterator = track.history.getValueRows().iterator();
+            while (rowIterator.hasNext()){
+                RobotLog.i(String.format("%d - %s", currentRow, (rowIterator.next()).toString()));
+                currentRow++;
+            }
         }
 
         RobotLog.i("**********************************************************");
@@ -123,50 +345,126 @@ public class DoppleBotRecorder {
                 RobotLog.i(LOG_TAG + "external storage is available");
 
                 SimpleDateFormat fileNameDateFormatter = new SimpleDateFormat(ROBOT_HISTORY_FILE_NAME_PATTERN, new Locale("en"));
-                String createDate = fileNameDateFormatter.format(new Date());
+                String createDate = fileNameDateFormatter.format(new Date(DoppleClock.current().currentTimeMillis()));
 
-                File historyFile = getHistoryFile(ROBOT_HISTORY_FILE_BASE_NAME + createDate + ROBOT_HISTORY_FILE_EXT);
+                historyFile = getHistoryFile(ROBOT_HISTORY_FILE_BASE_NAME + createDate + ROBOT_HISTORY_FILE_EXT);
                 FileWriter historyWriter = new FileWriter(historyFile);
-
-                String currentRowData = doppleBotHistoryRecord.getHeaderRow().toString() + "\n";
-
-                rowIterator = valueRows.iterator();
-                while (rowIterator.hasNext()){
-                    currentRowData = currentRowData + String.format("%s\n",rowIterator.next().toString());
+                try {
+                    writeHistory(historyWriter);
+                } finally {
+                    historyWriter.close();
                 }
 
-                historyWriter.write(currentRowData);
-                historyWriter.close();
-
             } else RobotLog.i(LOG_TAG + "external storage is unavailable. no history");
 
         } catch (IOException e){
             RobotLog.e(String.format(LOG_TAG + "error writing history: %s",e.getMessage()));
+            historyFile = null;
         }
 
+        return historyFile;
 
     }
 
-    private void buildRobotHistoryTableHeader(){
+    /**
+     * Write the history in the recording file format to a writer: for each track, its header row
+     * and then one line per value row, then the measured channels and the events, if there are
+     * any.  A recording with one track and nothing else is a single table, as recordings have
+     * always been.  The writer is not closed.
+     *
+     * @param writer where to write the history
+     * @throws IOException
+     */
+    public void writeHistory(Writer writer) throws IOException {
+
+        for (Track track : tracks) {
+            writer.write(track.history.getHeaderRow().toString());
+            writer.write("\n");
+            for (ArrayList valueRow : track.history.getValueRows()) {
+                writer.write(valueRow.toString());
+                writer.write("\n");
+            }
+        }
+        measurements.write(writer);
+        events.write(writer);
+    }
+
+    /**
+     * Get the history recorded so far on the first track; the whole history when the robot
+     * records one track.
+     * @return
+     */
+    public DoppleBotHistoryRecord getHistory(){
+        return tracks[0].history;
+    }
+
+    /**
+     * Get the history recorded so far, one DoppleBotHistoryRecord per track.
+     * @return
+     */
+    public ArrayList<DoppleBotHistoryRecord> getTrackHistories(){
+        ArrayList<DoppleBotHistoryRecord> histories = new ArrayList<DoppleBotHistoryRecord>(tracks.length);
+        for (Track track : tracks) histories.add(track.history);
+        return histories;
+    }
+
+    private void buildTrackHeader(Track track){
 
         ArrayList<String> historyHeader = new ArrayList<String>();
 
         historyHeader.add("runtime(ms)");
-        robotComponentNames = currentComponentSnapshot.keySet();
-        historyHeader.addAll(robotComponentNames);
-        doppleBotHistoryRecord = new DoppleBotHistoryRecord(historyHeader);
+        for (String name : track.componentNames) {
+            historyHeader.add(name);
+        }
+        track.history = new DoppleBotHistoryRecord(historyHeader);
 
     }
 
-    private boolean robotStateHasChanged(){
+    // groups the components into tracks, in the order each track is first seen
+    private void snapshotComponents(HashMap<String, HardwareDevice> components, HashMap<String, String> componentTracks){
 
-        for (String currentComponentName : robotComponentNames) {
+        LinkedHashMap<String, ArrayList<String>> trackComponents = new LinkedHashMap<String, ArrayList<String>>();
+        for (String name : components.keySet()) {
+            String trackName = componentTracks.get(name);
+            if (trackName == null) trackName = DoppleDeviceSpec.DEFAULT_TRACK;
+            if (!trackComponents.containsKey(trackName)) trackComponents.put(trackName, new ArrayList<String>());
+            trackComponents.get(trackName).add(name);
+        }
 
-            Double currentVal = currentRobotComponentValues.get(currentComponentName);
-            Double prevVal = previousRobotComponentValues.get(currentComponentName);
-            RobotLog.d(String.format("%s current val %f, previous val %f", currentComponentName, currentVal.doubleValue(), prevVal.doubleValue()));
+        tracks = new Track[trackComponents.size()];
+        int t = 0;
+        for (String trackName : trackComponents.keySet()) {
+            ArrayList<String> names = trackComponents.get(trackName);
+            Track track = new Track();
+            track.name = trackName;
+            track.componentNames = new String[names.size()];
+            track.components = new HardwareDevice[names.size()];
+            track.adapters = new DoppleComponentAdapter[names.size()];
+
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                HardwareDevice device = components.get(name);
+                DoppleComponentAdapter adapter = DoppleComponentRegistry.forDevice(device);
+                if (adapter == null) {
+                    RobotLog.e(LOG_TAG + String.format("%s is a %s, which can't be recorded", name, device.getClass().getName()));
+                    throw new RuntimeException("Could not initialize history.  No adapter for component " + name);
+                }
+                track.componentNames[i] = name;
+                track.components[i] = device;
+                track.adapters[i] = adapter;
+            }
+            tracks[t++] = track;
+        }
+    }
+
+    private boolean trackStateHasChanged(Track track){
 
-            if (! currentVal.equals(prevVal)) {
+        for (int i = 0; i < track.componentNames.length; i++) {
+
+            double currentVal = track.currentValues[i];
+            double prevVal = track.previousValues[i];
+
+            if (currentVal != prevVal) {
 
                 return true;
 
@@ -177,59 +475,40 @@ public class DoppleBotRecorder {
         return false;
     }
 
-    private void addPreviousStateToRobotHistory(){
-        ArrayList robotPreviousStateValuesList = new ArrayList();
+    private void addPreviousStateToTrackHistory(Track track, long now){
+        ArrayList trackPreviousStateValuesList = new ArrayList();
 
         //insert millisecond change from timer
-        long elapsedTime = System.currentTimeMillis() - startTime;
-        robotPreviousStateValuesList.add(elapsedTime);
-        startTime = System.currentTimeMillis();
+        long elapsedTime = now - track.startTime;
+        trackPreviousStateValuesList.add(elapsedTime);
+        track.startTime = now;
 
-        for (String currentComponentName : robotComponentNames)
+        for (int i = 0; i < track.componentNames.length; i++)
         {
 
-            robotPreviousStateValuesList.add(previousRobotComponentValues.get(currentComponentName));
+            trackPreviousStateValuesList.add(track.previousValues[i]);
 
         }
 
-        doppleBotHistoryRecord.addHistoryValueRow(robotPreviousStateValuesList);
-        RobotLog.i(String.format(LOG_TAG + "%d value rows added", doppleBotHistoryRecord.getValueRows().size()));
+        track.history.addHistoryValueRow(trackPreviousStateValuesList);
 
     }
 
-    private void startTimer(){
+    private long startTimer(){
 
-        startTime=System.currentTimeMillis();
+        long startTime = DoppleClock.current().currentTimeMillis();
         RobotLog.i(String.format(LOG_TAG + "Start time in millis: %d",startTime));
+        return startTime;
 
     }
 
-    private HashMap<String, Double> getRobotValuesHashMap(HashMap<String, HardwareDevice> robotComponents){
-
-        HashMap<String, Double> returnMap = new HashMap<String, Double>();
-        RobotLog.i(LOG_TAG + "Getting Robot Values HashMap");
+    // each component's adapter knows what to read: power for a motor, position for a servo...
+    private void readTrackValues(Track track, double[] values){
 
-        for (String currentComponentName : robotComponentNames)
+        for (int i = 0; i < track.components.length; i++)
         {
-            HardwareDevice currentComponent = robotComponents.get(currentComponentName);
-            // class matters as some values are from a getPosition call (servos) and some values are from getPower call (DC motor)
-            RobotLog.i(LOG_TAG + "currentComponent is " + currentComponentName + " a " + currentComponent.getClass().getName());
-            if (currentComponent.getClass().equals(DcMotorImpl.class) ||
-                    currentComponent.getClass().equals(ServoImpl.class)) {
-
-                if (currentComponent.getClass().equals(DcMotorImpl.class)) {
-                    returnMap.put(currentComponentName, ((DcMotor) currentComponent).getPower());
-                }
-
-                if (currentComponent.getClass().equals(ServoImpl.class)) {
-                    returnMap.put(currentComponentName, ((Servo) currentComponent).getPosition());
-                }
-
-            } else returnMap.put(currentComponentName, -999.9);
-
+            values[i] = track.adapters[i].read(track.components[i]);
         }
-
-        return returnMap;
     }
 
     private boolean isExternalStorageWritable() {
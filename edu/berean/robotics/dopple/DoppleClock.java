@@ -0,0 +1,68 @@
+package edu.berean.robotics.dopple;
+
+/**
+ * DoppleClock is where the recorder, the input pipeline, the loop scheduler and playback get
+ * the time, and how they wait.  On the robot it is the system clock.  Off the robot a replay
+ * harness can install a virtual clock, so that a recorded session runs the same way every
+ * time and as fast as the computer allows.
+ */
+public abstract class DoppleClock {
+
+    /** the real clock: System.nanoTime(), System.currentTimeMillis() and Thread.sleep() */
+    public static final DoppleClock SYSTEM = new DoppleClock() {
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+        public void sleepNanos(long nanos) throws InterruptedException {
+            if (nanos > 0) Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        }
+    };
+
+    private static volatile DoppleClock current = SYSTEM;
+
+    /**
+     * @return the clock in use
+     */
+    public static DoppleClock current(){
+        return current;
+    }
+
+    /**
+     * Install a clock, e.g. a virtual clock for a replay.  Pass SYSTEM to go back to real time.
+     */
+    public static void setCurrent(DoppleClock clock){
+        current = clock;
+    }
+
+    /**
+     * @return a monotonic time in nanoseconds, for measuring intervals
+     */
+    public abstract long nanoTime();
+
+    /**
+     * @return the wall clock time in milliseconds
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * Wait for a length of time.  A virtual clock doesn't wait; it moves forward instead.
+     *
+     * @throws InterruptedException
+     */
+    public abstract void sleepNanos(long nanos) throws InterruptedException;
+
+    /**
+     * Wait for a number of milliseconds, like LinearOpMode.sleep(): an interrupt ends the wait
+     * early and leaves the thread's interrupted flag set.
+     */
+    public void sleep(long millis){
+        try {
+            sleepNanos(millis * 1000000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+
+/**
+ * A DoppleComponentAdapter is how a DoppleBot records and plays back one kind of hardware
+ * device.  Every recorded device is boiled down to a single number (a motor's power, a
+ * servo's position, a digital channel's state...) and the adapter knows how to read that
+ * number from the device and how to write it back.
+ *
+ * Adapters are looked up by device type in the DoppleComponentRegistry.  To record a new kind
+ * of device, implement this interface and register it there.
+ */
+public interface DoppleComponentAdapter {
+
+    /**
+     * @return the device's current recorded value
+     */
+    double read(HardwareDevice device);
+
+    /**
+     * Set the device to a recorded value.
+     */
+    void write(HardwareDevice device, double value);
+
+    /**
+     * Stop whatever the device is doing.  Anything that moves on its own (motors, continuous
+     * rotation servos) goes to zero power; anything that holds a position is left alone.
+     */
+    void reset(HardwareDevice device);
+}
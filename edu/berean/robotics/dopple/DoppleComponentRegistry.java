@@ -0,0 +1,122 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.CRServo;
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DigitalChannel;
+import com.qualcomm.robotcore.hardware.DigitalChannelController;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The DoppleComponentRegistry maps hardware device types to the DoppleComponentAdapters that
+ * record and play them back.  Motors, continuous rotation servos, servos and digital
+ * channels are supported out of the box; register() adds more.
+ *
+ * A device's adapter is the first registered adapter whose type the device is an instance of,
+ * so wrapped devices and other implementations of the SDK interfaces work too.  The answer is
+ * cached for each device class, so finding an adapter is a single map lookup after the first
+ * device of a class.
+ */
+public class DoppleComponentRegistry {
+
+    private static String LOG_TAG = "DoppleComponentRegistry - ";
+
+    public static final DoppleComponentAdapter MOTOR = new DoppleComponentAdapter() {
+        public double read(HardwareDevice device) {
+            return ((DcMotor) device).getPower();
+        }
+        public void write(HardwareDevice device, double value) {
+            ((DcMotor) device).setPower(value);
+        }
+        public void reset(HardwareDevice device) {
+            ((DcMotor) device).setPower(0);
+        }
+    };
+
+    public static final DoppleComponentAdapter CR_SERVO = new DoppleComponentAdapter() {
+        public double read(HardwareDevice device) {
+            return ((CRServo) device).getPower();
+        }
+        public void write(HardwareDevice device, double value) {
+            ((CRServo) device).setPower(value);
+        }
+        public void reset(HardwareDevice device) {
+            ((CRServo) device).setPower(0);
+        }
+    };
+
+    public static final DoppleComponentAdapter SERVO = new DoppleComponentAdapter() {
+        public double read(HardwareDevice device) {
+            return ((Servo) device).getPosition();
+        }
+        public void write(HardwareDevice device, double value) {
+            ((Servo) device).setPosition(value);
+        }
+        public void reset(HardwareDevice device) {
+        }
+    };
+
+    /** records the channel state as 1 (true) or 0 (false); only output channels are played back */
+    public static final DoppleComponentAdapter DIGITAL_CHANNEL = new DoppleComponentAdapter() {
+        public double read(HardwareDevice device) {
+            return ((DigitalChannel) device).getState() ? 1 : 0;
+        }
+        public void write(HardwareDevice device, double value) {
+            DigitalChannel channel = (DigitalChannel) device;
+            if (channel.getMode() == DigitalChannelController.Mode.OUTPUT) channel.setState(value >= 0.5);
+        }
+        public void reset(HardwareDevice device) {
+        }
+    };
+
+    private static ArrayList<Class<?>> types = new ArrayList<Class<?>>();
+    private static ArrayList<DoppleComponentAdapter> adapters = new ArrayList<DoppleComponentAdapter>();
+    private static HashMap<Class<?>, DoppleComponentAdapter> resolved = new HashMap<Class<?>, DoppleComponentAdapter>();
+
+    static {
+        types.add(DcMotor.class);
+        adapters.add(MOTOR);
+        types.add(CRServo.class);
+        adapters.add(CR_SERVO);
+        types.add(Servo.class);
+        adapters.add(SERVO);
+        types.add(DigitalChannel.class);
+        adapters.add(DIGITAL_CHANNEL);
+    }
+
+    /**
+     * Add an adapter for a device type.  Adapters registered here are checked before the
+     * built in ones, so this can also replace how a built in type is recorded.
+     *
+     * @param type the device class or interface
+     * @param adapter the adapter for devices of that type
+     */
+    public static synchronized void register(Class<? extends HardwareDevice> type, DoppleComponentAdapter adapter){
+        types.add(0, type);
+        adapters.add(0, adapter);
+        resolved.clear();
+        RobotLog.i(LOG_TAG + "registered an adapter for " + type.getSimpleName());
+    }
+
+    /**
+     * @return the adapter for the device, or null if the device type can't be recorded
+     */
+    public static synchronized DoppleComponentAdapter forDevice(HardwareDevice device){
+        Class<?> deviceClass = device.getClass();
+        if (resolved.containsKey(deviceClass)) return resolved.get(deviceClass);
+
+        DoppleComponentAdapter adapter = null;
+        for (int i = 0; i < types.size(); i++) {
+            if (types.get(i).isInstance(device)) {
+                adapter = adapters.get(i);
+                break;
+            }
+        }
+        resolved.put(deviceClass, adapter);
+        return adapter;
+    }
+}
@@ -0,0 +1,268 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The DoppleDeviceInitializer builds and sets up the devices described by a list of
+ * DoppleDeviceSpecs.
+ *
+ * Every configuration command is a round trip to the device's controller, so the devices are
+ * grouped by controller and each controller is set up on its own thread; independent
+ * controllers are configured at the same time.  Within a controller the work is done in
+ * phases across all of its devices: directions and settings, encoder resets, one wait for
+ * the resets to settle, run modes, then initial values.  The wait for the encoders to reach
+ * zero happens once per controller rather than once per motor.
+ *
+ * The time spent on each phase, controller and device is kept, and getReport() lists it.
+ */
+public class DoppleDeviceInitializer {
+
+    private static String LOG_TAG = "DoppleDeviceInitializer - ";
+
+    public static final long SETTLE_TIMEOUT_MS = 250;
+    private static final long SETTLE_POLL_MS = 5;
+
+    private HardwareMap hardwareMap;
+    private DoppleDeviceSpec[] specs;
+    private HardwareDevice[] devices;
+    private long[] deviceNanos;
+    private LinkedHashMap<HardwareDevice, ControllerGroup> groups = new LinkedHashMap<HardwareDevice, ControllerGroup>();
+    private long lookupNanos = 0;
+    private long configureNanos = 0;
+    private long totalNanos = 0;
+
+    public DoppleDeviceInitializer(HardwareMap hardwareMap, DoppleDeviceSpec... specs){
+        this.hardwareMap = hardwareMap;
+        this.specs = specs;
+        this.devices = new HardwareDevice[specs.length];
+        this.deviceNanos = new long[specs.length];
+    }
+
+    /**
+     * Look up and initialize every device.  A missing optional device is skipped with a warning;
+     * a missing required device is an error.
+     */
+    public void run(){
+
+        long start = System.nanoTime();
+
+        // look up every device and sort it into its controller's group
+        for (int i = 0; i < specs.length; i++) {
+            long t = System.nanoTime();
+            devices[i] = lookUp(specs[i]);
+            if (devices[i] != null) {
+                HardwareDevice controller = specs[i].type == DoppleDeviceSpec.Type.MOTOR
+                        ? ((DcMotor) devices[i]).getController()
+                        : ((Servo) devices[i]).getController();
+                ControllerGroup group = groups.get(controller);
+                if (group == null) {
+                    group = new ControllerGroup(controller);
+                    groups.put(controller, group);
+                }
+                group.indexes.add(i);
+            }
+            deviceNanos[i] += System.nanoTime() - t;
+        }
+        lookupNanos = System.nanoTime() - start;
+
+        // configure each controller on its own thread
+        long configureStart = System.nanoTime();
+        if (groups.size() == 1) {
+            groups.values().iterator().next().configure();
+        } else if (groups.size() > 1) {
+            ExecutorService executor = Executors.newFixedThreadPool(groups.size());
+            try {
+                List<Future<?>> futures = new ArrayList<Future<?>>();
+                for (final ControllerGroup group : groups.values()) {
+                    futures.add(executor.submit(new Runnable() {
+                        public void run() {
+                            group.configure();
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                RobotLog.e(LOG_TAG + "initialization failed: " + e.getCause());
+                throw new RuntimeException("device initialization failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("device initialization was interrupted", e);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        configureNanos = System.nanoTime() - configureStart;
+
+        totalNanos = System.nanoTime() - start;
+    }
+
+    private HardwareDevice lookUp(DoppleDeviceSpec spec){
+        try {
+            if (spec.type == DoppleDeviceSpec.Type.MOTOR) {
+                return hardwareMap.dcMotor.get(spec.name);
+            } else {
+                return hardwareMap.servo.get(spec.name);
+            }
+        } catch (IllegalArgumentException e) {
+            if (spec.optional) {
+                RobotLog.w(LOG_TAG + "optional device not found, skipping: " + spec.toString());
+                return null;
+            }
+            RobotLog.e(LOG_TAG + "required device not found: " + spec.toString());
+            throw new RuntimeException("required device not found in the robot configuration: " + spec.name, e);
+        }
+    }
+
+    public int getDeviceCount(){
+        return specs.length;
+    }
+
+    public DoppleDeviceSpec getSpec(int index){
+        return specs[index];
+    }
+
+    /**
+     * @return the device, or null if it was optional and not found
+     */
+    public HardwareDevice getDevice(int index){
+        return devices[index];
+    }
+
+    /**
+     * @return the time spent initializing the device, in milliseconds
+     */
+    public double getDeviceMs(int index){
+        return deviceNanos[index] / 1e6;
+    }
+
+    public double getTotalMs(){
+        return totalNanos / 1e6;
+    }
+
+    /**
+     * @return the total, the time for each phase and controller, and a line for each device
+     */
+    public String getReport(){
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("initialized %d devices on %d controllers in %.1f ms (lookup %.1f ms, configure %.1f ms)",
+                specs.length, groups.size(), getTotalMs(), lookupNanos / 1e6, configureNanos / 1e6));
+        for (ControllerGroup group : groups.values()) {
+            report.append(String.format("\n  controller %-20s %d devices, %.1f ms (settle %.1f ms%s)",
+                    group.name, group.indexes.size(), group.configureNanos / 1e6, group.settleNanos / 1e6,
+                    group.settled ? "" : ", timed out"));
+        }
+        for (int i = 0; i < specs.length; i++) {
+            report.append(String.format("\n  %-20s %s", specs[i].name,
+                    devices[i] == null ? "skipped" : String.format("%.1f ms", getDeviceMs(i))));
+        }
+        return report.toString();
+    }
+
+    /**
+     * The devices on one controller.  configure() runs on the controller's own thread and only
+     * touches its own devices.
+     */
+    private class ControllerGroup {
+        final String name;
+        final ArrayList<Integer> indexes = new ArrayList<Integer>();
+        long configureNanos = 0;
+        long settleNanos = 0;
+        boolean settled = true;
+
+        ControllerGroup(HardwareDevice controller){
+            this.name = controller.getDeviceName();
+        }
+
+        void configure(){
+
+            long start = System.nanoTime();
+
+            // directions and motor settings that don't depend on the run mode
+            for (int i : indexes) {
+                long t = System.nanoTime();
+                DoppleDeviceSpec spec = specs[i];
+                if (spec.type == DoppleDeviceSpec.Type.MOTOR) {
+                    DcMotor motor = (DcMotor) devices[i];
+                    if (spec.reverse) motor.setDirection(DcMotor.Direction.REVERSE);
+                    if (spec.zeroPowerBehavior != null) motor.setZeroPowerBehavior(spec.zeroPowerBehavior);
+                    if (spec.maxSpeed > 0) motor.setMaxSpeed(spec.maxSpeed);
+                } else {
+                    if (spec.reverse) ((Servo) devices[i]).setDirection(Servo.Direction.REVERSE);
+                }
+                deviceNanos[i] += System.nanoTime() - t;
+            }
+
+            // encoder resets, all together, then one wait for all of them
+            boolean anyReset = false;
+            for (int i : indexes) {
+                if (!specs[i].resetEncoder) continue;
+                long t = System.nanoTime();
+                ((DcMotor) devices[i]).setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+                deviceNanos[i] += System.nanoTime() - t;
+                anyReset = true;
+            }
+            if (anyReset) settle();
+
+            // run modes
+            for (int i : indexes) {
+                if (specs[i].type != DoppleDeviceSpec.Type.MOTOR) continue;
+                long t = System.nanoTime();
+                ((DcMotor) devices[i]).setMode(specs[i].runMode);
+                deviceNanos[i] += System.nanoTime() - t;
+            }
+
+            // initial values
+            for (int i : indexes) {
+                long t = System.nanoTime();
+                if (specs[i].type == DoppleDeviceSpec.Type.MOTOR) {
+                    ((DcMotor) devices[i]).setPower(specs[i].initialValue);
+                } else {
+                    ((Servo) devices[i]).setPosition(specs[i].initialValue);
+                }
+                deviceNanos[i] += System.nanoTime() - t;
+            }
+
+            configureNanos = System.nanoTime() - start;
+        }
+
+        // wait until every reset encoder on this controller reads zero
+        private void settle(){
+            long start = System.nanoTime();
+            long deadline = start + SETTLE_TIMEOUT_MS * 1000000L;
+            settled = false;
+            while (!settled && System.nanoTime() < deadline) {
+                settled = true;
+                for (int i : indexes) {
+                    if (specs[i].resetEncoder && ((DcMotor) devices[i]).getCurrentPosition() != 0) {
+                        settled = false;
+                        break;
+                    }
+                }
+                if (!settled) {
+                    try {
+                        Thread.sleep(SETTLE_POLL_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            settleNanos = System.nanoTime() - start;
+            if (!settled) RobotLog.w(LOG_TAG + "encoders on " + name + " did not reset in time");
+        }
+    }
+}
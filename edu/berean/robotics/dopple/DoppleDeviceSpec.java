@@ -0,0 +1,124 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * A DoppleDeviceSpec describes one motor or servo on a DoppleBot: the name it has in the robot
+ * configuration, its direction, how it is set up, and whether it is recorded.  A robot lists
+ * its specs and DoppleBot.initializeDevices() builds, initializes and registers all of them
+ * in one pass, so a device can't be initialized and then forgotten when registering.
+ *
+ * Each recorded device is on a track.  A track's devices are recorded together, with their own
+ * change detection, so a change on one track doesn't add a row to the others (see
+ * DoppleBotRecorder).  Devices that change together, like the drive motors, belong on one track.
+ *
+ * Specs are immutable.  Use the static methods for the common cases and the with...() methods
+ * (which return a changed copy) for anything else.
+ */
+public class DoppleDeviceSpec {
+
+    public enum Type { MOTOR, SERVO }
+
+    public static final String DEFAULT_TRACK = "robot";
+
+    public final String name;
+    public final Type type;
+    public final boolean reverse;
+    public final DcMotor.RunMode runMode;
+    public final boolean resetEncoder;
+    public final DcMotor.ZeroPowerBehavior zeroPowerBehavior;   // null leaves the controller default
+    public final int maxSpeed;                                  // encoder counts per second; 0 leaves the default
+    public final double initialValue;                           // power for a motor, position for a servo
+    public final boolean recorded;
+    public final String recordName;
+    public final boolean optional;
+    public final String track;
+
+    public DoppleDeviceSpec(String name, Type type, boolean reverse, DcMotor.RunMode runMode, boolean resetEncoder,
+                            DcMotor.ZeroPowerBehavior zeroPowerBehavior, int maxSpeed, double initialValue,
+                            boolean recorded, String recordName, boolean optional, String track){
+        this.name = name;
+        this.type = type;
+        this.reverse = reverse;
+        this.runMode = runMode;
+        this.resetEncoder = resetEncoder;
+        this.zeroPowerBehavior = zeroPowerBehavior;
+        this.maxSpeed = maxSpeed;
+        this.initialValue = initialValue;
+        this.recorded = recorded;
+        this.recordName = recordName;
+        this.optional = optional;
+        this.track = track;
+    }
+
+    /**
+     * A motor that runs without its encoder, starting at zero power.
+     */
+    public static DoppleDeviceSpec motor(String name, boolean reverse){
+        return new DoppleDeviceSpec(name, Type.MOTOR, reverse, DcMotor.RunMode.RUN_WITHOUT_ENCODER, false,
+                null, 0, 0, true, name, false, DEFAULT_TRACK);
+    }
+
+    /**
+     * A motor that has its encoder reset and then runs using it, braking at zero power.
+     */
+    public static DoppleDeviceSpec motorWithEncoder(String name, boolean reverse){
+        return new DoppleDeviceSpec(name, Type.MOTOR, reverse, DcMotor.RunMode.RUN_USING_ENCODER, true,
+                DcMotor.ZeroPowerBehavior.BRAKE, 0, 0, true, name, false, DEFAULT_TRACK);
+    }
+
+    /**
+     * A servo that starts at the given position.
+     */
+    public static DoppleDeviceSpec servo(String name, double position, boolean reverse){
+        return new DoppleDeviceSpec(name, Type.SERVO, reverse, null, false,
+                null, 0, position, true, name, false, DEFAULT_TRACK);
+    }
+
+    /**
+     * @return a copy that is skipped (with a warning) if the device is not in the robot configuration
+     */
+    public DoppleDeviceSpec optional(){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, recorded, recordName, true, track);
+    }
+
+    /**
+     * @return a copy that is initialized but not recorded
+     */
+    public DoppleDeviceSpec notRecorded(){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, false, recordName, optional, track);
+    }
+
+    /**
+     * @return a copy that is recorded under a different name, e.g. to keep older recordings playable
+     */
+    public DoppleDeviceSpec recordedAs(String recordName){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, recorded, recordName, optional, track);
+    }
+
+    /**
+     * @return a copy that is recorded on a track, e.g. "drive"
+     */
+    public DoppleDeviceSpec onTrack(String track){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, recorded, recordName, optional, track);
+    }
+
+    public DoppleDeviceSpec withMaxSpeed(int maxSpeed){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, recorded, recordName, optional, track);
+    }
+
+    public DoppleDeviceSpec withZeroPowerBehavior(DcMotor.ZeroPowerBehavior zeroPowerBehavior){
+        return new DoppleDeviceSpec(name, type, reverse, runMode, resetEncoder, zeroPowerBehavior, maxSpeed,
+                initialValue, recorded, recordName, optional, track);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s %s%s%s", type, name, reverse ? " (reversed)" : "", optional ? " (optional)" : "");
+    }
+}
@@ -0,0 +1,19 @@
+package edu.berean.robotics.dopple;
+
+/**
+ * A DoppleEventListener is called when playback reaches an event that was marked in the
+ * recording (see DoppleBot.mark() and DoppleBot.addEventListener()).
+ *
+ * It is called on the playback thread, between device writes, so playback waits for it.  Keep
+ * it short; anything it takes longer than a loop or two makes the rest of the playback late.
+ * A listener may move recorded devices; what it sets holds until the next row, which sets every
+ * device back to the recording.
+ */
+public interface DoppleEventListener {
+
+    /**
+     * @param code the event's code
+     * @param payload the value marked with it, or 0
+     */
+    void onEvent(int code, double payload);
+}
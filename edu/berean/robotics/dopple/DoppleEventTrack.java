@@ -0,0 +1,82 @@
+package edu.berean.robotics.dopple;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A DoppleEventTrack is the sparse events marked during a recording: moments like "catapult
+ * fired" or "switched to sniper mode" that aren't a device's state.  Each event is an integer
+ * code, chosen by the opmode, with an optional payload, at a time in milliseconds from the start
+ * of the recording.  Events are kept in primitive arrays so marking one doesn't allocate.
+ *
+ * In a recording file the events follow the tracks as one more block, with the header
+ * [event(ms), code, payload] and one row per event.  Unlike the tracks, an event's time is from
+ * the start of the recording, not how long something was held.
+ */
+public class DoppleEventTrack {
+
+    public static final String HEADER = "event(ms)";
+
+    private long[] times = new long[16];
+    private int[] codes = new int[16];
+    private double[] payloads = new double[16];
+    private int size = 0;
+
+    /**
+     * Add an event.  Events are expected in time order.
+     */
+    public void add(long timeMs, int code, double payload){
+        if (size == times.length) {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+        }
+        times[size] = timeMs;
+        codes[size] = code;
+        payloads[size] = payload;
+        size++;
+    }
+
+    /**
+     * Move every event into a window of the recording and make its time from the window's
+     * start.  Events outside the window are moved to its nearest end rather than dropped, so an
+     * event marked while the robot sat idle is still played back.
+     */
+    public void clampTimes(long fromMs, long toMs){
+        for (int i = 0; i < size; i++) {
+            times[i] = Math.min(Math.max(times[i], fromMs), toMs) - fromMs;
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public long getTimeMs(int event){
+        return times[event];
+    }
+
+    public int getCode(int event){
+        return codes[event];
+    }
+
+    public double getPayload(int event){
+        return payloads[event];
+    }
+
+    /**
+     * Write the events as a recording file block.  Nothing is written if there are no events.
+     */
+    public void write(Writer writer) throws IOException {
+        if (size == 0) return;
+        writer.write("[" + HEADER + ", code, payload]\n");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            line.setLength(0);
+            line.append('[').append(times[i]).append(", ").append(codes[i]).append(", ").append(payloads[i]).append("]\n");
+            writer.write(line.toString());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package edu.berean.robotics.dopple;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * DoppleMeasurements are the samples of a recording's measured channels (see MeasuredChannel).
+ * Each channel has its own times and values, in primitive arrays, since each is sampled at its
+ * own rate.  Times are milliseconds from the start of the recording.
+ *
+ * In a recording file each channel is a block after the tracks, with the header
+ * [measured(ms), channel name] and one [time, value] row per sample.
+ */
+public class DoppleMeasurements {
+
+    public static final String HEADER = "measured(ms)";
+
+    private ArrayList<String> names = new ArrayList<String>();
+    private ArrayList<long[]> times = new ArrayList<long[]>();
+    private ArrayList<double[]> values = new ArrayList<double[]>();
+    private int[] sizes = new int[0];
+
+    /**
+     * @return the channel's number, for add()
+     */
+    public int addChannel(String name){
+        names.add(name);
+        times.add(new long[64]);
+        values.add(new double[64]);
+        sizes = Arrays.copyOf(sizes, names.size());
+        return names.size() - 1;
+    }
+
+    public void add(int channel, long timeMs, double value){
+        int size = sizes[channel];
+        if (size == times.get(channel).length) {
+            times.set(channel, Arrays.copyOf(times.get(channel), size * 2));
+            values.set(channel, Arrays.copyOf(values.get(channel), size * 2));
+        }
+        times.get(channel)[size] = timeMs;
+        values.get(channel)[size] = value;
+        sizes[channel] = size + 1;
+    }
+
+    /**
+     * Keep only the samples in a window of the recording, with their times from the window's
+     * start.  Unlike events, samples outside the window are dropped; they only measured the
+     * robot sitting idle.
+     */
+    public void trim(long fromMs, long toMs){
+        for (int channel = 0; channel < names.size(); channel++) {
+            long[] channelTimes = times.get(channel);
+            double[] channelValues = values.get(channel);
+            int kept = 0;
+            for (int i = 0; i < sizes[channel]; i++) {
+                if (channelTimes[i] < fromMs || channelTimes[i] > toMs) continue;
+                channelTimes[kept] = channelTimes[i] - fromMs;
+                channelValues[kept] = channelValues[i];
+                kept++;
+            }
+            sizes[channel] = kept;
+        }
+    }
+
+    public int getChannelCount(){
+        return names.size();
+    }
+
+    public String getName(int channel){
+        return names.get(channel);
+    }
+
+    /**
+     * @return the channel's number, or -1 if there is no channel with that name
+     */
+    public int getChannel(String name){
+        return names.indexOf(name);
+    }
+
+    public int size(int channel){
+        return sizes[channel];
+    }
+
+    public long getTimeMs(int channel, int sample){
+        return times.get(channel)[sample];
+    }
+
+    public double getValue(int channel, int sample){
+        return values.get(channel)[sample];
+    }
+
+    /**
+     * Write each channel as a recording file block.
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int channel = 0; channel < names.size(); channel++) {
+            writer.write("[" + HEADER + ", " + names.get(channel) + "]\n");
+            long[] channelTimes = times.get(channel);
+            double[] channelValues = values.get(channel);
+            for (int i = 0; i < sizes[channel]; i++) {
+                line.setLength(0);
+                line.append('[').append(channelTimes[i]).append(", ").append(channelValues[i]).append("]\n");
+                writer.write(line.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package edu.berean.robotics.dopple;
+
+import android.os.Environment;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * The FlightRecorder keeps the last few seconds of a robot's state so there is something to
+ * look at when an opmode that isn't recording goes wrong.  Every update() it reads each
+ * component through its adapter, the same values a recording has, and the time since the last
+ * update, into a ring buffer that is allocated once.  Nothing is written until dump() is called
+ * (on request, on an exception or on an emergency stop; see DoppleBot).
+ *
+ * A dump goes to ROBO_DATA/flight/ in the recording file format, one row per update, with the
+ * loop period as an extra last column.  It can be loaded with DoppleBotHistoryHelper and played
+ * back; the player skips the loop column.
+ */
+public class FlightRecorder {
+
+    private static String LOG_TAG = "FlightRecorder - ";
+    private static String FLIGHT_DIRECTORY = "/ROBO_DATA/flight/";
+    private static String FLIGHT_FILE_BASE_NAME = "flight-";
+    private static String FLIGHT_FILE_NAME_PATTERN = "yyMMdd_HHmmss";
+    private static String FLIGHT_FILE_EXT = ".txt";
+
+    public static final double DEFAULT_SECONDS = 10;
+    public static final long FASTEST_LOOP_MS = 10;   // the buffer holds the full time at this loop rate or slower
+
+    private String[] componentNames;
+    private HardwareDevice[] components;
+    private DoppleComponentAdapter[] adapters;
+
+    // the ring: sample s is at times[s] and values[s * components.length ...]
+    private long[] times;
+    private int[] loopMicros;
+    private double[] values;
+    private int next = 0;
+    private int count = 0;
+    private long lastUpdateNanos = -1;
+    private long windowNanos;
+
+    public FlightRecorder(HashMap<String, HardwareDevice> robotComponents){
+        this(robotComponents, DEFAULT_SECONDS);
+    }
+
+    /**
+     * @param robotComponents the components to keep, as DoppleBot.getRobotComponents()
+     * @param seconds how much history to keep
+     */
+    public FlightRecorder(HashMap<String, HardwareDevice> robotComponents, double seconds){
+
+        int componentCount = robotComponents.size();
+        componentNames = new String[componentCount];
+        components = new HardwareDevice[componentCount];
+        adapters = new DoppleComponentAdapter[componentCount];
+        int i = 0;
+        for (String name : robotComponents.keySet()) {
+            componentNames[i] = name;
+            components[i] = robotComponents.get(name);
+            adapters[i] = DoppleComponentRegistry.forDevice(components[i]);
+            if (adapters[i] == null) {
+                RobotLog.e(LOG_TAG + String.format("%s is a %s, which can't be recorded", name, components[i].getClass().getName()));
+                throw new RuntimeException("Could not start the flight recorder.  No adapter for component " + name);
+            }
+            i++;
+        }
+
+        int capacity = (int) Math.ceil(seconds * 1000 / FASTEST_LOOP_MS);
+        times = new long[capacity];
+        loopMicros = new int[capacity];
+        values = new double[capacity * componentCount];
+        windowNanos = (long) (seconds * 1e9);
+        RobotLog.i(LOG_TAG + String.format("keeping %.0f s of %d components in %d samples", seconds, componentCount, capacity));
+    }
+
+    /**
+     * Keep the robot's current state.  Call this once a loop; it doesn't allocate.
+     */
+    public void update(){
+
+        long now = DoppleClock.current().nanoTime();
+        int base = next * components.length;
+        for (int i = 0; i < components.length; i++) {
+            values[base + i] = adapters[i].read(components[i]);
+        }
+        times[next] = now;
+        loopMicros[next] = lastUpdateNanos < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, (now - lastUpdateNanos) / 1000);
+        lastUpdateNanos = now;
+
+        next = (next + 1) % times.length;
+        if (count < times.length) count++;
+    }
+
+    /**
+     * @return how many samples the recorder holds
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Write what the recorder holds to ROBO_DATA/flight/.  The recorder keeps recording.
+     *
+     * @param reason why the dump was taken; it goes in the file name
+     * @return the file written, or null if it could not be written
+     */
+    public File dump(String reason){
+
+        if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState())) {
+            RobotLog.w(LOG_TAG + "external storage is unavailable; flight recorder not dumped");
+            return null;
+        }
+
+        File path = new File(Environment.getExternalStorageDirectory().getAbsolutePath() + FLIGHT_DIRECTORY);
+        if (!path.isDirectory() && !path.mkdirs()) {
+            RobotLog.w(LOG_TAG + String.format("%s directory COULD NOT be created.", path.getAbsolutePath()));
+            return null;
+        }
+
+        SimpleDateFormat fileNameDateFormatter = new SimpleDateFormat(FLIGHT_FILE_NAME_PATTERN, new Locale("en"));
+        String createDate = fileNameDateFormatter.format(new Date(DoppleClock.current().currentTimeMillis()));
+        File flightFile = new File(path, FLIGHT_FILE_BASE_NAME + createDate + "-" + reason + FLIGHT_FILE_EXT);
+
+        try {
+            FileWriter writer = new FileWriter(flightFile);
+            try {
+                write(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            RobotLog.e(LOG_TAG + String.format("error dumping flight recorder: %s", e.getMessage()));
+            return null;
+        }
+
+        RobotLog.i(LOG_TAG + String.format("dumped %d samples (%s) to %s", count, reason, flightFile.getName()));
+        return flightFile;
+    }
+
+    /**
+     * Write the samples from the last window, oldest first, in the recording file format.  Each
+     * row's time is how long its state lasted, until the next sample; the last row's is 0.
+     */
+    public void write(Writer writer) throws IOException {
+
+        StringBuilder line = new StringBuilder("[runtime(ms)");
+        for (String name : componentNames) line.append(", ").append(name);
+        line.append(", loop(ms)]\n");
+        writer.write(line.toString());
+
+        int first = (next - count + times.length) % times.length;
+        long newest = times[(next - 1 + times.length) % times.length];
+        for (int n = 0; n < count; n++) {
+            int sample = (first + n) % times.length;
+            if (newest - times[sample] > windowNanos) continue;
+
+            long heldMs = n == count - 1 ? 0 : (times[(sample + 1) % times.length] - times[sample]) / 1000000L;
+            line.setLength(0);
+            line.append('[').append(heldMs);
+            int base = sample * components.length;
+            for (int i = 0; i < components.length; i++) line.append(", ").append(values[base + i]);
+            line.append(", ").append(loopMicros[sample] / 1000.0).append("]\n");
+            writer.write(line.toString());
+        }
+    }
+}
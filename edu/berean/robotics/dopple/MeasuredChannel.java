@@ -0,0 +1,141 @@
+package edu.berean.robotics.dopple;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.LightSensor;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import edu.berean.robotics.sensors.HardwareReadCache;
+
+/**
+ * A MeasuredChannel is something a recording measures, rather than commands: an encoder's
+ * position, a motor's speed, a light sensor, the battery.  Motor powers and servo positions in a
+ * recording are only what the robot was told to do; measured channels show what it did.
+ *
+ * Each channel is sampled at its own period while the robot records (see
+ * DoppleBot.addMeasuredChannel()).  Measured values are kept apart from the commanded state and
+ * never cause a row to be added to a track.
+ */
+public abstract class MeasuredChannel {
+
+    public final String name;
+    public final long periodMs;
+
+    protected MeasuredChannel(String name, long periodMs){
+        this.name = name;
+        this.periodMs = periodMs;
+    }
+
+    /**
+     * @param reads the robot's read cache; devices in it are read through it, so an encoder the
+     *              loop (or another channel) has already read isn't read again.  May be null.
+     * @param nowNanos the DoppleClock time of the sample
+     * @return the channel's value now
+     */
+    public abstract double sample(HardwareReadCache reads, long nowNanos);
+
+    /**
+     * Forget anything kept from earlier samples.  The recorder calls this when a recording
+     * starts, since a robot's channels are made once and used for every recording.
+     */
+    public void reset(){
+    }
+
+    // an encoder reading shared by an encoder's channels, so the channels sampled at the same
+    // time read the encoder once
+    private static class EncoderReading {
+        private DcMotor motor;
+        private long nanos = -1;
+        private int position;
+
+        EncoderReading(DcMotor motor){
+            this.motor = motor;
+        }
+
+        int read(HardwareReadCache reads, long nowNanos){
+            if (nowNanos != nanos) {
+                position = reads == null ? motor.getCurrentPosition() : reads.getCurrentPosition(motor);
+                nanos = nowNanos;
+            }
+            return position;
+        }
+    }
+
+    private static MeasuredChannel position(String name, final EncoderReading encoder, long periodMs){
+        return new MeasuredChannel(name, periodMs) {
+            public double sample(HardwareReadCache reads, long nowNanos) {
+                return encoder.read(reads, nowNanos);
+            }
+        };
+    }
+
+    private static MeasuredChannel velocity(String name, final EncoderReading encoder, long periodMs){
+        return new MeasuredChannel(name, periodMs) {
+            private int lastPosition;
+            private long lastNanos = -1;
+
+            public double sample(HardwareReadCache reads, long nowNanos) {
+                int position = encoder.read(reads, nowNanos);
+                double velocity = lastNanos < 0 || nowNanos == lastNanos ? 0
+                        : (position - lastPosition) * 1e9 / (nowNanos - lastNanos);
+                lastPosition = position;
+                lastNanos = nowNanos;
+                return velocity;
+            }
+
+            public void reset() {
+                lastNanos = -1;
+            }
+        };
+    }
+
+    /**
+     * A motor's encoder position, in counts.
+     */
+    public static MeasuredChannel encoderPosition(String name, DcMotor motor, long periodMs){
+        return position(name, new EncoderReading(motor), periodMs);
+    }
+
+    /**
+     * A motor's speed, in encoder counts per second, from the change in its encoder since the
+     * last sample.  The first sample of each recording is 0.
+     */
+    public static MeasuredChannel encoderVelocity(String name, DcMotor motor, long periodMs){
+        return velocity(name, new EncoderReading(motor), periodMs);
+    }
+
+    /**
+     * A motor's encoder position and speed, as name_position and name_velocity, from one read
+     * of the encoder per sample.
+     *
+     * @return the position and velocity channels, to add together
+     */
+    public static MeasuredChannel[] encoder(String name, DcMotor motor, long periodMs){
+        EncoderReading encoder = new EncoderReading(motor);
+        return new MeasuredChannel[] {
+                position(name + "_position", encoder, periodMs),
+                velocity(name + "_velocity", encoder, periodMs)
+        };
+    }
+
+    /**
+     * A light sensor's reading, 0 to 1.
+     */
+    public static MeasuredChannel light(String name, final LightSensor sensor, long periodMs){
+        return new MeasuredChannel(name, periodMs) {
+            public double sample(HardwareReadCache reads, long nowNanos) {
+                return reads == null ? sensor.getLightDetected() : reads.getLightDetected(sensor);
+            }
+        };
+    }
+
+    /**
+     * The battery voltage, from a motor controller's voltage sensor.
+     */
+    public static MeasuredChannel batteryVoltage(String name, final VoltageSensor sensor, long periodMs){
+        return new MeasuredChannel(name, periodMs) {
+            public double sample(HardwareReadCache reads, long nowNanos) {
+                return sensor.getVoltage();
+            }
+        };
+    }
+}
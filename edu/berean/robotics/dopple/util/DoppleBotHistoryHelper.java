@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
+import edu.berean.robotics.dopple.DoppleEventTrack;
+import edu.berean.robotics.dopple.DoppleMeasurements;
 
 /**
  * This class provides static helper methods to allow the caller
@@ -19,6 +21,8 @@ import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
  */
 public class DoppleBotHistoryHelper {
 
+    private static String INPUT_DIRECTORY = "input";
+
     /**
      * Use this method to get a completed DoppleBotHistoryRecord instance from the contents
      * of a file.  File should have the format of
@@ -27,31 +31,119 @@ public class DoppleBotHistoryHelper {
      * [timeint, value1, value2, ... value n]
      * [timeint, value1, value2, ... value n]
      *
+     * A recording made in tracks has one such table per track, one after the other.  Its tracks
+     * are merged into a single table (see mergeTracks()), so it plays back like any other.  Any
+     * events marked in the recording come with it, in getEvents().
+     *
      * @param historyFile
      * @return
      */
     public static DoppleBotHistoryRecord getHistoryFromFile(File historyFile) {
 
-        DoppleBotHistoryRecord historyTable = new DoppleBotHistoryRecord();
+        ArrayList<DoppleBotHistoryRecord> tracks = new ArrayList<DoppleBotHistoryRecord>();
+        DoppleEventTrack events = new DoppleEventTrack();
+        if (!readRecording(historyFile, tracks, events, new DoppleMeasurements()) || tracks.isEmpty()) return new DoppleBotHistoryRecord();
+
+        DoppleBotHistoryRecord history = mergeTracks(tracks);
+        history.setEvents(events);
+        return history;
+    }
+
+    /**
+     * Get each track of a recording as its own DoppleBotHistoryRecord.  Each header row in the
+     * file starts a track; a recording made before tracks has just one.  The measured channels
+     * and events, if any, are not tracks (see getMeasurementsFromFile() and getEventsFromFile()).
+     *
+     * @param historyFile
+     * @return the tracks, or an empty list if the file could not be read
+     */
+    public static ArrayList<DoppleBotHistoryRecord> getTracksFromFile(File historyFile) {
+
+        ArrayList<DoppleBotHistoryRecord> tracks = new ArrayList<DoppleBotHistoryRecord>();
+        readRecording(historyFile, tracks, new DoppleEventTrack(), new DoppleMeasurements());
+        return tracks;
+    }
+
+    /**
+     * Get the events marked in a recording.
+     *
+     * @param historyFile
+     * @return the events; empty if there are none or the file could not be read
+     */
+    public static DoppleEventTrack getEventsFromFile(File historyFile) {
+
+        DoppleEventTrack events = new DoppleEventTrack();
+        if (!readRecording(historyFile, new ArrayList<DoppleBotHistoryRecord>(), events, new DoppleMeasurements())) return new DoppleEventTrack();
+        return events;
+    }
+
+    /**
+     * Get the samples of a recording's measured channels.
+     *
+     * @param historyFile
+     * @return the measurements; empty if there are none or the file could not be read
+     */
+    public static DoppleMeasurements getMeasurementsFromFile(File historyFile) {
+
+        DoppleMeasurements measurements = new DoppleMeasurements();
+        if (!readRecording(historyFile, new ArrayList<DoppleBotHistoryRecord>(), new DoppleEventTrack(), measurements)) return new DoppleMeasurements();
+        return measurements;
+    }
+
+    // reads the blocks of a recording: tracks into tracks, the event block into events and the
+    // measured channel blocks into measurements
+    private static boolean readRecording(File historyFile, ArrayList<DoppleBotHistoryRecord> tracks,
+                                         DoppleEventTrack events, DoppleMeasurements measurements) {
 
         if (fileIsValid(historyFile)){
             try{
                 BufferedReader reader = new BufferedReader(new FileReader(historyFile));
+                DoppleBotHistoryRecord historyTable = null;
+                boolean inEvents = false;
+                int measuredChannel = -1;
 
-                //read and set the headerLine data
-                String headerLine = reader.readLine();
-                headerLine = headerLine.substring(1);
-                headerLine = headerLine.replaceFirst("]", "");
-                List headerList = Arrays.asList(headerLine.split("\\s*,\\s*"));
-                RobotLog.i(String.format("HELPER: - %s", headerList.toString()));
-                ArrayList<String> arrayListHeader = new ArrayList(headerList);
-                historyTable = new DoppleBotHistoryRecord(arrayListHeader);
+                String line;
+                while ((line = reader.readLine()) != null) {
 
-                //read and set the values data
-                String valueLine;
+                    if (line.isEmpty()) continue;
+                    if (line.startsWith("[" + DoppleEventTrack.HEADER)) {
+                        inEvents = true;
+                        measuredChannel = -1;
+                        continue;
+                    }
+                    if (line.startsWith("[" + DoppleMeasurements.HEADER)) {
+                        String name = line.substring(DoppleMeasurements.HEADER.length() + 1, line.indexOf(']'));
+                        measuredChannel = measurements.addChannel(name.replaceFirst("^\\s*,\\s*", ""));
+                        inEvents = false;
+                        continue;
+                    }
+                    if (inEvents) {
+                        String eventLine[] = line.substring(1, line.indexOf(']')).split("\\s*,\\s*");
+                        events.add(Long.parseLong(eventLine[0]), Integer.parseInt(eventLine[1]),
+                                eventLine.length > 2 ? Double.parseDouble(eventLine[2]) : 0);
+                        continue;
+                    }
+                    if (measuredChannel >= 0) {
+                        String sampleLine[] = line.substring(1, line.indexOf(']')).split("\\s*,\\s*");
+                        measurements.add(measuredChannel, Long.parseLong(sampleLine[0]), Double.parseDouble(sampleLine[1]));
+                        continue;
+                    }
+                    if (isHeaderLine(line)) {
+                        //read and set the headerLine data
+                        String headerLine = line.substring(1);
+                        headerLine = headerLine.replaceFirst("]", "");
+                        List headerList = Arrays.asList(headerLine.split("\\s*,\\s*"));
+                        RobotLog.i(String.format("HELPER: - %s", headerList.toString()));
+                        ArrayList<String> arrayListHeader = new ArrayList(headerList);
+                        historyTable = new DoppleBotHistoryRecord(arrayListHeader);
+                        tracks.add(historyTable);
+                        inEvents = false;
+                        measuredChannel = -1;
+                        continue;
+                    }
 
-                while ((valueLine = reader.readLine()) != null) {
-                    valueLine = valueLine.substring(1);
+                    //read and set the values data
+                    String valueLine = line.substring(1);
                     valueLine = valueLine.replaceFirst("]","");
                     String valueLineString[] = valueLine.split("\\s*,\\s*");
                     //handle the first value - it's an int
@@ -69,10 +161,89 @@ public class DoppleBotHistoryHelper {
 
             }catch (IOException e){
                 RobotLog.e(e.getMessage());
+                tracks.clear();
+                return false;
             }
         }
 
-        return historyTable;
+        return true;
+    }
+
+    // a header row starts with a column name; a value row starts with a time
+    static boolean isHeaderLine(String line){
+        return line.length() > 1 && !Character.isDigit(line.charAt(1)) && line.charAt(1) != '-';
+    }
+
+    /**
+     * Merge the tracks of a recording onto one timeline: a single table with every track's
+     * components, and a row wherever any track changed.  Between its own changes each track's
+     * values are repeated, so DoppleBotPlayer, which only writes the values that change, sets
+     * only the devices whose track changed.  A track that ends before the others holds its last
+     * state.
+     *
+     * @param tracks the tracks, each a table whose times add up from the start of the recording
+     * @return the merged table; the track itself if there is only one
+     */
+    public static DoppleBotHistoryRecord mergeTracks(List<DoppleBotHistoryRecord> tracks) {
+
+        ArrayList<DoppleBotHistoryRecord> playable = new ArrayList<DoppleBotHistoryRecord>();
+        for (DoppleBotHistoryRecord track : tracks) {
+            if (!track.getValueRows().isEmpty()) playable.add(track);
+        }
+        if (playable.isEmpty()) return tracks.isEmpty() ? new DoppleBotHistoryRecord() : tracks.get(0);
+        if (playable.size() == 1) return playable.get(0);
+
+        ArrayList<String> header = new ArrayList<String>();
+        header.add("runtime(ms)");
+        for (DoppleBotHistoryRecord track : playable) {
+            header.addAll(track.getHeaderRow().subList(1, track.getHeaderRow().size()));
+        }
+        DoppleBotHistoryRecord merged = new DoppleBotHistoryRecord(header);
+
+        int trackCount = playable.size();
+        int[] rows = new int[trackCount];         // the row each track is on
+        long[] rowEnds = new long[trackCount];    // when that row ends
+        long end = 0;
+        for (int t = 0; t < trackCount; t++) {
+            rowEnds[t] = rowTime(playable.get(t), 0);
+            long trackEnd = 0;
+            for (ArrayList row : playable.get(t).getValueRows()) trackEnd += ((Number) row.get(0)).longValue();
+            end = Math.max(end, trackEnd);
+        }
+
+        long now = 0;
+        while (true) {
+            // the next change on any track that has rows left
+            long next = Long.MAX_VALUE;
+            for (int t = 0; t < trackCount; t++) {
+                if (rows[t] + 1 < playable.get(t).getValueRows().size()) next = Math.min(next, rowEnds[t]);
+            }
+            boolean lastRow = next == Long.MAX_VALUE;
+            if (lastRow) next = end;
+
+            ArrayList mergedRow = new ArrayList(header.size());
+            mergedRow.add(next - now);
+            for (int t = 0; t < trackCount; t++) {
+                ArrayList row = playable.get(t).getValueRows().get(rows[t]);
+                mergedRow.addAll(row.subList(1, row.size()));
+            }
+            merged.addHistoryValueRow(mergedRow);
+
+            if (lastRow) break;
+            for (int t = 0; t < trackCount; t++) {
+                while (rows[t] + 1 < playable.get(t).getValueRows().size() && rowEnds[t] <= next) {
+                    rows[t]++;
+                    rowEnds[t] += rowTime(playable.get(t), rows[t]);
+                }
+            }
+            now = next;
+        }
+
+        return merged;
+    }
+
+    private static long rowTime(DoppleBotHistoryRecord track, int row){
+        return ((Number) track.getValueRows().get(row).get(0)).longValue();
     }
 
     /**
@@ -105,6 +276,18 @@ public class DoppleBotHistoryHelper {
         return lastModifiedFile;
     }
 
+    /**
+     * The gamepad input recorded with a robot history is kept in an "input" directory next to
+     * the history file, under the same file name.  Being in a subdirectory keeps it out of
+     * lastFileModified() for the history directory.
+     *
+     * @param historyFile a robot history file
+     * @return where the input track for that history is (or would be) kept
+     */
+    public static File getInputTrackFile(File historyFile) {
+        return new File(new File(historyFile.getParentFile(), INPUT_DIRECTORY), historyFile.getName());
+    }
+
     /**
      * This private method validates that the historyFile passed into the method
      * is actually well formed and can be processed.
@@ -0,0 +1,225 @@
+package edu.berean.robotics.dopple.util;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.berean.robotics.dopple.DoppleBotRecorder;
+import edu.berean.robotics.dopple.DoppleEventTrack;
+import edu.berean.robotics.dopple.DoppleMeasurements;
+import edu.berean.robotics.input.InputTrack;
+
+/**
+ * Trims the idle lead-in and tail from a recording made before the recorder trimmed them (see
+ * DoppleBotRecorder): the time before anything first changed, and the time after the last
+ * change if the robot ended in its initial state, down to a residual.
+ *
+ * The file is read twice and never held: the first pass finds each track's first change, last
+ * change and whether it ended where it started; the second copies the file, cutting the rows at
+ * the kept window.  Events are moved into the window and measured samples outside it dropped,
+ * as the recorder does.  An input track next to the recording is trimmed along with it.
+ *
+ * Off the robot, sim's RecordingTrimmer runs this from the command line.
+ */
+public class DoppleBotHistoryTrimmer {
+
+    private static String LOG_TAG = "DoppleBotHistoryTrimmer - ";
+
+    // what the first pass learns about one track
+    private static class TrackScan {
+        long firstRowMs;
+        long lastRowStartMs;
+        long endMs;
+        int rows;
+        double[] firstValues;
+        double[] lastValues;
+    }
+
+    private long residualMs;
+    private long trimStartMs;
+    private long trimEndMs;
+    private long recordingEndMs;
+
+    public DoppleBotHistoryTrimmer(){
+        this(DoppleBotRecorder.DEFAULT_IDLE_RESIDUAL_MS);
+    }
+
+    /**
+     * @param residualMs milliseconds of idle to keep before the first change and after the last
+     */
+    public DoppleBotHistoryTrimmer(long residualMs){
+        this.residualMs = residualMs;
+    }
+
+    /**
+     * Write a trimmed copy of a recording.
+     *
+     * @param recording the recording to trim
+     * @param output where to write the trimmed recording; not the recording itself
+     * @return how many milliseconds were trimmed
+     * @throws IOException
+     */
+    public long trim(File recording, File output) throws IOException {
+
+        findWindow(scan(recording));
+        copyWindow(recording, output);
+
+        File inputFile = DoppleBotHistoryHelper.getInputTrackFile(recording);
+        if (inputFile.exists()) {
+            InputTrack input = InputTrack.read(inputFile);
+            input.clampTimes(trimStartMs, trimEndMs);
+            File outputInputFile = DoppleBotHistoryHelper.getInputTrackFile(output);
+            outputInputFile.getParentFile().mkdirs();
+            input.write(outputInputFile);
+        }
+
+        RobotLog.i(LOG_TAG + String.format("%s: kept %d to %d ms", recording.getName(), trimStartMs, trimEndMs));
+        return trimStartMs + (recordingEndMs - trimEndMs);
+    }
+
+    /**
+     * @return where the last trim() started the recording, in milliseconds from its old start
+     */
+    public long getTrimStartMs(){
+        return trimStartMs;
+    }
+
+    /**
+     * @return where the last trim() ended the recording, in milliseconds from its old start
+     */
+    public long getTrimEndMs(){
+        return trimEndMs;
+    }
+
+    // the first pass: each track's timing, one row at a time
+    private ArrayList<TrackScan> scan(File recording) throws IOException {
+
+        ArrayList<TrackScan> scans = new ArrayList<TrackScan>();
+        TrackScan track = null;
+        boolean inTrack = false;
+
+        BufferedReader reader = new BufferedReader(new FileReader(recording));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                if (line.isEmpty()) continue;
+                if (line.startsWith("[" + DoppleEventTrack.HEADER) || line.startsWith("[" + DoppleMeasurements.HEADER)) {
+                    inTrack = false;
+                    continue;
+                }
+                if (DoppleBotHistoryHelper.isHeaderLine(line)) {
+                    track = new TrackScan();
+                    scans.add(track);
+                    inTrack = true;
+                    continue;
+                }
+                if (!inTrack) continue;
+
+                String[] values = splitRow(line);
+                long rowMs = Long.parseLong(values[0]);
+                double[] rowValues = new double[values.length - 1];
+                for (int i = 1; i < values.length; i++) rowValues[i - 1] = Double.parseDouble(values[i]);
+
+                if (track.rows == 0) {
+                    track.firstRowMs = rowMs;
+                    track.firstValues = rowValues;
+                }
+                track.lastRowStartMs = track.endMs;
+                track.lastValues = rowValues;
+                track.endMs += rowMs;
+                track.rows++;
+            }
+        } finally {
+            reader.close();
+        }
+        return scans;
+    }
+
+    // the window kept: from the residual before the first change on any track to the residual
+    // after the last change, if every track ended in its initial state
+    private void findWindow(ArrayList<TrackScan> scans){
+
+        recordingEndMs = 0;
+        long firstChangeMs = Long.MAX_VALUE;
+        long lastChangeMs = 0;
+        boolean endsInitial = true;
+        for (TrackScan track : scans) {
+            recordingEndMs = Math.max(recordingEndMs, track.endMs);
+            if (track.rows > 1) {
+                firstChangeMs = Math.min(firstChangeMs, track.firstRowMs);
+                lastChangeMs = Math.max(lastChangeMs, track.lastRowStartMs);
+            }
+            if (track.rows > 0 && !Arrays.equals(track.firstValues, track.lastValues)) endsInitial = false;
+        }
+        if (firstChangeMs == Long.MAX_VALUE) firstChangeMs = recordingEndMs;     // nothing ever changed
+        lastChangeMs = Math.max(lastChangeMs, firstChangeMs);
+
+        trimStartMs = 0;
+        trimEndMs = recordingEndMs;
+        if (residualMs < 0) return;
+
+        trimStartMs = Math.max(0, firstChangeMs - residualMs);
+        if (endsInitial) trimEndMs = Math.min(recordingEndMs, lastChangeMs + residualMs);
+    }
+
+    // the second pass: copy the recording, cutting every block at the window
+    private void copyWindow(File recording, File output) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new FileReader(recording));
+        BufferedWriter writer = new BufferedWriter(new FileWriter(output));
+        try {
+            int block = 0;      // 0 track, 1 measured, 2 events
+            long rowStartMs = 0;
+            StringBuilder row = new StringBuilder();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                if (line.isEmpty()) continue;
+                if (line.startsWith("[" + DoppleMeasurements.HEADER)) {
+                    block = 1;
+                } else if (line.startsWith("[" + DoppleEventTrack.HEADER)) {
+                    block = 2;
+                } else if (DoppleBotHistoryHelper.isHeaderLine(line)) {
+                    block = 0;
+                    rowStartMs = 0;
+                } else {
+                    int comma = line.indexOf(',');
+                    String rest = comma < 0 ? "]" : line.substring(comma);
+                    long timeMs = Long.parseLong(line.substring(1, comma < 0 ? line.indexOf(']') : comma).trim());
+                    long newTimeMs;
+                    if (block == 0) {
+                        // a row's time is how long it was held: keep the part in the window
+                        long rowEndMs = rowStartMs + timeMs;
+                        newTimeMs = Math.max(0, Math.min(rowEndMs, trimEndMs) - Math.max(rowStartMs, trimStartMs));
+                        rowStartMs = rowEndMs;
+                    } else if (block == 1) {
+                        if (timeMs < trimStartMs || timeMs > trimEndMs) continue;
+                        newTimeMs = timeMs - trimStartMs;
+                    } else {
+                        newTimeMs = Math.min(Math.max(timeMs, trimStartMs), trimEndMs) - trimStartMs;
+                    }
+                    row.setLength(0);
+                    line = row.append('[').append(newTimeMs).append(rest).toString();
+                }
+                writer.write(line);
+                writer.write("\n");
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+    private static String[] splitRow(String line){
+        return line.substring(1, line.indexOf(']')).split("\\s*,\\s*");
+    }
+}
@@ -0,0 +1,142 @@
+package edu.berean.robotics.input;
+
+import com.qualcomm.robotcore.util.Range;
+
+/**
+ * An AxisShaper turns a raw joystick or trigger value into the value the robot should use.
+ * Each update runs the value through, in order:
+ *
+ *   deadband   - small values around center are zero, and the rest of the range is stretched
+ *                so the output still starts at zero at the edge of the deadband
+ *   expo       - blends the linear value with its cube for finer control near center
+ *   scale      - multiplies by a mode scale (e.g. a slow "sniper" mode)
+ *   slew limit - limits how quickly the output can change, in units per second
+ *   resolution - rounds to a step so that stick noise doesn't change the output every loop
+ *
+ * Any stage set to zero (or a scale of one) does nothing.
+ */
+public class AxisShaper {
+
+    public static final double DEFAULT_DEADBAND = 0.05;
+    public static final double DEFAULT_DRIVE_EXPO = 0.3;
+    public static final double DEFAULT_DRIVE_SLEW_RATE = 4.0;  // zero to full power in a quarter second
+    public static final double DEFAULT_RESOLUTION = 0.01;
+
+    private double deadband;
+    private double expo;
+    private double slewRate;
+    private double resolution;
+    private double scale = 1.0;
+
+    private double value = 0;
+    private double slewed = 0;      // the slew limited value before rounding; the slew limit works from this
+    private long lastUpdateNanos = 0;
+
+    /**
+     * Creates a shaper that passes values through unchanged.
+     */
+    public AxisShaper(){
+        this(0, 0, 0, 0);
+    }
+
+    /**
+     * @param deadband values with a magnitude below this are zero (0 - 1)
+     * @param expo 0 for a linear response, up to 1 for a fully cubic response
+     * @param slewRate the most the output may change per second; 0 for no limit
+     * @param resolution the output is rounded to a multiple of this; 0 for no rounding
+     */
+    public AxisShaper(double deadband, double expo, double slewRate, double resolution){
+        this.deadband = deadband;
+        this.expo = expo;
+        this.slewRate = slewRate;
+        this.resolution = resolution;
+    }
+
+    /**
+     * @return a shaper for a drive stick: deadband, some expo, a slew limit and rounding
+     */
+    public static AxisShaper forDrive(){
+        return new AxisShaper(DEFAULT_DEADBAND, DEFAULT_DRIVE_EXPO, DEFAULT_DRIVE_SLEW_RATE, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * @return a shaper for a stick that sets a mechanism's power: deadband and rounding
+     */
+    public static AxisShaper forPower(){
+        return new AxisShaper(DEFAULT_DEADBAND, 0, 0, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * @return a shaper for an axis that sets a servo position: rounding only
+     */
+    public static AxisShaper forPosition(){
+        return new AxisShaper(0, 0, 0, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Sets the mode scale, e.g. 1/3 for a slow mode.  With a slew limit the change is ramped in.
+     */
+    public void setScale(double scale){
+        this.scale = scale;
+    }
+
+    public double getScale(){
+        return scale;
+    }
+
+    /**
+     * Shapes a new raw value.
+     *
+     * @param raw the raw axis value, -1 to 1
+     * @param nowNanos the current System.nanoTime(); used by the slew limit
+     * @return the shaped value
+     */
+    public double update(double raw, long nowNanos){
+
+        double x = Range.clip(raw, -1.0, 1.0);
+
+        double magnitude = Math.abs(x);
+        if (magnitude < deadband) {
+            x = 0;
+        } else if (deadband > 0) {
+            x = Math.signum(x) * (magnitude - deadband) / (1.0 - deadband);
+        }
+
+        x = (1.0 - expo) * x + expo * x * x * x;
+        x *= scale;
+
+        if (slewRate > 0 && lastUpdateNanos != 0) {
+            // cap the time step so a long pause (e.g. init to start) doesn't allow a jump
+            double seconds = Math.min((nowNanos - lastUpdateNanos) / 1e9, 0.1);
+            double maxStep = slewRate * seconds;
+            x = Range.clip(x, slewed - maxStep, slewed + maxStep);
+        }
+        lastUpdateNanos = nowNanos;
+        slewed = x;
+
+        // only the output is rounded, so a slew step smaller than half the resolution still
+        // adds up over several loops
+        if (resolution > 0) {
+            x = Math.round(x / resolution) * resolution;
+        }
+
+        value = x;
+        return value;
+    }
+
+    /**
+     * @return the value from the last update
+     */
+    public double getValue(){
+        return value;
+    }
+
+    /**
+     * Go back to zero, e.g. when the opmode stops.
+     */
+    public void reset(){
+        value = 0;
+        slewed = 0;
+        lastUpdateNanos = 0;
+    }
+}
@@ -0,0 +1,191 @@
+package edu.berean.robotics.input;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * GamepadInput reads one gamepad once per loop.  Each axis goes through its own AxisShaper and
+ * the shaped values are left in the public fields; the buttons are packed into a bit field so
+ * that a press or release (an edge) can be told apart from a button being held.
+ *
+ * Call update() once at the top of loop(), then use the fields and the isDown(), wasPressed()
+ * and wasReleased() methods for the rest of the loop.
+ */
+public class GamepadInput {
+
+    // axes
+    public static final int LEFT_STICK_X = 0;
+    public static final int LEFT_STICK_Y = 1;
+    public static final int RIGHT_STICK_X = 2;
+    public static final int RIGHT_STICK_Y = 3;
+    public static final int LEFT_TRIGGER = 4;
+    public static final int RIGHT_TRIGGER = 5;
+    public static final int AXIS_COUNT = 6;
+
+    // buttons, as bits
+    public static final int A = 1;
+    public static final int B = 1 << 1;
+    public static final int X = 1 << 2;
+    public static final int Y = 1 << 3;
+    public static final int LEFT_BUMPER = 1 << 4;
+    public static final int RIGHT_BUMPER = 1 << 5;
+    public static final int DPAD_UP = 1 << 6;
+    public static final int DPAD_DOWN = 1 << 7;
+    public static final int DPAD_LEFT = 1 << 8;
+    public static final int DPAD_RIGHT = 1 << 9;
+    public static final int START = 1 << 10;
+    public static final int BACK = 1 << 11;
+
+    /* shaped axis values from the last update */
+    public double leftStickX;
+    public double leftStickY;
+    public double rightStickX;
+    public double rightStickY;
+    public double leftTrigger;
+    public double rightTrigger;
+
+    private AxisShaper[] shapers = new AxisShaper[AXIS_COUNT];
+    private double[] rawAxes = new double[AXIS_COUNT];
+    private int buttons = 0;
+    private int previousButtons = 0;
+
+    public GamepadInput(){
+        for (int i = 0; i < AXIS_COUNT; i++) {
+            shapers[i] = new AxisShaper();
+        }
+    }
+
+    /**
+     * Use a shaper for an axis.  The same shaper can be used for more than one axis.
+     * @param axis one of the axis constants
+     */
+    public void setShaper(int axis, AxisShaper shaper){
+        shapers[axis] = shaper;
+    }
+
+    public AxisShaper getShaper(int axis){
+        return shapers[axis];
+    }
+
+    /**
+     * Read the gamepad and shape its axes.  Call this once per loop.
+     */
+    public void update(Gamepad gamepad){
+        readAxes(gamepad, rawAxes, 0);
+        update(rawAxes, readButtons(gamepad), DoppleClock.current().nanoTime());
+    }
+
+    /**
+     * Copy a gamepad's raw axes into an array, in the order of the axis constants.
+     */
+    public static void readAxes(Gamepad gamepad, double[] axes, int offset){
+        axes[offset + LEFT_STICK_X] = gamepad.left_stick_x;
+        axes[offset + LEFT_STICK_Y] = gamepad.left_stick_y;
+        axes[offset + RIGHT_STICK_X] = gamepad.right_stick_x;
+        axes[offset + RIGHT_STICK_Y] = gamepad.right_stick_y;
+        axes[offset + LEFT_TRIGGER] = gamepad.left_trigger;
+        axes[offset + RIGHT_TRIGGER] = gamepad.right_trigger;
+    }
+
+    /**
+     * @return the gamepad's buttons that are down, as bits
+     */
+    public static int readButtons(Gamepad gamepad){
+        int pressed = 0;
+        if (gamepad.a) pressed |= A;
+        if (gamepad.b) pressed |= B;
+        if (gamepad.x) pressed |= X;
+        if (gamepad.y) pressed |= Y;
+        if (gamepad.left_bumper) pressed |= LEFT_BUMPER;
+        if (gamepad.right_bumper) pressed |= RIGHT_BUMPER;
+        if (gamepad.dpad_up) pressed |= DPAD_UP;
+        if (gamepad.dpad_down) pressed |= DPAD_DOWN;
+        if (gamepad.dpad_left) pressed |= DPAD_LEFT;
+        if (gamepad.dpad_right) pressed |= DPAD_RIGHT;
+        if (gamepad.start) pressed |= START;
+        if (gamepad.back) pressed |= BACK;
+        return pressed;
+    }
+
+    /**
+     * Set a gamepad's axes and buttons, e.g. to feed recorded input back into an opmode.
+     */
+    public static void writeGamepad(Gamepad gamepad, double[] axes, int offset, int pressed){
+        gamepad.left_stick_x = (float) axes[offset + LEFT_STICK_X];
+        gamepad.left_stick_y = (float) axes[offset + LEFT_STICK_Y];
+        gamepad.right_stick_x = (float) axes[offset + RIGHT_STICK_X];
+        gamepad.right_stick_y = (float) axes[offset + RIGHT_STICK_Y];
+        gamepad.left_trigger = (float) axes[offset + LEFT_TRIGGER];
+        gamepad.right_trigger = (float) axes[offset + RIGHT_TRIGGER];
+        gamepad.a = (pressed & A) != 0;
+        gamepad.b = (pressed & B) != 0;
+        gamepad.x = (pressed & X) != 0;
+        gamepad.y = (pressed & Y) != 0;
+        gamepad.left_bumper = (pressed & LEFT_BUMPER) != 0;
+        gamepad.right_bumper = (pressed & RIGHT_BUMPER) != 0;
+        gamepad.dpad_up = (pressed & DPAD_UP) != 0;
+        gamepad.dpad_down = (pressed & DPAD_DOWN) != 0;
+        gamepad.dpad_left = (pressed & DPAD_LEFT) != 0;
+        gamepad.dpad_right = (pressed & DPAD_RIGHT) != 0;
+        gamepad.start = (pressed & START) != 0;
+        gamepad.back = (pressed & BACK) != 0;
+    }
+
+    /**
+     * Shape a set of raw values that did not come straight from a gamepad, e.g. recorded input
+     * being replayed.
+     *
+     * @param axes the raw axis values, indexed by the axis constants
+     * @param pressedButtons the buttons that are down, as bits
+     * @param nowNanos the time of the sample
+     */
+    public void update(double[] axes, int pressedButtons, long nowNanos){
+        if (axes != rawAxes) System.arraycopy(axes, 0, rawAxes, 0, AXIS_COUNT);
+
+        leftStickX = shapers[LEFT_STICK_X].update(rawAxes[LEFT_STICK_X], nowNanos);
+        leftStickY = shapers[LEFT_STICK_Y].update(rawAxes[LEFT_STICK_Y], nowNanos);
+        rightStickX = shapers[RIGHT_STICK_X].update(rawAxes[RIGHT_STICK_X], nowNanos);
+        rightStickY = shapers[RIGHT_STICK_Y].update(rawAxes[RIGHT_STICK_Y], nowNanos);
+        leftTrigger = shapers[LEFT_TRIGGER].update(rawAxes[LEFT_TRIGGER], nowNanos);
+        rightTrigger = shapers[RIGHT_TRIGGER].update(rawAxes[RIGHT_TRIGGER], nowNanos);
+
+        previousButtons = buttons;
+        buttons = pressedButtons;
+    }
+
+    /**
+     * @return true while the button is held
+     */
+    public boolean isDown(int button){
+        return (buttons & button) != 0;
+    }
+
+    /**
+     * @return true only on the loop where the button went down
+     */
+    public boolean wasPressed(int button){
+        return (buttons & button) != 0 && (previousButtons & button) == 0;
+    }
+
+    /**
+     * @return true only on the loop where the button came up
+     */
+    public boolean wasReleased(int button){
+        return (buttons & button) == 0 && (previousButtons & button) != 0;
+    }
+
+    /**
+     * @return the buttons that are down, as bits
+     */
+    public int getButtons(){
+        return buttons;
+    }
+
+    /**
+     * @return the unshaped value of an axis from the last update
+     */
+    public double getRawAxis(int axis){
+        return rawAxes[axis];
+    }
+}
@@ -0,0 +1,176 @@
+package edu.berean.robotics.input;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An InputTrack is what the drivers did during a recorded session: the state of gamepad1 and
+ * gamepad2 on every loop.  Each sample is a time, the buttons of each gamepad as a bit field
+ * (see the GamepadInput button constants) and the six raw axes of each gamepad.  Samples are
+ * kept in primitive arrays, so recording one is a few array stores.
+ *
+ * A track is written next to the DoppleBot recording it belongs to, and can be loaded and fed
+ * back into an opmode's gamepads to run the session again.
+ *
+ * The file has the same shape as a DoppleBot recording: a header row, then one row per sample:
+ * [time(ms), buttons1, left_stick_x1, ... right_trigger1, buttons2, left_stick_x2, ... right_trigger2]
+ */
+public class InputTrack {
+
+    private static String LOG_TAG = "InputTrack - ";
+    private static int VALUES_PER_SAMPLE = 2 * GamepadInput.AXIS_COUNT;
+    private static String[] AXIS_NAMES = {"left_stick_x", "left_stick_y", "right_stick_x",
+            "right_stick_y", "left_trigger", "right_trigger"};
+
+    private long[] times;
+    private int[] buttons;      // two per sample
+    private double[] axes;      // VALUES_PER_SAMPLE per sample
+    private int size = 0;
+
+    public InputTrack(){
+        this(1024);
+    }
+
+    /**
+     * @param initialCapacity the number of samples to make room for; the track grows as needed
+     */
+    public InputTrack(int initialCapacity){
+        times = new long[initialCapacity];
+        buttons = new int[2 * initialCapacity];
+        axes = new double[VALUES_PER_SAMPLE * initialCapacity];
+    }
+
+    /**
+     * Add a sample of both gamepads.
+     *
+     * @param timeMs the time of the sample, in milliseconds since the start of the session
+     */
+    public void add(long timeMs, Gamepad gamepad1, Gamepad gamepad2){
+        if (size == times.length) grow();
+        times[size] = timeMs;
+        buttons[2 * size] = GamepadInput.readButtons(gamepad1);
+        buttons[2 * size + 1] = GamepadInput.readButtons(gamepad2);
+        GamepadInput.readAxes(gamepad1, axes, VALUES_PER_SAMPLE * size);
+        GamepadInput.readAxes(gamepad2, axes, VALUES_PER_SAMPLE * size + GamepadInput.AXIS_COUNT);
+        size++;
+    }
+
+    /**
+     * Set both gamepads to a recorded sample.
+     */
+    public void applyTo(int sample, Gamepad gamepad1, Gamepad gamepad2){
+        GamepadInput.writeGamepad(gamepad1, axes, VALUES_PER_SAMPLE * sample, buttons[2 * sample]);
+        GamepadInput.writeGamepad(gamepad2, axes, VALUES_PER_SAMPLE * sample + GamepadInput.AXIS_COUNT, buttons[2 * sample + 1]);
+    }
+
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return the time of a sample, in milliseconds since the start of the session
+     */
+    public long getTimeMs(int sample){
+        return times[sample];
+    }
+
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * Move every sample into a window of the session and make its time from the window's start.
+     * Samples before the window are moved to its start and samples after it to its end, rather
+     * than dropped, so a button pressed while the robot sat idle is still seen when the session
+     * is replayed.  See DoppleBotRecorder for how the window is chosen.
+     *
+     * @param fromMs the start of the window, in milliseconds since the start of the session
+     * @param toMs the end of the window
+     */
+    public void clampTimes(long fromMs, long toMs){
+        for (int i = 0; i < size; i++) {
+            times[i] = Math.min(Math.max(times[i], fromMs), toMs) - fromMs;
+        }
+    }
+
+    private void grow(){
+        int capacity = Math.max(16, times.length * 2);
+        times = Arrays.copyOf(times, capacity);
+        buttons = Arrays.copyOf(buttons, 2 * capacity);
+        axes = Arrays.copyOf(axes, VALUES_PER_SAMPLE * capacity);
+    }
+
+    /**
+     * Write the track to a file.
+     */
+    public void write(File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            StringBuilder line = new StringBuilder("[time(ms)");
+            for (int pad = 1; pad <= 2; pad++) {
+                line.append(", buttons").append(pad);
+                for (String axis : AXIS_NAMES) line.append(", ").append(axis).append(pad);
+            }
+            writer.write(line.append("]\n").toString());
+
+            for (int i = 0; i < size; i++) {
+                line.setLength(0);
+                line.append('[').append(times[i]);
+                for (int pad = 0; pad < 2; pad++) {
+                    line.append(", ").append(buttons[2 * i + pad]);
+                    int offset = VALUES_PER_SAMPLE * i + pad * GamepadInput.AXIS_COUNT;
+                    for (int a = 0; a < GamepadInput.AXIS_COUNT; a++) {
+                        line.append(", ").append((float) axes[offset + a]);
+                    }
+                }
+                writer.write(line.append("]\n").toString());
+            }
+        } finally {
+            writer.close();
+        }
+        RobotLog.i(LOG_TAG + String.format("wrote %d samples to %s", size, file.getName()));
+    }
+
+    /**
+     * Load a track written by write().
+     */
+    public static InputTrack read(File file) throws IOException {
+        InputTrack track = new InputTrack();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            reader.readLine();  // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() < 2) continue;
+                String[] values = line.substring(1, line.length() - 1).split("\\s*,\\s*");
+                if (values.length != 1 + 2 * (1 + GamepadInput.AXIS_COUNT)) {
+                    RobotLog.w(LOG_TAG + "skipping a malformed row: " + line);
+                    continue;
+                }
+                if (track.size == track.times.length) track.grow();
+                int i = track.size;
+                track.times[i] = Long.parseLong(values[0]);
+                int v = 1;
+                for (int pad = 0; pad < 2; pad++) {
+                    track.buttons[2 * i + pad] = Integer.parseInt(values[v++]);
+                    int offset = VALUES_PER_SAMPLE * i + pad * GamepadInput.AXIS_COUNT;
+                    for (int a = 0; a < GamepadInput.AXIS_COUNT; a++) {
+                        track.axes[offset + a] = Float.parseFloat(values[v++]);
+                    }
+                }
+                track.size++;
+            }
+        } finally {
+            reader.close();
+        }
+        return track;
+    }
+}
@@ -0,0 +1,48 @@
+package edu.berean.robotics.navigation;
+
+/**
+ * A Pose2d is where the robot is on the field at a moment in time: an x, y position and a
+ * heading.  Poses are immutable so that one thread can publish a pose and any other thread
+ * can read it without locking.
+ *
+ * Headings are in radians, counter clockwise positive, with 0 along the +x axis.
+ */
+public class Pose2d {
+
+    public final double x;
+    public final double y;
+    public final double heading;
+    public final long timestampNanos;   // System.nanoTime() when the pose was measured
+
+    public Pose2d(double x, double y, double heading, long timestampNanos){
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.timestampNanos = timestampNanos;
+    }
+
+    public double getHeadingDegrees(){
+        return Math.toDegrees(heading);
+    }
+
+    /**
+     * @return how long ago (in milliseconds) this pose was measured
+     */
+    public long getAgeMs(){
+        return (System.nanoTime() - timestampNanos) / 1000000L;
+    }
+
+    /**
+     * Wraps an angle into the range -PI to PI.
+     */
+    public static double normalizeAngle(double radians){
+        while (radians > Math.PI) radians -= 2 * Math.PI;
+        while (radians < -Math.PI) radians += 2 * Math.PI;
+        return radians;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("(%.1f, %.1f) %.1f deg", x, y, Math.toDegrees(heading));
+    }
+}
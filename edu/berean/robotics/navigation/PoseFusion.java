@@ -0,0 +1,138 @@
+package edu.berean.robotics.navigation;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+/**
+ * PoseFusion combines wheel odometry with Vuforia fixes.  Odometry is fast and smooth but drifts;
+ * a camera fix is accurate but arrives late and only now and then.
+ *
+ * The odometry pose of every update() is kept in a PoseHistory.  When a new camera fix arrives,
+ * the odometry pose from the moment the frame was captured (the tracker's estimate, which
+ * allows for the camera latency) is looked up and a correction is worked out that moves
+ * that historical pose onto the camera's pose.  The same correction is applied to every odometry
+ * pose after it, which replays the odometry movement since the capture on top of the fix.  The
+ * fused pose is always available at the full odometry rate without waiting for the camera.
+ *
+ * Call update() once per loop.  Everything happens on the calling thread and nothing allocates
+ * after construction.
+ */
+public class PoseFusion {
+
+    private static String LOG_TAG = "PoseFusion - ";
+
+    public static final int DEFAULT_HISTORY_CAPACITY = 200;     // one pose per update(): four seconds at a 20 ms loop
+    public static final double MM_PER_INCH = 25.4;
+
+    private TankOdometry odometry;
+    private VuforiaPoseTracker tracker;
+    private PoseHistory history;
+    private double visionUnitsPerInch;
+    private double visionWeight = 1.0;
+
+    // field pose = correction applied to the odometry pose
+    private double correctionX = 0;
+    private double correctionY = 0;
+    private double correctionHeading = 0;
+
+    private double odometryX;
+    private double odometryY;
+    private double odometryHeading;
+    private long lastOdometryTimestamp = 0;
+    private long lastVisionTimestamp = 0;
+    private int fixesApplied = 0;
+    private int fixesMissed = 0;
+
+    private double[] historic = new double[3];
+    private double[] scratch = new double[3];
+
+    /**
+     * Creates a PoseFusion for a tracker that reports positions in millimeters.
+     */
+    public PoseFusion(TankOdometry odometry, VuforiaPoseTracker tracker){
+        this(odometry, tracker, DEFAULT_HISTORY_CAPACITY, MM_PER_INCH);
+    }
+
+    /**
+     * @param odometry the running odometry
+     * @param tracker the running vision tracker
+     * @param historyCapacity how many odometry poses to keep.  One is added each update(), so
+     *                        this many loops must cover the camera latency
+     * @param visionUnitsPerInch converts tracker positions to inches (25.4 for millimeters)
+     */
+    public PoseFusion(TankOdometry odometry, VuforiaPoseTracker tracker, int historyCapacity, double visionUnitsPerInch){
+        this.odometry = odometry;
+        this.tracker = tracker;
+        this.history = new PoseHistory(historyCapacity);
+        this.visionUnitsPerInch = visionUnitsPerInch;
+    }
+
+    /**
+     * How much to trust a camera fix, from 0 (ignore it) to 1 (jump straight to it).
+     */
+    public void setVisionWeight(double visionWeight){
+        this.visionWeight = visionWeight;
+    }
+
+    /**
+     * Picks up the latest odometry pose and applies any new camera fix.
+     */
+    public void update(){
+
+        Pose2d odometryPose = odometry.getPose();
+        if (odometryPose.timestampNanos != lastOdometryTimestamp) {
+            lastOdometryTimestamp = odometryPose.timestampNanos;
+            odometryX = odometryPose.x;
+            odometryY = odometryPose.y;
+            odometryHeading = odometryPose.heading;
+            history.add(odometryPose);
+        }
+
+        VisionPose visionPose = tracker.latestPose();
+        if (visionPose == null || visionPose.captureNanos == lastVisionTimestamp) return;
+        lastVisionTimestamp = visionPose.captureNanos;
+
+        if (!history.getPoseAt(visionPose.captureNanos, historic)) {
+            // the fix is older than the history we have; it can't be lined up, so skip it
+            fixesMissed++;
+            RobotLog.w(LOG_TAG + "camera fix is older than the odometry history; skipped");
+            return;
+        }
+
+        // the correction that moves the historical odometry pose onto the camera pose:
+        // correction = vision * inverse(historic)
+        Transform2d.invert(historic, scratch);
+        Transform2d.compose(visionPose.x / visionUnitsPerInch, visionPose.y / visionUnitsPerInch, visionPose.heading,
+                scratch[0], scratch[1], scratch[2], scratch);
+
+        correctionX += (scratch[0] - correctionX) * visionWeight;
+        correctionY += (scratch[1] - correctionY) * visionWeight;
+        correctionHeading = Pose2d.normalizeAngle(correctionHeading
+                + Pose2d.normalizeAngle(scratch[2] - correctionHeading) * visionWeight);
+        fixesApplied++;
+    }
+
+    /**
+     * Gets the fused pose without allocating.
+     * @param pose receives x, y (inches) and heading (radians) in elements 0, 1 and 2
+     */
+    public void getPose(double[] pose){
+        Transform2d.compose(correctionX, correctionY, correctionHeading, odometryX, odometryY, odometryHeading, pose);
+    }
+
+    /**
+     * Gets the fused pose as a Pose2d.  This allocates; use getPose(double[]) in tight loops.
+     */
+    public Pose2d getPose(){
+        double[] pose = new double[3];
+        getPose(pose);
+        return new Pose2d(pose[0], pose[1], pose[2], lastOdometryTimestamp);
+    }
+
+    public int getFixesApplied(){
+        return fixesApplied;
+    }
+
+    public int getFixesMissed(){
+        return fixesMissed;
+    }
+}
@@ -0,0 +1,117 @@
+package edu.berean.robotics.navigation;
+
+/**
+ * The PoseHistory is a fixed size ring buffer of timestamped poses.  It is used to answer the
+ * question "where did odometry think the robot was at time t?" for a t in the recent past,
+ * which is what is needed to line up a camera fix that arrives late.
+ *
+ * Poses are kept in primitive arrays, so adding a pose and looking one up never allocate.
+ * Once the buffer is full the oldest pose is overwritten.
+ *
+ * This class is not thread safe; it is expected to be filled and read from the same thread.
+ */
+public class PoseHistory {
+
+    private long[] timestamps;
+    private double[] xs;
+    private double[] ys;
+    private double[] headings;
+    private int capacity;
+    private int next = 0;    // where the next pose goes
+    private int size = 0;
+
+    /**
+     * @param capacity the number of poses to keep.  At a 10 ms odometry rate, 100 poses is one second.
+     */
+    public PoseHistory(int capacity){
+        this.capacity = capacity;
+        timestamps = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    /**
+     * Adds a pose.  Poses must be added in time order; a pose that is not newer than the last
+     * one added is ignored.
+     */
+    public void add(long timestampNanos, double x, double y, double heading){
+        if (size > 0 && timestampNanos <= timestamps[physical(size - 1)]) return;
+
+        timestamps[next] = timestampNanos;
+        xs[next] = x;
+        ys[next] = y;
+        headings[next] = heading;
+        next = (next + 1) % capacity;
+        if (size < capacity) size++;
+    }
+
+    public void add(Pose2d pose){
+        add(pose.timestampNanos, pose.x, pose.y, pose.heading);
+    }
+
+    /**
+     * Looks up the pose at a point in time, interpolating between the poses on either side.
+     * A time newer than the newest pose returns the newest pose.
+     *
+     * @param timestampNanos the time to look up
+     * @param pose receives x, y and heading in elements 0, 1 and 2
+     * @return false if the time is older than anything in the history (or the history is empty)
+     */
+    public boolean getPoseAt(long timestampNanos, double[] pose){
+
+        if (size == 0 || timestampNanos < timestamps[physical(0)]) return false;
+
+        int newest = physical(size - 1);
+        if (timestampNanos >= timestamps[newest]) {
+            pose[0] = xs[newest];
+            pose[1] = ys[newest];
+            pose[2] = headings[newest];
+            return true;
+        }
+
+        // binary search for the last pose at or before the requested time
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (timestamps[physical(mid)] <= timestampNanos) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int before = physical(low);
+        int after = physical(low + 1);
+        double fraction = (double) (timestampNanos - timestamps[before]) / (timestamps[after] - timestamps[before]);
+
+        pose[0] = xs[before] + (xs[after] - xs[before]) * fraction;
+        pose[1] = ys[before] + (ys[after] - ys[before]) * fraction;
+        pose[2] = Pose2d.normalizeAngle(headings[before]
+                + Pose2d.normalizeAngle(headings[after] - headings[before]) * fraction);
+        return true;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public long getOldestTimestamp(){
+        return size == 0 ? 0 : timestamps[physical(0)];
+    }
+
+    public long getNewestTimestamp(){
+        return size == 0 ? 0 : timestamps[physical(size - 1)];
+    }
+
+    public void clear(){
+        next = 0;
+        size = 0;
+    }
+
+    // map an index (0 is the oldest pose) to a position in the arrays
+    private int physical(int index){
+        return (next - size + index + capacity) % capacity;
+    }
+}
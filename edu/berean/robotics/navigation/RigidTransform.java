@@ -0,0 +1,191 @@
+package edu.berean.robotics.navigation;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+
+/**
+ * A RigidTransform is a mutable 3D rotation plus translation.  It does the same job as the
+ * OpenGLMatrix chains in VideoNavigationTest (OpenGLMatrix.translation(...).multiplied(...)),
+ * but every operation writes into an existing object instead of allocating a new matrix, so a
+ * few RigidTransforms can be created once and reused every loop.
+ *
+ * Conversion to and from OpenGLMatrix is provided for the edges, where Vuforia hands us or
+ * wants a matrix.
+ *
+ * Angles are in degrees to match the Vuforia samples.
+ */
+public class RigidTransform {
+
+    // row major rotation r[row * 3 + col] and translation t
+    private double[] r = new double[9];
+    private double[] t = new double[3];
+
+    // working space so that a transform can be combined with itself
+    private double[] rScratch = new double[9];
+    private double[] tScratch = new double[3];
+
+    public RigidTransform(){
+        setIdentity();
+    }
+
+    public RigidTransform setIdentity(){
+        for (int i = 0; i < 9; i++) r[i] = (i % 4 == 0) ? 1 : 0;
+        t[0] = 0;
+        t[1] = 0;
+        t[2] = 0;
+        return this;
+    }
+
+    public RigidTransform set(RigidTransform other){
+        System.arraycopy(other.r, 0, r, 0, 9);
+        System.arraycopy(other.t, 0, t, 0, 3);
+        return this;
+    }
+
+    /**
+     * Copies the rotation and translation out of an OpenGLMatrix.
+     */
+    public RigidTransform set(OpenGLMatrix matrix){
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                r[row * 3 + col] = matrix.get(row, col);
+            }
+            t[row] = matrix.get(row, 3);
+        }
+        return this;
+    }
+
+    /**
+     * Makes this a pure translation.
+     */
+    public RigidTransform setTranslation(double x, double y, double z){
+        setIdentity();
+        t[0] = x;
+        t[1] = y;
+        t[2] = z;
+        return this;
+    }
+
+    /**
+     * Makes this a pure rotation about the X, Y or Z axis.
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @param degrees the angle, counter clockwise positive looking down the axis
+     */
+    public RigidTransform setRotation(int axis, double degrees){
+        setIdentity();
+        double cos = Math.cos(Math.toRadians(degrees));
+        double sin = Math.sin(Math.toRadians(degrees));
+        int a = (axis + 1) % 3;
+        int b = (axis + 2) % 3;
+        r[a * 3 + a] = cos;
+        r[a * 3 + b] = -sin;
+        r[b * 3 + a] = sin;
+        r[b * 3 + b] = cos;
+        return this;
+    }
+
+    /**
+     * this = a * b.  Either a or b may be this transform.
+     */
+    public RigidTransform multiply(RigidTransform a, RigidTransform b){
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                rScratch[row * 3 + col] = a.r[row * 3] * b.r[col]
+                        + a.r[row * 3 + 1] * b.r[3 + col]
+                        + a.r[row * 3 + 2] * b.r[6 + col];
+            }
+            tScratch[row] = a.r[row * 3] * b.t[0] + a.r[row * 3 + 1] * b.t[1] + a.r[row * 3 + 2] * b.t[2] + a.t[row];
+        }
+        System.arraycopy(rScratch, 0, r, 0, 9);
+        System.arraycopy(tScratch, 0, t, 0, 3);
+        return this;
+    }
+
+    /**
+     * this = this * other.  Same as OpenGLMatrix.multiplied(), without the new matrix.
+     */
+    public RigidTransform multiply(RigidTransform other){
+        return multiply(this, other);
+    }
+
+    /**
+     * this = the inverse of a.  a may be this transform.
+     */
+    public RigidTransform invert(RigidTransform a){
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                rScratch[row * 3 + col] = a.r[col * 3 + row];
+            }
+        }
+        for (int row = 0; row < 3; row++) {
+            tScratch[row] = -(rScratch[row * 3] * a.t[0] + rScratch[row * 3 + 1] * a.t[1] + rScratch[row * 3 + 2] * a.t[2]);
+        }
+        System.arraycopy(rScratch, 0, r, 0, 9);
+        System.arraycopy(tScratch, 0, t, 0, 3);
+        return this;
+    }
+
+    /**
+     * Moves a point from this transform's frame into the outer frame.
+     * @param point x, y, z of the point
+     * @param out receives the transformed point; may be the same array as point
+     */
+    public void transformPoint(double[] point, double[] out){
+        double x = r[0] * point[0] + r[1] * point[1] + r[2] * point[2] + t[0];
+        double y = r[3] * point[0] + r[4] * point[1] + r[5] * point[2] + t[1];
+        double z = r[6] * point[0] + r[7] * point[1] + r[8] * point[2] + t[2];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+    public double getX(){
+        return t[0];
+    }
+
+    public double getY(){
+        return t[1];
+    }
+
+    public double getZ(){
+        return t[2];
+    }
+
+    /**
+     * @return the rotation about the Z axis in radians, which is the robot's heading on the field
+     */
+    public double getHeading(){
+        return Math.atan2(r[3], r[0]);
+    }
+
+    /**
+     * Flattens this transform onto the field.
+     * @param pose receives x, y and heading in the Transform2d layout
+     */
+    public void toPose2d(double[] pose){
+        Transform2d.set(pose, t[0], t[1], getHeading());
+    }
+
+    /**
+     * Copies this transform into an OpenGL (column major 4x4) array.
+     */
+    public void toOpenGLData(float[] data){
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                data[col * 4 + row] = (float) r[row * 3 + col];
+            }
+            data[12 + row] = (float) t[row];
+            data[row * 4 + 3] = 0;
+        }
+        data[15] = 1;
+    }
+
+    /**
+     * Creates an OpenGLMatrix for this transform.  This allocates, so use it at the edges
+     * (e.g. to hand a location to Vuforia), not every loop.
+     */
+    public OpenGLMatrix toOpenGLMatrix(){
+        float[] data = new float[16];
+        toOpenGLData(data);
+        return new OpenGLMatrix(data);
+    }
+}
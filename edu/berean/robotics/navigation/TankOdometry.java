@@ -0,0 +1,169 @@
+package edu.berean.robotics.navigation;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import edu.berean.robotics.control.TankDrive;
+
+/**
+ * TankOdometry keeps track of where a TankDrive robot is by reading the drive encoders at a
+ * fixed rate on its own thread and integrating the differential drive kinematics.
+ *
+ * The latest pose is published as an immutable Pose2d through an atomic reference, so an opmode
+ * can call getPose() as often as it likes without blocking and without ever seeing a half
+ * updated pose.
+ *
+ * Distances are in inches (from the drive's counts per inch) and the robot starts at
+ * (0, 0) facing along +x unless setPose() is called.
+ */
+public class TankOdometry implements Runnable {
+
+    private static String LOG_TAG = "TankOdometry - ";
+
+    public static final long DEFAULT_PERIOD_MS = 10;
+    public static final long STOP_TIMEOUT_MS = 500;     // how long stop() waits for the thread
+
+    private TankDrive drive;
+    private long periodNanos;
+
+    private AtomicReference<Pose2d> latestPose = new AtomicReference<Pose2d>();
+    private AtomicReference<Pose2d> requestedPose = new AtomicReference<Pose2d>();
+
+    private volatile boolean running = false;
+    private volatile Thread odometryThread;
+    private long updateCount = 0;
+
+    public TankOdometry(TankDrive drive){
+        this(drive, DEFAULT_PERIOD_MS);
+    }
+
+    /**
+     * @param drive the robot's drive train
+     * @param periodMs how often to read the encoders
+     */
+    public TankOdometry(TankDrive drive, long periodMs){
+        this.drive = drive;
+        this.periodNanos = periodMs * 1000000L;
+        latestPose.set(new Pose2d(0, 0, 0, System.nanoTime()));
+    }
+
+    /**
+     * Start tracking on a background thread.
+     */
+    public synchronized void start(){
+        if (running) return;
+        running = true;
+        odometryThread = new Thread(this, "TankOdometry");
+        odometryThread.setDaemon(true);
+        odometryThread.start();
+        RobotLog.i(LOG_TAG + "started");
+    }
+
+    /**
+     * Stop tracking, waiting up to STOP_TIMEOUT_MS for the thread to finish.  The last pose
+     * remains available.
+     */
+    public synchronized void stop(){
+        running = false;
+        Thread thread = odometryThread;
+        odometryThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) RobotLog.w(LOG_TAG + "the thread did not stop in time");
+        }
+        RobotLog.i(LOG_TAG + String.format("stopped after %d updates at %s", updateCount, getPose()));
+    }
+
+    /**
+     * Returns the most recent pose.  This never blocks.
+     * @return
+     */
+    public Pose2d getPose(){
+        return latestPose.get();
+    }
+
+    /**
+     * Move the tracked pose to a known position (for example, the starting position on the
+     * field).  The change is picked up by the odometry thread on its next update.
+     */
+    public void setPose(double x, double y, double heading){
+        Pose2d pose = new Pose2d(x, y, heading, System.nanoTime());
+        requestedPose.set(pose);
+        if (!running) latestPose.set(pose);
+    }
+
+    public void run(){
+
+        DcMotor[] leftMotors = drive.getLeftDriveMotors();
+        DcMotor[] rightMotors = drive.getRightDriveMotors();
+        double countsPerInch = drive.getDriveCountsPerInch();
+        double trackWidth = drive.getTrackWidthInches();
+
+        Pose2d start = latestPose.get();
+        double x = start.x;
+        double y = start.y;
+        double heading = start.heading;
+        double lastLeft = averagePosition(leftMotors);
+        double lastRight = averagePosition(rightMotors);
+        long nextUpdate = System.nanoTime();
+
+        // a thread left over from before a stop() ends even if tracking has started again
+        while (running && Thread.currentThread() == odometryThread) {
+
+            Pose2d reset = requestedPose.getAndSet(null);
+            if (reset != null) {
+                x = reset.x;
+                y = reset.y;
+                heading = reset.heading;
+            }
+
+            double left = averagePosition(leftMotors);
+            double right = averagePosition(rightMotors);
+            long now = System.nanoTime();
+
+            double leftDistance = (left - lastLeft) / countsPerInch;
+            double rightDistance = (right - lastRight) / countsPerInch;
+            lastLeft = left;
+            lastRight = right;
+
+            double distance = (leftDistance + rightDistance) / 2;
+            double turn = (rightDistance - leftDistance) / trackWidth;
+
+            // integrate along the average heading over the update
+            x += distance * Math.cos(heading + turn / 2);
+            y += distance * Math.sin(heading + turn / 2);
+            heading = Pose2d.normalizeAngle(heading + turn);
+
+            latestPose.set(new Pose2d(x, y, heading, now));
+            updateCount++;
+
+            nextUpdate += periodNanos;
+            long sleepNanos = nextUpdate - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1000000L, (int) (sleepNanos % 1000000L));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            } else {
+                // fell behind; don't try to catch up with a burst of updates
+                nextUpdate = System.nanoTime();
+            }
+        }
+    }
+
+    private static double averagePosition(DcMotor[] motors){
+        double total = 0;
+        for (DcMotor motor : motors) {
+            total += motor.getCurrentPosition();
+        }
+        return total / motors.length;
+    }
+}
@@ -0,0 +1,103 @@
+package edu.berean.robotics.navigation;
+
+/**
+ * Transform2d holds static helpers for 2D rigid transform math on the field.  A transform (or
+ * pose) is a double[3] of x, y and heading (radians, counter clockwise positive).  Every method
+ * writes its result into an array supplied by the caller, so none of them allocate and they are
+ * safe to call every loop.
+ *
+ * The output array may be the same array as one of the inputs.
+ */
+public class Transform2d {
+
+    public static final int X = 0;
+    public static final int Y = 1;
+    public static final int HEADING = 2;
+
+    private Transform2d(){
+
+    }
+
+    public static void set(double[] out, double x, double y, double heading){
+        out[X] = x;
+        out[Y] = y;
+        out[HEADING] = heading;
+    }
+
+    /**
+     * out = a * b.  If a is the robot's pose on the field and b is a movement in the robot's
+     * frame, out is the robot's pose after the movement.
+     */
+    public static void compose(double[] a, double[] b, double[] out){
+        compose(a[X], a[Y], a[HEADING], b[X], b[Y], b[HEADING], out);
+    }
+
+    public static void compose(double ax, double ay, double ah, double bx, double by, double bh, double[] out){
+        double cos = Math.cos(ah);
+        double sin = Math.sin(ah);
+        out[X] = ax + cos * bx - sin * by;
+        out[Y] = ay + sin * bx + cos * by;
+        out[HEADING] = Pose2d.normalizeAngle(ah + bh);
+    }
+
+    /**
+     * out = the inverse of a, so that compose(a, out) is the identity.
+     */
+    public static void invert(double[] a, double[] out){
+        invert(a[X], a[Y], a[HEADING], out);
+    }
+
+    public static void invert(double x, double y, double heading, double[] out){
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        out[X] = -cos * x - sin * y;
+        out[Y] = sin * x - cos * y;
+        out[HEADING] = Pose2d.normalizeAngle(-heading);
+    }
+
+    /**
+     * out = the movement that takes pose "from" to pose "to", in the frame of "from"
+     * (inverse(from) * to).
+     */
+    public static void relative(double[] from, double[] to, double[] out){
+        double cos = Math.cos(from[HEADING]);
+        double sin = Math.sin(from[HEADING]);
+        double dx = to[X] - from[X];
+        double dy = to[Y] - from[Y];
+        double heading = Pose2d.normalizeAngle(to[HEADING] - from[HEADING]);
+        out[X] = cos * dx + sin * dy;
+        out[Y] = -sin * dx + cos * dy;
+        out[HEADING] = heading;
+    }
+
+    /**
+     * Moves a point from the transform's frame to the outer frame (for example a point on the
+     * robot to the field).
+     * @param out receives the point's x and y in elements 0 and 1
+     */
+    public static void transformPoint(double[] transform, double px, double py, double[] out){
+        double cos = Math.cos(transform[HEADING]);
+        double sin = Math.sin(transform[HEADING]);
+        double x = transform[X] + cos * px - sin * py;
+        double y = transform[Y] + sin * px + cos * py;
+        out[X] = x;
+        out[Y] = y;
+    }
+
+    /**
+     * @return the angle (radians) the robot at pose would have to turn to face the target,
+     * counter clockwise positive
+     */
+    public static double bearingTo(double[] pose, double targetX, double targetY){
+        return Pose2d.normalizeAngle(Math.atan2(targetY - pose[Y], targetX - pose[X]) - pose[HEADING]);
+    }
+
+    /**
+     * @return the straight line distance from the pose to the target
+     */
+    public static double distanceTo(double[] pose, double targetX, double targetY){
+        double dx = targetX - pose[X];
+        double dy = targetY - pose[Y];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
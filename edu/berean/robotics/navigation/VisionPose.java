@@ -0,0 +1,47 @@
+package edu.berean.robotics.navigation;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+
+/**
+ * A VisionPose is a robot location seen by the camera: the position on the field, the heading,
+ * when it was captured and which target it came from.  Like Pose2d it is immutable so it can be
+ * handed from the tracking thread to the opmode without locking.
+ *
+ * Positions are in the units the trackables were located in (millimeters in the FTC samples);
+ * the heading is in radians, counter clockwise positive.
+ */
+public class VisionPose {
+
+    public final double x;
+    public final double y;
+    public final double z;
+    public final double heading;
+    public final long captureNanos;     // System.nanoTime() when the frame was captured (see VuforiaPoseTracker)
+    public final String targetName;     // the target the location was computed from
+    public final int visibleTargets;    // how many targets were visible at the time
+    public final OpenGLMatrix location; // the full transform, for anything that needs more than x, y and heading
+
+    public VisionPose(double x, double y, double z, double heading, long captureNanos,
+                      String targetName, int visibleTargets, OpenGLMatrix location){
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.heading = heading;
+        this.captureNanos = captureNanos;
+        this.targetName = targetName;
+        this.visibleTargets = visibleTargets;
+        this.location = location;
+    }
+
+    /**
+     * @return how long ago (in milliseconds) this pose was captured
+     */
+    public long getAgeMs(){
+        return (System.nanoTime() - captureNanos) / 1000000L;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("(%.0f, %.0f, %.0f) %.1f deg from %s", x, y, z, Math.toDegrees(heading), targetName);
+    }
+}
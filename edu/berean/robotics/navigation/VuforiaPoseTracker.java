@@ -0,0 +1,151 @@
+package edu.berean.robotics.navigation;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.robotcore.external.matrices.OpenGLMatrix;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackable;
+import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackableDefaultListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The VuforiaPoseTracker polls a set of Vuforia trackables on its own thread and publishes the
+ * latest robot location it finds.  The opmode calls latestPose() whenever it wants a fix; the
+ * call never blocks and does no matrix work, so the cost of vision no longer depends on how fast
+ * the control loop runs.
+ *
+ * The trackables must already have their locations and phone information set (see
+ * VideoNavigationTest) and must be activated before the tracker will see anything.
+ *
+ * Vuforia's listeners don't say when the frame behind a location was captured, only that there
+ * is a new one.  The capture time of a pose is estimated as when the tracker picked it up less
+ * the camera latency: the time from the frame's exposure to its location being available, plus
+ * on average half a polling period.  Measure it for the phone and set it with
+ * setCameraLatencyMs().
+ */
+public class VuforiaPoseTracker implements Runnable {
+
+    private static String LOG_TAG = "VuforiaPoseTracker - ";
+
+    public static final long DEFAULT_PERIOD_MS = 30;    // about the camera frame rate
+    public static final long DEFAULT_CAMERA_LATENCY_MS = 100;
+    public static final long STOP_TIMEOUT_MS = 500;     // how long stop() waits for the thread
+
+    private List<VuforiaTrackable> trackables;
+    private VuforiaTrackableDefaultListener[] listeners;
+    private long periodMs;
+    private volatile long cameraLatencyNanos = DEFAULT_CAMERA_LATENCY_MS * 1000000L;
+
+    private AtomicReference<VisionPose> latestPose = new AtomicReference<VisionPose>();
+    private volatile int visibleTargets = 0;
+    private volatile boolean running = false;
+    private volatile Thread trackerThread;
+
+    public VuforiaPoseTracker(List<VuforiaTrackable> trackables){
+        this(trackables, DEFAULT_PERIOD_MS);
+    }
+
+    /**
+     * @param trackables the targets to track
+     * @param periodMs how often to check the targets
+     */
+    public VuforiaPoseTracker(List<VuforiaTrackable> trackables, long periodMs){
+        this.trackables = new ArrayList<VuforiaTrackable>(trackables);
+        this.periodMs = periodMs;
+        this.listeners = new VuforiaTrackableDefaultListener[this.trackables.size()];
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = (VuforiaTrackableDefaultListener) this.trackables.get(i).getListener();
+        }
+    }
+
+    /**
+     * How long before the tracker picks up a location its frame was captured.
+     */
+    public void setCameraLatencyMs(long cameraLatencyMs){
+        cameraLatencyNanos = cameraLatencyMs * 1000000L;
+    }
+
+    public synchronized void start(){
+        if (running) return;
+        running = true;
+        trackerThread = new Thread(this, "VuforiaPoseTracker");
+        trackerThread.setDaemon(true);
+        trackerThread.start();
+        RobotLog.i(LOG_TAG + "started");
+    }
+
+    /**
+     * Stop tracking, waiting up to STOP_TIMEOUT_MS for the thread to finish.
+     */
+    public synchronized void stop(){
+        running = false;
+        Thread thread = trackerThread;
+        trackerThread = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) RobotLog.w(LOG_TAG + "the thread did not stop in time");
+        }
+        RobotLog.i(LOG_TAG + "stopped");
+    }
+
+    /**
+     * Returns the most recent robot location seen by the camera, or null if no target has been
+     * seen yet.  Check the capture time (or getAgeMs()) to decide if it is still useful.
+     * @return
+     */
+    public VisionPose latestPose(){
+        return latestPose.get();
+    }
+
+    /**
+     * @return the number of targets visible on the tracker's last pass
+     */
+    public int getVisibleTargets(){
+        return visibleTargets;
+    }
+
+    public void run(){
+
+        // a thread left over from before a stop() ends even if tracking has started again
+        while (running && Thread.currentThread() == trackerThread) {
+
+            int visible = 0;
+            int foundIndex = -1;
+            OpenGLMatrix found = null;
+
+            for (int i = 0; i < listeners.length; i++) {
+                if (!listeners[i].isVisible()) continue;
+                visible++;
+                // getUpdatedRobotLocation() only returns a value once per new location, so it
+                // must be called for every visible target on every pass
+                OpenGLMatrix location = listeners[i].getUpdatedRobotLocation();
+                if (location != null) {
+                    found = location;
+                    foundIndex = i;
+                }
+            }
+
+            visibleTargets = visible;
+
+            if (found != null) {
+                // the heading is the rotation about the field Z axis
+                double heading = Math.atan2(found.get(1, 0), found.get(0, 0));
+                latestPose.set(new VisionPose(found.get(0, 3), found.get(1, 3), found.get(2, 3), heading,
+                        System.nanoTime() - cameraLatencyNanos, trackables.get(foundIndex).getName(), visible, found));
+            }
+
+            try {
+                Thread.sleep(periodMs);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+}
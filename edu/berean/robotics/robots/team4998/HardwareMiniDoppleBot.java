@@ -5,10 +5,13 @@ import com.qualcomm.robotcore.hardware.DigitalChannel;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.LightSensor;
 import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.control.LoopScheduler;
+import edu.berean.robotics.control.TankDrive;
 import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleDeviceSpec;
+import edu.berean.robotics.dopple.MeasuredChannel;
 
 /**
  * This is NOT an opmode.
@@ -16,7 +19,7 @@ import edu.berean.robotics.dopple.DoppleBot;
  * This class can be used to define all the specific hardware for a AimBot.
  *
  */
-public class HardwareMiniDoppleBot extends DoppleBot
+public class HardwareMiniDoppleBot extends DoppleBot implements TankDrive
 {
     private static String LOG_TAG = "Hardware MINI DOPPLEBOT - ";
     private static String FRONT_LEFT_MOTOR_NAME = "left_front";
@@ -26,6 +29,11 @@ public class HardwareMiniDoppleBot extends DoppleBot
     private static String LIGHT_SENSOR = "light";
     private static int MAX_SPEED_FOR_ANDYMARK = 2184; //actual max is 2800  making max 80% to handle battery power loss
 
+    // drive train geometry used for encoder driving
+    private static double COUNTS_PER_MOTOR_REV = 1120;         // AndyMark NeveRest 40
+    private static double WHEEL_DIAMETER_INCHES = 4.0;
+    private static double TRACK_WIDTH_INCHES = 11.0;           // measured wheel center to wheel center
+
 
     /* Public OpMode members. */
     public DcMotor frontLeftMotor = null;
@@ -40,7 +48,7 @@ public class HardwareMiniDoppleBot extends DoppleBot
 
     /* local OpMode members. */
     HardwareMap hwMap           =  null;
-    private ElapsedTime period  = new ElapsedTime();
+    private LoopScheduler ticker = new LoopScheduler(LoopScheduler.DEFAULT_PERIOD_MS);
 
 
 
@@ -49,42 +57,41 @@ public class HardwareMiniDoppleBot extends DoppleBot
 
     }
 
-    /* handle standard motor initialization */
-    private DcMotor initMotor(String name, boolean reverse) {
-        RobotLog.i(LOG_TAG + " initializing motor: " + name);
-        DcMotor motor = hwMap.dcMotor.get(name);
-
-        if(!encoderDriveIsEnabled) {
-            motor.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        } else
-        {
-            motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-            motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-            motor.setMaxSpeed(MAX_SPEED_FOR_ANDYMARK);
-        }
+    /* drive motors use their encoders only when encoder drive is enabled */
+    private DoppleDeviceSpec driveMotor(String name, boolean reverse) {
+        if (!encoderDriveIsEnabled) return DoppleDeviceSpec.motor(name, reverse).onTrack("drive");
+        return DoppleDeviceSpec.motorWithEncoder(name, reverse)
+                .withZeroPowerBehavior(null)
+                .withMaxSpeed(MAX_SPEED_FOR_ANDYMARK)
+                .onTrack("drive");
+    }
 
-        if (reverse) motor.setDirection(DcMotor.Direction.REVERSE);
-        motor.setPower(0);
+    public void startRobot(){
 
-        return motor;
     }
 
+    public void stopRobot(){
 
-    /* handle standard servo initialization */
-    private Servo initServo(String name, double pos, boolean reverse) {
-        RobotLog.i(LOG_TAG + " initializing servo " + name);
-        Servo srv = hwMap.servo.get(name);
-        if (reverse) srv.setDirection(Servo.Direction.REVERSE);
-        srv.setPosition(pos);
-        return srv;
     }
 
-    public void startRobot(){
+    public DcMotor[] getLeftDriveMotors() {
+        return new DcMotor[] {frontLeftMotor};
+    }
 
+    public DcMotor[] getRightDriveMotors() {
+        return new DcMotor[] {frontRightMotor};
     }
 
-    public void stopRobot(){
+    public double getDriveCountsPerInch() {
+        return COUNTS_PER_MOTOR_REV / (WHEEL_DIAMETER_INCHES * Math.PI);
+    }
+
+    public double getTrackWidthInches() {
+        return TRACK_WIDTH_INCHES;
+    }
 
+    public double getMaxDriveCountsPerSecond() {
+        return MAX_SPEED_FOR_ANDYMARK;
     }
 
     /* Initialize standard Hardware interfaces */
@@ -94,20 +101,25 @@ public class HardwareMiniDoppleBot extends DoppleBot
         RobotLog.i(LOG_TAG + "ENCODER drive:" + encoderDriveIsEnabled);
         hwMap = ahwMap; // initialize before calling other init functions
 
-        // Define and Initialize Motors
+        // Define, initialize and register Motors and Servos.  The right pusher isn't always
+        // installed, so it is optional: recorded when it is there and skipped when it isn't.
+        initializeDevices(hwMap,
+                driveMotor(FRONT_LEFT_MOTOR_NAME, true),
+                driveMotor(FRONT_RIGHT_MOTOR_NAME, false),
+                DoppleDeviceSpec.servo(LEFT_BUTTON_PUSHER, 0.1, false).onTrack("pushers"),
+                DoppleDeviceSpec.servo(RIGHT_BUTTON_PUSHER, 0.1, true).optional().onTrack("pushers"));
+
+        frontLeftMotor  = getMotor(FRONT_LEFT_MOTOR_NAME);
+        frontRightMotor = getMotor(FRONT_RIGHT_MOTOR_NAME);
+        pusherLeft = getServo(LEFT_BUTTON_PUSHER);
+        pusherRight = getServo(RIGHT_BUTTON_PUSHER);    // null if not installed
 
-        frontLeftMotor  = initMotor(FRONT_LEFT_MOTOR_NAME, true);
-        frontRightMotor = initMotor(FRONT_RIGHT_MOTOR_NAME, false);
-        pusherLeft = initServo(LEFT_BUTTON_PUSHER, 0.1, false);
-        //pusherRight = initServo(RIGHT_BUTTON_PUSHER, 0.1, true);
         lightSensor = hwMap.lightSensor.get(LIGHT_SENSOR);
         lightSensor.enableLed(false);
+        reads().add(lightSensor);
 
-        addRobotComponent(FRONT_LEFT_MOTOR_NAME, frontLeftMotor);
-        addRobotComponent(FRONT_RIGHT_MOTOR_NAME, frontRightMotor);
-        addRobotComponent(LEFT_BUTTON_PUSHER, pusherLeft);
-        //robotComponents.put(RIGHT_BUTTON_PUSHER, pusherLeft);
-        //robotComponents.put(LEFT_BUTTON_PUSHER, pusherLeft);
+        addMeasuredChannel(MeasuredChannel.light("light", lightSensor, 50));
+        measureBattery(hwMap, 500);
 
         /*r = hwMap.digitalChannel.get("r");
         r.setMode(DigitalChannelController.Mode.OUTPUT);
@@ -123,21 +135,20 @@ public class HardwareMiniDoppleBot extends DoppleBot
      *
      * waitForTick implements a periodic delay. However, this acts like a metronome with a regular
      * periodic tick.  This is used to compensate for varying processing times for each cycle.
-     * The function looks at the elapsed cycle time, and sleeps for the remaining time interval.
+     * The ticks come from a LoopScheduler, which keeps a fixed schedule rather than timing each
+     * cycle from the end of the last one; see getTicker() for its jitter and overrun statistics.
      *
      * @param periodMs  Length of wait cycle in mSec.
      * @throws InterruptedException
      */
     public void waitForTick(long periodMs) throws InterruptedException {
 
-        long  remaining = periodMs - (long)period.milliseconds();
-
-        // sleep for the remaining portion of the regular cycle period.
-        if (remaining > 0)
-            Thread.sleep(remaining);
+        ticker.setPeriodMs(periodMs);
+        ticker.waitForTick();
+    }
 
-        // Reset the cycle clock for the next pass.
-        period.reset();
+    public LoopScheduler getTicker() {
+        return ticker;
     }
 }
 
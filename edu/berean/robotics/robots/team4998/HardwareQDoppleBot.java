@@ -4,14 +4,15 @@ import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DeviceInterfaceModule;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.I2cAddr;
-import com.qualcomm.robotcore.hardware.I2cDevice;
-import com.qualcomm.robotcore.hardware.I2cDeviceSynch;
-import com.qualcomm.robotcore.hardware.I2cDeviceSynchImpl;
 import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.control.LoopScheduler;
+import edu.berean.robotics.control.TankDrive;
 import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleDeviceSpec;
+import edu.berean.robotics.dopple.MeasuredChannel;
+import edu.berean.robotics.sensors.I2cSensorPoller;
 
 /**
  * This is NOT an opmode.
@@ -19,8 +20,13 @@ import edu.berean.robotics.dopple.DoppleBot;
  * This class can be used to define all the specific hardware for a AimBot.
  *
  */
-public class HardwareQDoppleBot extends DoppleBot
+public class HardwareQDoppleBot extends DoppleBot implements TankDrive
 {
+    // drive train geometry used for encoder driving
+    private static double COUNTS_PER_MOTOR_REV = 1440;         // TETRIX motor encoder
+    private static double WHEEL_DIAMETER_INCHES = 4.0;
+    private static double TRACK_WIDTH_INCHES = 14.0;           // measured wheel center to wheel center
+    private static double MAX_DRIVE_COUNTS_PER_SECOND = 4000;  // SDK default max speed; setMaxSpeed is not called on this robot
 
     /* Public OpMode members. */
     public DeviceInterfaceModule cdi = null; // core device interface
@@ -34,54 +40,32 @@ public class HardwareQDoppleBot extends DoppleBot
     public Servo pusherLeft = null;
     public Servo pusherRight = null;
 
-    // magic low level access to the MR color sensor as an i2c device
-    private I2cDevice colorC;
-    private I2cDeviceSynch colorCreader;
+    // magic low level access to the MR color sensor as an i2c device.  It is read in the
+    // background by the sensor poller, and only once something asks for the color.
+    private static String COLOR_SENSOR_NAME = "cc";
+    private static I2cAddr COLOR_SENSOR_ADDRESS = I2cAddr.create8bit(0x3c);
+    private static int COLOR_NUMBER_REGISTER = 0x04;
+    private static int COLOR_MODE_REGISTER = 3;
+    private static int COLOR_PASSIVE_MODE = 1;   // 0 for active
+    private static long COLOR_POLL_PERIOD_MS = 20;
+    public static final int NO_COLOR_NUMBER = -1;
+    private I2cSensorPoller sensorPoller;
 
     /* local OpMode members. */
     HardwareMap hwMap           =  null;
-    private ElapsedTime period  = new ElapsedTime();
+    private LoopScheduler ticker = new LoopScheduler(LoopScheduler.DEFAULT_PERIOD_MS);
 
     /* Constructor */
     public HardwareQDoppleBot(){
 
     }
 
-    /* handle standard motor initialization */
-    private DcMotor initMotor(String name, boolean reverse) {
-        DcMotor motor = hwMap.dcMotor.get(name);
-        if (reverse) motor.setDirection(DcMotor.Direction.REVERSE);
-        motor.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        motor.setPower(0);
-        RobotLog.d("HardwareQbot init motor: " + name);
-        return motor;
-    }
-    private DcMotor initMotorWithEncoder(String name, boolean reverse) {
-        DcMotor motor = hwMap.dcMotor.get(name);
-        if (reverse) motor.setDirection(DcMotor.Direction.REVERSE);
-        motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        motor.setPower(0);
-        RobotLog.d("HardwareQbot init motor with encoder: " + name);
-        return motor;
-    }
-
-    /* handle standard servo initialization */
-    private Servo initServo(String name, double pos, boolean reverse) {
-        Servo srv = hwMap.servo.get(name);
-        if (reverse) srv.setDirection(Servo.Direction.REVERSE);
-        srv.setPosition(pos);
-        RobotLog.d("HardwareQbot init servo: " + name);
-        return srv;
-    }
-
     // we have to read directly from the I2c port since MR doesn't let us read what we need.
+    // registering does not touch the hardware; the poller engages the sensor on first use.
     private void initColorSensor()  {
-        colorC = hwMap.i2cDevice.get("cc");
-        colorCreader = new I2cDeviceSynchImpl(colorC, I2cAddr.create8bit(0x3c), false);
-        colorCreader.engage();
-        colorCreader.write8(3, 1);  // put sensor in Passive mode (0 for active)
+        sensorPoller = new I2cSensorPoller(hwMap);
+        sensorPoller.register(COLOR_SENSOR_NAME, COLOR_SENSOR_ADDRESS, COLOR_NUMBER_REGISTER, 1,
+                COLOR_POLL_PERIOD_MS, COLOR_MODE_REGISTER, COLOR_PASSIVE_MODE);
     }
 
     /* Initialize standard Hardware interfaces */
@@ -90,32 +74,37 @@ public class HardwareQDoppleBot extends DoppleBot
         // Save reference to Hardware map
         hwMap = ahwMap; // initialize before calling other init functions
 
-        // Define and Initialize Motors
-
-        catapultMotor = initMotorWithEncoder("meme", false);
-        front_right = initMotorWithEncoder("front_right", false);
-        front_left = initMotorWithEncoder("front_left", true);
-        back_right = initMotorWithEncoder("back_right", false);
-        back_left = initMotorWithEncoder("back_left", true);
-        spinner = initMotor("spinner", false);
-        Qermy = initServo("qermy", 0.49019608, false);
-        pusherLeft = initServo("pusher1", 0, false);
-        pusherRight = initServo("pusher2", 0, true);
+        // Define, initialize and register all motors and servos.  Each subsystem is recorded on
+        // its own track, so e.g. a spinner change doesn't repeat the drive values.
+        initializeDevices(hwMap,
+                DoppleDeviceSpec.motorWithEncoder("meme", false).onTrack("catapult"),
+                DoppleDeviceSpec.motorWithEncoder("front_right", false).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("front_left", true).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("back_right", false).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("back_left", true).onTrack("drive"),
+                DoppleDeviceSpec.motor("spinner", false).onTrack("spinner"),
+                DoppleDeviceSpec.servo("qermy", 0.49019608, false).recordedAs("quermy").onTrack("catapult"), // the name in existing recordings
+                DoppleDeviceSpec.servo("pusher1", 0, false).onTrack("pushers"),
+                DoppleDeviceSpec.servo("pusher2", 0, true).onTrack("pushers"));
+
+        catapultMotor = getMotor("meme");
+        front_right = getMotor("front_right");
+        front_left = getMotor("front_left");
+        back_right = getMotor("back_right");
+        back_left = getMotor("back_left");
+        spinner = getMotor("spinner");
+        Qermy = getServo("qermy");
+        pusherLeft = getServo("pusher1");
+        pusherRight = getServo("pusher2");
+
+        // measure what the drive actually did alongside what it was told
+        addMeasuredChannel(MeasuredChannel.encoder("front_left", front_left, 50));
+        addMeasuredChannel(MeasuredChannel.encoder("front_right", front_right, 50));
+        measureBattery(hwMap, 500);
+
         // save a reference to the core device interface to set LED lights
         //cdi = hwMap.deviceInterfaceModule.get("cdi");
-        //initColorSensor();
-
-        addRobotComponent("meme", catapultMotor);
-        addRobotComponent("front_right", front_right);
-        addRobotComponent("front_left", front_left);
-        addRobotComponent("back_right", back_right);
-        addRobotComponent("back_left", back_left);
-        addRobotComponent("spinner", spinner);
-        addRobotComponent("quermy", Qermy);
-        addRobotComponent("pusher1", pusherLeft);
-        addRobotComponent("pusher2", pusherRight);
-
-
+        initColorSensor();
     }
 
     // Power the left and right wheels as needed
@@ -132,7 +121,7 @@ public class HardwareQDoppleBot extends DoppleBot
     }
 
     public void stopRobot() {
-
+        sensorPoller.stop();
     }
 
     // shorthand for drive with all zeros
@@ -140,10 +129,35 @@ public class HardwareQDoppleBot extends DoppleBot
         drive(0, 0);
     }
 
+    public DcMotor[] getLeftDriveMotors() {
+        return new DcMotor[] {front_left, back_left};
+    }
+
+    public DcMotor[] getRightDriveMotors() {
+        return new DcMotor[] {front_right, back_right};
+    }
+
+    public double getDriveCountsPerInch() {
+        return COUNTS_PER_MOTOR_REV / (WHEEL_DIAMETER_INCHES * Math.PI);
+    }
+
+    public double getTrackWidthInches() {
+        return TRACK_WIDTH_INCHES;
+    }
+
+    public double getMaxDriveCountsPerSecond() {
+        return MAX_DRIVE_COUNTS_PER_SECOND;
+    }
+
+    // returns the most recent color number read by the poller, or NO_COLOR_NUMBER until the
+    // first read completes (see hasColorNumber())
     public int getColorNumber() {
-        byte[] colorCcache;
-        colorCcache = colorCreader.read(0x04, 1);
-        return(colorCcache[0] & 0xFF);
+        return sensorPoller.read(COLOR_SENSOR_NAME).getUnsignedByte(0, NO_COLOR_NUMBER);
+    }
+
+    // false until the poller has read the color sensor for the first time
+    public boolean hasColorNumber() {
+        return sensorPoller.hasReading(COLOR_SENSOR_NAME);
     }
 
     public void redLED(boolean state) {
@@ -158,21 +172,20 @@ public class HardwareQDoppleBot extends DoppleBot
      *
      * waitForTick implements a periodic delay. However, this acts like a metronome with a regular
      * periodic tick.  This is used to compensate for varying processing times for each cycle.
-     * The function looks at the elapsed cycle time, and sleeps for the remaining time interval.
+     * The ticks come from a LoopScheduler, which keeps a fixed schedule rather than timing each
+     * cycle from the end of the last one; see getTicker() for its jitter and overrun statistics.
      *
      * @param periodMs  Length of wait cycle in mSec.
      * @throws InterruptedException
      */
     public void waitForTick(long periodMs) throws InterruptedException {
 
-        long  remaining = periodMs - (long)period.milliseconds();
-
-        // sleep for the remaining portion of the regular cycle period.
-        if (remaining > 0)
-            Thread.sleep(remaining);
+        ticker.setPeriodMs(periodMs);
+        ticker.waitForTick();
+    }
 
-        // Reset the cycle clock for the next pass.
-        period.reset();
+    public LoopScheduler getTicker() {
+        return ticker;
     }
 }
 
@@ -4,14 +4,15 @@ import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DeviceInterfaceModule;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.I2cAddr;
-import com.qualcomm.robotcore.hardware.I2cDevice;
-import com.qualcomm.robotcore.hardware.I2cDeviceSynch;
-import com.qualcomm.robotcore.hardware.I2cDeviceSynchImpl;
 import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.control.LoopScheduler;
+import edu.berean.robotics.control.TankDrive;
 import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleDeviceSpec;
+import edu.berean.robotics.dopple.MeasuredChannel;
+import edu.berean.robotics.sensors.I2cSensorPoller;
 
 /**
  * This is NOT an opmode.
@@ -19,11 +20,16 @@ import edu.berean.robotics.dopple.DoppleBot;
  * This class can be used to define all the specific hardware for a AimBot.
  *
  */
-public class HardwareDoppleBotAimbot extends DoppleBot
+public class HardwareDoppleBotAimbot extends DoppleBot implements TankDrive
 {
 
     private static int MAX_SPEED_FOR_ANDYMARK = 2184; //actual max is 2800  making max 80% to handle battery power loss
 
+    // drive train geometry used for encoder driving
+    private static double COUNTS_PER_MOTOR_REV = 1120;         // AndyMark NeveRest 40
+    private static double WHEEL_DIAMETER_INCHES = 4.0;
+    private static double TRACK_WIDTH_INCHES = 15.0;           // measured wheel center to wheel center
+
     /* Public OpMode members. */
     public DeviceInterfaceModule cdi = null; // core device interface
     public DcMotor frontLeftMotor = null;
@@ -40,13 +46,20 @@ public class HardwareDoppleBotAimbot extends DoppleBot
     public Servo cattleGuard = null;
     //public LightSensor lightSensor;
 
-    // magic low level access to the MR color sensor as an i2c device
-    private I2cDevice colorC;
-    private I2cDeviceSynch colorCreader;
+    // magic low level access to the MR color sensor as an i2c device.  It is read in the
+    // background by the sensor poller, and only once something asks for the color.
+    private static String COLOR_SENSOR_NAME = "cc";
+    private static I2cAddr COLOR_SENSOR_ADDRESS = I2cAddr.create8bit(0x3c);
+    private static int COLOR_NUMBER_REGISTER = 0x04;
+    private static int COLOR_MODE_REGISTER = 3;
+    private static int COLOR_PASSIVE_MODE = 1;   // 0 for active
+    private static long COLOR_POLL_PERIOD_MS = 20;
+    public static final int NO_COLOR_NUMBER = -1;
+    private I2cSensorPoller sensorPoller;
 
     /* local OpMode members. */
     HardwareMap hwMap           =  null;
-    private ElapsedTime period  = new ElapsedTime();
+    private LoopScheduler ticker = new LoopScheduler(LoopScheduler.DEFAULT_PERIOD_MS);
 
     /* Constructor */
     public HardwareDoppleBotAimbot(){
@@ -60,43 +73,15 @@ public class HardwareDoppleBotAimbot extends DoppleBot
 
     public void stopRobot()
     {
-
-    }
-
-    /* handle standard motor initialization */
-    private DcMotor initMotor(String name, boolean reverse) {
-        DcMotor motor = hwMap.dcMotor.get(name);
-        if (reverse) motor.setDirection(DcMotor.Direction.REVERSE);
-        motor.setPower(0);
-        motor.setMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER);
-        return motor;
-    }
-
-    private DcMotor initMotorWithEncoder(String name, boolean reverse) {
-        DcMotor motor = hwMap.dcMotor.get(name);
-        if (reverse) motor.setDirection(DcMotor.Direction.REVERSE);
-        motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-        motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
-        motor.setMaxSpeed(MAX_SPEED_FOR_ANDYMARK);
-        motor.setPower(0);
-        return motor;
-    }
-
-    /* handle standard servo initialization */
-    private Servo initServo(String name, double pos, boolean reverse) {
-        Servo srv = hwMap.servo.get(name);
-        if (reverse) srv.setDirection(Servo.Direction.REVERSE);
-        srv.setPosition(pos);
-        return srv;
+        sensorPoller.stop();
     }
 
     // we have to read directly from the I2c port since MR doesn't let us read what we need.
+    // registering does not touch the hardware; the poller engages the sensor on first use.
     private void initColorSensor()  {
-        colorC = hwMap.i2cDevice.get("cc");
-        colorCreader = new I2cDeviceSynchImpl(colorC, I2cAddr.create8bit(0x3c), false);
-        colorCreader.engage();
-        colorCreader.write8(3, 1);  // put sensor in Passive mode (0 for active)
+        sensorPoller = new I2cSensorPoller(hwMap);
+        sensorPoller.register(COLOR_SENSOR_NAME, COLOR_SENSOR_ADDRESS, COLOR_NUMBER_REGISTER, 1,
+                COLOR_POLL_PERIOD_MS, COLOR_MODE_REGISTER, COLOR_PASSIVE_MODE);
     }
 
 
@@ -105,35 +90,44 @@ public class HardwareDoppleBotAimbot extends DoppleBot
         // Save reference to Hardware map
         hwMap = ahwMap; // initialize before calling other init functions
 
-        // Define and Initialize Motors
-
-
-        frontLeftMotor  = initMotorWithEncoder("left_front", true);
-        frontRightMotor = initMotorWithEncoder("right_front", false);
-        backLeftMotor   = initMotorWithEncoder("left_back", true);
-        backRightMotor  = initMotorWithEncoder("right_back", false);
-        spinner = initMotor("robot_spinner", true);
-        launcher = initMotor("launcher" , true);
-        //catapultMotor = initMotor("meme", true);
-
-        // Define and initialize ALL installed servos.
-        rightButtonPusher = initServo("right_button_push", 0.0, false);
-        leftButtonPusher  = initServo("left_button_push", 1.0, false);
-
-        addRobotComponent("left_front",frontLeftMotor);
-        addRobotComponent("right_front", frontRightMotor);
-        addRobotComponent("left_back", backLeftMotor);
-        addRobotComponent("right_back", backRightMotor);
-        addRobotComponent("robot_spinner",spinner);
-        addRobotComponent("launcher", launcher);
-        addRobotComponent("right_button_push", rightButtonPusher);
-        addRobotComponent("left_button_push", leftButtonPusher);
+        // Define, initialize and register ALL installed motors and servos.
+        // Devices are recorded under their configuration names (the names in RED_1.txt etc.),
+        // each subsystem on its own track
+        initializeDevices(hwMap,
+                DoppleDeviceSpec.motorWithEncoder("left_front", true).withMaxSpeed(MAX_SPEED_FOR_ANDYMARK).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("right_front", false).withMaxSpeed(MAX_SPEED_FOR_ANDYMARK).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("left_back", true).withMaxSpeed(MAX_SPEED_FOR_ANDYMARK).onTrack("drive"),
+                DoppleDeviceSpec.motorWithEncoder("right_back", false).withMaxSpeed(MAX_SPEED_FOR_ANDYMARK).onTrack("drive"),
+                DoppleDeviceSpec.motor("robot_spinner", true).onTrack("spinner"),
+                DoppleDeviceSpec.motor("launcher", true).onTrack("launcher"),
+                //DoppleDeviceSpec.motor("meme", true),
+                DoppleDeviceSpec.servo("right_button_push", 0.0, false).onTrack("pushers"),
+                DoppleDeviceSpec.servo("left_button_push", 1.0, false).onTrack("pushers"));
+
+        frontLeftMotor  = getMotor("left_front");
+        frontRightMotor = getMotor("right_front");
+        backLeftMotor   = getMotor("left_back");
+        backRightMotor  = getMotor("right_back");
+        spinner = getMotor("robot_spinner");
+        launcher = getMotor("launcher");
+        rightButtonPusher = getServo("right_button_push");
+        leftButtonPusher  = getServo("left_button_push");
+
+        // measure what the drive actually did alongside what it was told
+        addMeasuredChannel(MeasuredChannel.encoder("left_front", frontLeftMotor, 50));
+        addMeasuredChannel(MeasuredChannel.encoder("right_front", frontRightMotor, 50));
+        measureBattery(hwMap, 500);
 
         //dropper           = initServo("dropper", 0.0, false);
         //cattleGuard       = initServo("cattleguard", 0.0, true);
         //lightSensor = hwMap.lightSensor.get("light");
-        // save a reference to the core device interface to set LED lights
-        cdi = hwMap.deviceInterfaceModule.get("cdi");
+        // save a reference to the core device interface to set LED lights.  The LEDs are only
+        // an indicator, so the robot still runs (without them) when there is no cdi.
+        try {
+            cdi = hwMap.deviceInterfaceModule.get("cdi");
+        } catch (IllegalArgumentException e) {
+            RobotLog.w("no core device interface; the LEDs are off");
+        }
         initColorSensor();
 
     }
@@ -152,18 +146,43 @@ public class HardwareDoppleBotAimbot extends DoppleBot
         drive(0, 0);
     }
 
+    public DcMotor[] getLeftDriveMotors() {
+        return new DcMotor[] {frontLeftMotor, backLeftMotor};
+    }
+
+    public DcMotor[] getRightDriveMotors() {
+        return new DcMotor[] {frontRightMotor, backRightMotor};
+    }
+
+    public double getDriveCountsPerInch() {
+        return COUNTS_PER_MOTOR_REV / (WHEEL_DIAMETER_INCHES * Math.PI);
+    }
+
+    public double getTrackWidthInches() {
+        return TRACK_WIDTH_INCHES;
+    }
+
+    public double getMaxDriveCountsPerSecond() {
+        return MAX_SPEED_FOR_ANDYMARK;
+    }
+
+    // returns the most recent color number read by the poller, or NO_COLOR_NUMBER until the
+    // first read completes (see hasColorNumber())
     public int getColorNumber() {
-        byte[] colorCcache;
-        colorCcache = colorCreader.read(0x04, 1);
-        return(colorCcache[0] & 0xFF);
+        return sensorPoller.read(COLOR_SENSOR_NAME).getUnsignedByte(0, NO_COLOR_NUMBER);
+    }
+
+    // false until the poller has read the color sensor for the first time
+    public boolean hasColorNumber() {
+        return sensorPoller.hasReading(COLOR_SENSOR_NAME);
     }
 
     public void redLED(boolean state) {
-        cdi.setLED(1, state);
+        if (cdi != null) cdi.setLED(1, state);
     }
 
     public void blueLED(boolean state) {
-        cdi.setLED(0, state);
+        if (cdi != null) cdi.setLED(0, state);
     }
 
 
@@ -171,20 +190,19 @@ public class HardwareDoppleBotAimbot extends DoppleBot
      *
      * waitForTick implements a periodic delay. However, this acts like a metronome with a regular
      * periodic tick.  This is used to compensate for varying processing times for each cycle.
-     * The function looks at the elapsed cycle time, and sleeps for the remaining time interval.
+     * The ticks come from a LoopScheduler, which keeps a fixed schedule rather than timing each
+     * cycle from the end of the last one; see getTicker() for its jitter and overrun statistics.
      *
      * @param periodMs  Length of wait cycle in mSec.
      * @throws InterruptedException
      */
     public void waitForTick(long periodMs) throws InterruptedException {
 
-        long  remaining = periodMs - (long)period.milliseconds();
-
-        // sleep for the remaining portion of the regular cycle period.
-        if (remaining > 0)
-            Thread.sleep(remaining);
+        ticker.setPeriodMs(periodMs);
+        ticker.waitForTick();
+    }
 
-        // Reset the cycle clock for the next pass.
-        period.reset();
+    public LoopScheduler getTicker() {
+        return ticker;
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package edu.berean.robotics.sensors;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The BeaconColorClassifier decides whether a color sensor is looking at a red beacon, a blue
+ * beacon or neither.
+ *
+ * All of the color math is done once, up front: every RGB value (quantized to 4 bits per channel)
+ * is converted to hue, saturation and value and its class is stored in a 4096 entry lookup
+ * table.  Classifying a sample is then a few shifts and an array read.  The MR color number
+ * (register 0x04 of the MR color sensor) is classified through a 17 entry table the same way.
+ *
+ * Single samples flicker, especially at the edge of a beacon, so the classifier also debounces:
+ * the reported color only changes after the same new color has been seen on several samples
+ * in a row, over a minimum time (on the DoppleClock).  A fast loop reads the same sensor
+ * reading several times before the sensor updates it, so a count of samples alone proves
+ * nothing; the time is what makes the new color a settled one.
+ */
+public class BeaconColorClassifier {
+
+    public enum BeaconColor { NONE, RED, BLUE }
+
+    private static final BeaconColor[] COLORS = BeaconColor.values();
+
+    // default thresholds; the hue limits are the ones MiniBotAutoColor has always used
+    public static final float DEFAULT_RED_MAX_HUE = 50;
+    public static final float DEFAULT_BLUE_MIN_HUE = 200;
+    public static final float DEFAULT_BLUE_MAX_HUE = 360;   // every hue above DEFAULT_BLUE_MIN_HUE is blue
+    public static final float DEFAULT_MIN_SATURATION = 0.3f;
+    public static final float DEFAULT_MIN_VALUE = 0.1f;
+    public static final int DEFAULT_CHANNEL_SCALE = 8;      // MR sensor channels are small; scale them up to 0-255
+    public static final int DEFAULT_REQUIRED_SAMPLES = 3;
+    public static final long DEFAULT_REQUIRED_MS = 150;
+
+    private static final int BITS_PER_CHANNEL = 4;
+    private static final int LEVELS = 1 << BITS_PER_CHANNEL;
+    private static final int SHIFT = 8 - BITS_PER_CHANNEL;
+
+    private byte[] rgbTable = new byte[LEVELS * LEVELS * LEVELS];
+    private byte[] colorNumberTable = new byte[17];
+    private int channelScale;
+    private int requiredSamples;
+    private long requiredNanos;
+
+    private BeaconColor stableColor = BeaconColor.NONE;
+    private BeaconColor candidateColor = BeaconColor.NONE;
+    private int candidateCount = 0;
+    private long candidateStartNanos = 0;
+
+    /**
+     * Creates a classifier with the default thresholds.
+     */
+    public BeaconColorClassifier(){
+        this(DEFAULT_RED_MAX_HUE, DEFAULT_BLUE_MIN_HUE, DEFAULT_BLUE_MAX_HUE,
+                DEFAULT_MIN_SATURATION, DEFAULT_MIN_VALUE, DEFAULT_CHANNEL_SCALE, DEFAULT_REQUIRED_SAMPLES,
+                DEFAULT_REQUIRED_MS);
+    }
+
+    /**
+     * Creates a classifier and builds its lookup tables.
+     *
+     * @param redMaxHue hues below this (or above blueMaxHue) are red
+     * @param blueMinHue hues from this up to blueMaxHue are blue
+     * @param blueMaxHue the top of the blue range
+     * @param minSaturation anything less saturated than this (white, grey) is NONE
+     * @param minValue anything darker than this is NONE
+     * @param channelScale raw channel values are multiplied by this (and clipped to 255) before lookup
+     * @param requiredSamples how many samples in a row a new color needs before it is reported
+     * @param requiredMs how long those samples have to span, in milliseconds
+     */
+    public BeaconColorClassifier(float redMaxHue, float blueMinHue, float blueMaxHue,
+                                 float minSaturation, float minValue, int channelScale, int requiredSamples,
+                                 long requiredMs){
+
+        this.channelScale = channelScale;
+        this.requiredSamples = requiredSamples;
+        this.requiredNanos = requiredMs * 1000000L;
+
+        float[] hsv = new float[3];
+        for (int r = 0; r < LEVELS; r++) {
+            for (int g = 0; g < LEVELS; g++) {
+                for (int b = 0; b < LEVELS; b++) {
+                    // classify the center of each bin
+                    rgbToHsv((r << SHIFT) + (1 << SHIFT) / 2, (g << SHIFT) + (1 << SHIFT) / 2,
+                            (b << SHIFT) + (1 << SHIFT) / 2, hsv);
+
+                    BeaconColor color = BeaconColor.NONE;
+                    if (hsv[1] >= minSaturation && hsv[2] >= minValue) {
+                        if (hsv[0] < redMaxHue || hsv[0] >= blueMaxHue) {
+                            color = BeaconColor.RED;
+                        } else if (hsv[0] >= blueMinHue) {
+                            color = BeaconColor.BLUE;
+                        }
+                    }
+                    rgbTable[(r << (2 * BITS_PER_CHANNEL)) | (g << BITS_PER_CHANNEL) | b] = (byte) color.ordinal();
+                }
+            }
+        }
+
+        // MR color numbers: 1-3 purple to blue, 10-11 red (see the MR color sensor color chart)
+        for (int i = 1; i <= 3; i++) colorNumberTable[i] = (byte) BeaconColor.BLUE.ordinal();
+        for (int i = 10; i <= 11; i++) colorNumberTable[i] = (byte) BeaconColor.RED.ordinal();
+    }
+
+    /**
+     * Classifies one RGB sample without debouncing.
+     *
+     * @param red the raw red channel (e.g. ColorSensor.red())
+     * @param green the raw green channel
+     * @param blue the raw blue channel
+     */
+    public BeaconColor classifyRgb(int red, int green, int blue){
+        return COLORS[rgbTable[(quantize(red) << (2 * BITS_PER_CHANNEL)) | (quantize(green) << BITS_PER_CHANNEL) | quantize(blue)]];
+    }
+
+    /**
+     * Classifies one MR color number without debouncing.
+     *
+     * @param colorNumber the MR color number (0 - 16)
+     */
+    public BeaconColor classifyColorNumber(int colorNumber){
+        if (colorNumber < 0 || colorNumber >= colorNumberTable.length) return BeaconColor.NONE;
+        return COLORS[colorNumberTable[colorNumber]];
+    }
+
+    /**
+     * Classifies an RGB sample and feeds it through the debouncer.
+     * @return the debounced color
+     */
+    public BeaconColor updateRgb(int red, int green, int blue){
+        return update(classifyRgb(red, green, blue));
+    }
+
+    /**
+     * Classifies an MR color number and feeds it through the debouncer.
+     * @return the debounced color
+     */
+    public BeaconColor updateColorNumber(int colorNumber){
+        return update(classifyColorNumber(colorNumber));
+    }
+
+    /**
+     * @return the debounced color
+     */
+    public BeaconColor getColor(){
+        return stableColor;
+    }
+
+    /**
+     * Forget the debounced color, e.g. when moving on to the next beacon.
+     */
+    public void reset(){
+        stableColor = BeaconColor.NONE;
+        candidateColor = BeaconColor.NONE;
+        candidateCount = 0;
+    }
+
+    private BeaconColor update(BeaconColor sample){
+        long now = DoppleClock.current().nanoTime();
+        if (sample == stableColor) {
+            candidateCount = 0;
+            return stableColor;
+        }
+        if (sample != candidateColor || candidateCount == 0) {
+            candidateColor = sample;
+            candidateCount = 0;
+            candidateStartNanos = now;
+        }
+        candidateCount++;
+        if (candidateCount >= requiredSamples && now - candidateStartNanos >= requiredNanos) {
+            stableColor = sample;
+            candidateCount = 0;
+        }
+        return stableColor;
+    }
+
+    private int quantize(int channel){
+        int scaled = channel * channelScale;
+        if (scaled > 255) scaled = 255;
+        if (scaled < 0) scaled = 0;
+        return scaled >> SHIFT;
+    }
+
+    // the same conversion as android.graphics.Color.RGBToHSV, so the table can be built anywhere
+    private static void rgbToHsv(int red, int green, int blue, float[] hsv){
+        float r = red / 255f;
+        float g = green / 255f;
+        float b = blue / 255f;
+        float max = Math.max(r, Math.max(g, b));
+        float min = Math.min(r, Math.min(g, b));
+        float delta = max - min;
+
+        float hue = 0;
+        if (delta > 0) {
+            if (max == r) {
+                hue = 60 * (((g - b) / delta) % 6);
+            } else if (max == g) {
+                hue = 60 * ((b - r) / delta + 2);
+            } else {
+                hue = 60 * ((r - g) / delta + 4);
+            }
+        }
+        if (hue < 0) hue += 360;
+
+        hsv[0] = hue;
+        hsv[1] = max == 0 ? 0 : delta / max;
+        hsv[2] = max;
+    }
+}
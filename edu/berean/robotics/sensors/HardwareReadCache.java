@@ -0,0 +1,151 @@
+package edu.berean.robotics.sensors;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.LightSensor;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * The HardwareReadCache reads each value of a registered device at most once per loop and then
+ * answers the rest of that loop's reads of it from memory.  Within one loop() the same encoder
+ * or sensor is often read several times (for telemetry, for a comparison, for the recorder...)
+ * and each read would otherwise be its own trip to the hardware.
+ *
+ * Call refresh() at the top of the loop, then read through the cache instead of the device.
+ * refresh() reads nothing; a value is read from the device the first time it is asked for in a
+ * loop, so only what the loop actually uses is read.  A value is as of that first read, so a
+ * device the loop reads and then writes should be written through setPower() or setPosition(),
+ * which write the device and have its value read again.  A device that was never registered is
+ * read directly, and so is everything until the first refresh().
+ */
+public class HardwareReadCache {
+
+    private ArrayList<DcMotor> motors = new ArrayList<DcMotor>();
+    private ArrayList<Servo> servos = new ArrayList<Servo>();
+    private ArrayList<LightSensor> lightSensors = new ArrayList<LightSensor>();
+    private IdentityHashMap<HardwareDevice, Integer> slots = new IdentityHashMap<HardwareDevice, Integer>();
+
+    private double[] motorPowers = new double[0];
+    private int[] motorPositions = new int[0];
+    private double[] servoPositions = new double[0];
+    private double[] lightLevels = new double[0];
+
+    // the loop each value was last read in; a value is read again when its loop is over
+    private long[] motorPowerLoops = new long[0];
+    private long[] motorPositionLoops = new long[0];
+    private long[] servoPositionLoops = new long[0];
+    private long[] lightLevelLoops = new long[0];
+
+    private long refreshCount = 0;
+    private long deviceReads = 0;
+
+    public void add(DcMotor motor){
+        if (slots.containsKey(motor)) return;
+        slots.put(motor, motors.size());
+        motors.add(motor);
+        motorPowers = new double[motors.size()];
+        motorPositions = new int[motors.size()];
+        motorPowerLoops = new long[motors.size()];
+        motorPositionLoops = new long[motors.size()];
+    }
+
+    public void add(Servo servo){
+        if (slots.containsKey(servo)) return;
+        slots.put(servo, servos.size());
+        servos.add(servo);
+        servoPositions = new double[servos.size()];
+        servoPositionLoops = new long[servos.size()];
+    }
+
+    public void add(LightSensor lightSensor){
+        if (slots.containsKey(lightSensor)) return;
+        slots.put(lightSensor, lightSensors.size());
+        lightSensors.add(lightSensor);
+        lightLevels = new double[lightSensors.size()];
+        lightLevelLoops = new long[lightSensors.size()];
+    }
+
+    /**
+     * Start a new loop: every value is read again the next time it is asked for.  Call this once
+     * at the top of each loop.  It doesn't read anything itself.
+     */
+    public void refresh(){
+        refreshCount++;
+    }
+
+    /**
+     * Set a motor's power, and read it from the motor again the next time it is asked for.
+     */
+    public void setPower(DcMotor motor, double power){
+        motor.setPower(power);
+        Integer slot = slots.get(motor);
+        if (slot != null) motorPowerLoops[slot] = 0;
+    }
+
+    /**
+     * Set a servo's position, and read it from the servo again the next time it is asked for.
+     */
+    public void setPosition(Servo servo, double position){
+        servo.setPosition(position);
+        Integer slot = slots.get(servo);
+        if (slot != null) servoPositionLoops[slot] = 0;
+    }
+
+    public double getPower(DcMotor motor){
+        Integer slot = slots.get(motor);
+        if (slot == null || refreshCount == 0) return motor.getPower();
+        if (motorPowerLoops[slot] != refreshCount) {
+            motorPowers[slot] = motor.getPower();
+            motorPowerLoops[slot] = refreshCount;
+            deviceReads++;
+        }
+        return motorPowers[slot];
+    }
+
+    public int getCurrentPosition(DcMotor motor){
+        Integer slot = slots.get(motor);
+        if (slot == null || refreshCount == 0) return motor.getCurrentPosition();
+        if (motorPositionLoops[slot] != refreshCount) {
+            motorPositions[slot] = motor.getCurrentPosition();
+            motorPositionLoops[slot] = refreshCount;
+            deviceReads++;
+        }
+        return motorPositions[slot];
+    }
+
+    public double getPosition(Servo servo){
+        Integer slot = slots.get(servo);
+        if (slot == null || refreshCount == 0) return servo.getPosition();
+        if (servoPositionLoops[slot] != refreshCount) {
+            servoPositions[slot] = servo.getPosition();
+            servoPositionLoops[slot] = refreshCount;
+            deviceReads++;
+        }
+        return servoPositions[slot];
+    }
+
+    public double getLightDetected(LightSensor lightSensor){
+        Integer slot = slots.get(lightSensor);
+        if (slot == null || refreshCount == 0) return lightSensor.getLightDetected();
+        if (lightLevelLoops[slot] != refreshCount) {
+            lightLevels[slot] = lightSensor.getLightDetected();
+            lightLevelLoops[slot] = refreshCount;
+            deviceReads++;
+        }
+        return lightLevels[slot];
+    }
+
+    public long getRefreshCount(){
+        return refreshCount;
+    }
+
+    /**
+     * @return how many reads of registered devices actually went to the hardware
+     */
+    public long getDeviceReads(){
+        return deviceReads;
+    }
+}
@@ -0,0 +1,49 @@
+package edu.berean.robotics.sensors;
+
+/**
+ * An I2cReading is one window of registers read from an i2c device by the I2cSensorPoller,
+ * along with when it was read.  Readings are immutable; the poller replaces the whole reading
+ * each time it reads the device.
+ */
+public class I2cReading {
+
+    /** returned until a device has been read for the first time */
+    public static final I2cReading NONE = new I2cReading(new byte[0], 0);
+
+    private byte[] data;
+    private long timestampNanos;
+
+    public I2cReading(byte[] data, long timestampNanos){
+        this.data = data;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * @return false if the device has not been read yet
+     */
+    public boolean isValid(){
+        return this != NONE;
+    }
+
+    /**
+     * @param offset the register, relative to the start of the window
+     * @param defaultValue returned if there is no data for that register yet
+     * @return the register value, 0 - 255
+     */
+    public int getUnsignedByte(int offset, int defaultValue){
+        if (offset >= data.length) return defaultValue;
+        return data[offset] & 0xFF;
+    }
+
+    public long getTimestampNanos(){
+        return timestampNanos;
+    }
+
+    /**
+     * @return how old the reading is in milliseconds, or -1 if there is no reading yet
+     */
+    public long getAgeMs(){
+        if (!isValid()) return -1;
+        return (System.nanoTime() - timestampNanos) / 1000000L;
+    }
+}
@@ -0,0 +1,20 @@
+package edu.berean.robotics.sensors;
+
+/**
+ * I2cRegisters is the part of a raw i2c device that the I2cSensorPoller uses: engage it, write
+ * a setup register, read a window of registers and release it.  On the robot it is backed by
+ * an I2cDeviceSynch; off the robot a stand-in can be opened instead (see I2cSensorPoller.setOpener()).
+ */
+public interface I2cRegisters {
+
+    void engage();
+
+    void write8(int register, int value);
+
+    /**
+     * @return the values of count registers starting at register
+     */
+    byte[] read(int register, int count);
+
+    void close();
+}
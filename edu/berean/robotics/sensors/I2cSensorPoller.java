@@ -0,0 +1,276 @@
+package edu.berean.robotics.sensors;
+
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.I2cAddr;
+import com.qualcomm.robotcore.hardware.I2cDeviceSynch;
+import com.qualcomm.robotcore.hardware.I2cDeviceSynchImpl;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The I2cSensorPoller owns a set of raw i2c devices (such as the MR color sensor, which we read
+ * directly because MR doesn't let us read what we need).  Each device has a window of
+ * registers that is read on a background thread at the device's own rate; the latest reading
+ * is cached so that reading it from the loop is just a memory load.
+ *
+ * Devices are registered during robot initialization, but nothing is done with the hardware
+ * until an opmode first asks for a device's reading.  Then the device is engaged (and any
+ * setup register is written) on the background thread.  Opmodes that never use a sensor
+ * never pay for it.
+ */
+public class I2cSensorPoller implements Runnable {
+
+    private static String LOG_TAG = "I2cSensorPoller - ";
+    private static long IDLE_WAIT_MS = 100;
+
+    /** how long stop() waits for the poller thread to finish */
+    public static final long STOP_TIMEOUT_MS = 500;
+
+    /**
+     * Opens a registered device when it is engaged.
+     */
+    public interface Opener {
+        I2cRegisters open(HardwareMap hardwareMap, String name, I2cAddr address);
+    }
+
+    /** opens the device from the hardware map through an I2cDeviceSynch */
+    public static final Opener SYNCH_OPENER = new Opener() {
+        public I2cRegisters open(HardwareMap hardwareMap, String name, I2cAddr address) {
+            final I2cDeviceSynch synch = new I2cDeviceSynchImpl(hardwareMap.i2cDevice.get(name), address, false);
+            return new I2cRegisters() {
+                public void engage() {
+                    synch.engage();
+                }
+                public void write8(int register, int value) {
+                    synch.write8(register, value);
+                }
+                public byte[] read(int register, int count) {
+                    return synch.read(register, count);
+                }
+                public void close() {
+                    synch.close();
+                }
+            };
+        }
+    };
+
+    private static volatile Opener opener = SYNCH_OPENER;
+
+    private HardwareMap hardwareMap;
+    private List<PolledDevice> devices = new CopyOnWriteArrayList<PolledDevice>();
+
+    private final Object wakeUp = new Object();
+    private volatile boolean running = false;
+    private volatile Thread pollerThread;
+
+    public I2cSensorPoller(HardwareMap hardwareMap){
+        this.hardwareMap = hardwareMap;
+    }
+
+    /**
+     * Change how every poller opens its devices, e.g. to stand in simulated devices off the
+     * robot.  Pass SYNCH_OPENER to go back to the real hardware.
+     */
+    public static void setOpener(Opener deviceOpener){
+        opener = deviceOpener;
+    }
+
+    /**
+     * Registers a device to poll.
+     *
+     * @param name the i2c device name in the robot configuration
+     * @param address the device's i2c address
+     * @param register the first register to read
+     * @param count the number of registers to read
+     * @param periodMs how often to read the registers
+     */
+    public void register(String name, I2cAddr address, int register, int count, long periodMs){
+        register(name, address, register, count, periodMs, -1, 0);
+    }
+
+    /**
+     * Registers a device to poll that needs a setup register written when it is engaged.
+     *
+     * @param setupRegister the register to write when the device is engaged
+     * @param setupValue the value to write to the setup register
+     */
+    public void register(String name, I2cAddr address, int register, int count, long periodMs,
+                         int setupRegister, int setupValue){
+        devices.add(new PolledDevice(name, address, register, count, periodMs, setupRegister, setupValue));
+        RobotLog.d(LOG_TAG + String.format("registered %s: %d registers from 0x%02x every %d ms", name, count, register, periodMs));
+    }
+
+    /**
+     * Returns the latest reading for a device.  This never blocks.  The first call for a device
+     * starts it polling, so the first few calls return I2cReading.NONE until the device has
+     * been read; check isValid() (or hasReading()) before using the reading as a real one.
+     *
+     * @param name the name the device was registered with
+     * @return the latest reading
+     */
+    public I2cReading read(String name){
+        PolledDevice device = find(name);
+        if (device == null) {
+            RobotLog.w(LOG_TAG + name + " is not registered");
+            return I2cReading.NONE;
+        }
+        if (!device.requested) {
+            device.requested = true;
+            start();
+            synchronized (wakeUp) {
+                wakeUp.notifyAll();
+            }
+        }
+        return device.latest;
+    }
+
+    /**
+     * @return true once a device has been read at least once.  Like read(), the first call
+     * starts the device polling.
+     */
+    public boolean hasReading(String name){
+        return read(name).isValid();
+    }
+
+    /**
+     * Stop polling and release the devices.  Waits up to STOP_TIMEOUT_MS for the poller thread
+     * to finish, so that the devices are closed and a later read() starts a fresh poller.
+     */
+    public synchronized void stop(){
+        running = false;
+        Thread thread = pollerThread;
+        pollerThread = null;
+        if (thread == null) return;
+
+        synchronized (wakeUp) {
+            wakeUp.notifyAll();
+        }
+        thread.interrupt();
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            RobotLog.w(LOG_TAG + "the poller thread did not stop in time");
+            return;
+        }
+        // polling starts again on the next read of each device
+        for (PolledDevice device : devices) {
+            device.requested = false;
+            device.latest = I2cReading.NONE;
+        }
+    }
+
+    public void run(){
+
+        // a poller left over from before a stop() ends even if a new one has started
+        while (running && Thread.currentThread() == pollerThread) {
+
+            long now = System.nanoTime();
+            long nextDue = Long.MAX_VALUE;
+
+            for (PolledDevice device : devices) {
+                if (!device.requested || device.failed) continue;
+
+                if (device.synch == null) {
+                    if (!engage(device)) continue;
+                    now = System.nanoTime();
+                    device.nextReadNanos = now;
+                }
+
+                if (now >= device.nextReadNanos) {
+                    device.latest = new I2cReading(device.synch.read(device.register, device.count), System.nanoTime());
+                    device.nextReadNanos += device.periodNanos;
+                    if (device.nextReadNanos < now) device.nextReadNanos = now + device.periodNanos;
+                }
+                nextDue = Math.min(nextDue, device.nextReadNanos);
+            }
+
+            try {
+                synchronized (wakeUp) {
+                    if (nextDue == Long.MAX_VALUE) {
+                        // bounded, in case a request slipped in just before this wait
+                        wakeUp.wait(IDLE_WAIT_MS);
+                    } else {
+                        long waitNanos = nextDue - System.nanoTime();
+                        if (waitNanos > 0) wakeUp.wait(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+                    }
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        for (PolledDevice device : devices) {
+            if (device.synch != null) {
+                device.synch.close();
+                device.synch = null;
+            }
+        }
+        RobotLog.i(LOG_TAG + "stopped");
+    }
+
+    private synchronized void start(){
+        if (running) return;
+        running = true;
+        pollerThread = new Thread(this, "I2cSensorPoller");
+        pollerThread.setDaemon(true);
+        pollerThread.start();
+    }
+
+    private boolean engage(PolledDevice device){
+        long start = System.nanoTime();
+        try {
+            I2cRegisters synch = opener.open(hardwareMap, device.name, device.address);
+            synch.engage();
+            if (device.setupRegister >= 0) {
+                synch.write8(device.setupRegister, device.setupValue);
+            }
+            device.synch = synch;
+        } catch (RuntimeException e) {
+            // most likely the device isn't in the robot configuration; don't keep trying
+            device.failed = true;
+            RobotLog.e(LOG_TAG + String.format("could not engage %s: %s", device.name, e.getMessage()));
+            return false;
+        }
+        RobotLog.i(LOG_TAG + String.format("engaged %s in %d ms", device.name, (System.nanoTime() - start) / 1000000L));
+        return true;
+    }
+
+    private PolledDevice find(String name){
+        for (PolledDevice device : devices) {
+            if (device.name.equals(name)) return device;
+        }
+        return null;
+    }
+
+    private static class PolledDevice {
+        final String name;
+        final I2cAddr address;
+        final int register;
+        final int count;
+        final long periodNanos;
+        final int setupRegister;
+        final int setupValue;
+
+        volatile boolean requested = false;
+        volatile boolean failed = false;
+        volatile I2cReading latest = I2cReading.NONE;
+        I2cRegisters synch;         // only touched by the poller thread
+        long nextReadNanos;
+
+        PolledDevice(String name, I2cAddr address, int register, int count, long periodMs,
+                     int setupRegister, int setupValue){
+            this.name = name;
+            this.address = address;
+            this.register = register;
+            this.count = count;
+            this.periodNanos = periodMs * 1000000L;
+            this.setupRegister = setupRegister;
+            this.setupValue = setupValue;
+        }
+    }
+}
@@ -6,7 +6,8 @@ import com.qualcomm.robotcore.hardware.DigitalChannel;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.LightSensor;
 import com.qualcomm.robotcore.hardware.Servo;
-import com.qualcomm.robotcore.util.ElapsedTime;
+
+import edu.berean.robotics.control.LoopScheduler;
 
 /**
  * This is NOT an opmode.
@@ -30,7 +31,7 @@ public class HardwareMiniBot
 
     /* local OpMode members. */
     HardwareMap hwMap           =  null;
-    private ElapsedTime period  = new ElapsedTime();
+    private LoopScheduler ticker = new LoopScheduler(LoopScheduler.DEFAULT_PERIOD_MS);
 
     /* Constructor */
     public HardwareMiniBot(){
@@ -82,21 +83,20 @@ public class HardwareMiniBot
      *
      * waitForTick implements a periodic delay. However, this acts like a metronome with a regular
      * periodic tick.  This is used to compensate for varying processing times for each cycle.
-     * The function looks at the elapsed cycle time, and sleeps for the remaining time interval.
+     * The ticks come from a LoopScheduler, which keeps a fixed schedule rather than timing each
+     * cycle from the end of the last one; see getTicker() for its jitter and overrun statistics.
      *
      * @param periodMs  Length of wait cycle in mSec.
      * @throws InterruptedException
      */
     public void waitForTick(long periodMs) throws InterruptedException {
 
-        long  remaining = periodMs - (long)period.milliseconds();
-
-        // sleep for the remaining portion of the regular cycle period.
-        if (remaining > 0)
-            Thread.sleep(remaining);
+        ticker.setPeriodMs(periodMs);
+        ticker.waitForTick();
+    }
 
-        // Reset the cycle clock for the next pass.
-        period.reset();
+    public LoopScheduler getTicker() {
+        return ticker;
     }
 }
 
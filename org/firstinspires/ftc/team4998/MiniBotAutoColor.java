@@ -32,12 +32,13 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package org.firstinspires.ftc.team4998;
 
-import android.graphics.Color;
-
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.Disabled;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
+import edu.berean.robotics.sensors.BeaconColorClassifier;
+import edu.berean.robotics.sensors.BeaconColorClassifier.BeaconColor;
+
 /**
  * This file provides  Telop driving for Aimbot.
  */
@@ -58,8 +59,8 @@ public class MiniBotAutoColor extends LinearOpMode{
     @Override
     public void runOpMode() throws InterruptedException {
 
-        // hsvValues is an array that will hold the hue, saturation, and value information.
-        float hsvValues[] = {0F,0F,0F};
+        // the classifier builds its color lookup table once, here, rather than converting to HSV every sample
+        BeaconColorClassifier classifier = new BeaconColorClassifier();
 
         /*
          * Initialize the drive system variables.
@@ -92,13 +93,15 @@ public class MiniBotAutoColor extends LinearOpMode{
         robot.backLeftMotor.setPower(0);
         robot.frontRightMotor.setPower(0);
         robot.backRightMotor.setPower(0);*/
-        while(true) {
+        while(opModeIsActive()) {
 
-            // convert the RGB values to HSV values.
-            Color.RGBToHSV(robot.colorSensor.red() * 8, robot.colorSensor.green() * 8, robot.colorSensor.blue() * 8, hsvValues);
+            // classify the sample through the lookup table; the color only changes once it
+            // has been seen on every sample for BeaconColorClassifier.DEFAULT_REQUIRED_MS, which
+            // spans several updates of the sensor, so no settling sleep is needed
+            BeaconColor color = classifier.updateRgb(robot.colorSensor.red(), robot.colorSensor.green(), robot.colorSensor.blue());
 
 
-            if (hsvValues[0] <  50) {
+            if (color == BeaconColor.RED) {
                 robot.pusherLeft.setPosition(0.5);
                 /*telemetry.addData("redFound", "%d", robot.colorSensor.red());
                 telemetry.addData("pusherLeft", "%.2f", 0.5);
@@ -109,8 +112,9 @@ public class MiniBotAutoColor extends LinearOpMode{
                 robot.pusherLeft.setPosition(0.1);
                 idle();
                 sleep(1000);
+                classifier.reset();
 
-            } else if (hsvValues[0] > 200) {
+            } else if (color == BeaconColor.BLUE) {
                 robot.pusherRight.setPosition(0.5);
                 /*telemetry.addData("blueFound", "%d", robot.colorSensor.blue());
                 telemetry.addData("pusherRight", "%.2f", 0.5);
@@ -120,13 +124,13 @@ public class MiniBotAutoColor extends LinearOpMode{
                 robot.pusherRight.setPosition(0.1);
                 idle();
                 sleep(1000);
+                classifier.reset();
             }
             //telemetry.addData("red", "%d", robot.colorSensor.red());
             //telemetry.addData("blue", "%d", robot.colorSensor.blue());
-            telemetry.addData("Hue", hsvValues[0]);
+            telemetry.addData("Color", color.toString());
             updateTelemetry(telemetry);
             idle();
-            sleep(500);
         }
 
 
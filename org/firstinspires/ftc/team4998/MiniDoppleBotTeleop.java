@@ -36,7 +36,10 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.input.AxisShaper;
+import edu.berean.robotics.input.GamepadInput;
 import edu.berean.robotics.robots.team4998.HardwareMiniDoppleBot;
+import edu.berean.robotics.sensors.HardwareReadCache;
 
 /**
  * This file provides  Telop driving for Minibot.
@@ -52,6 +55,9 @@ public class MiniDoppleBotTeleop extends OpMode{
 
     protected HardwareMiniDoppleBot robot = new HardwareMiniDoppleBot(); // use the class created to define a Aimbot's hardware
     protected boolean sniperModeOn = true;
+    protected GamepadInput driver = new GamepadInput();   // gamepad1
+
+    static final double SNIPER_SCALE = 1.0 / 3.0;
 
 
     /*
@@ -65,6 +71,10 @@ public class MiniDoppleBotTeleop extends OpMode{
         RobotLog.i(LOG_TAG + "initializing");
         robot.initializeRobot(hardwareMap);
 
+        driver.setShaper(GamepadInput.LEFT_STICK_Y, AxisShaper.forDrive());
+        driver.setShaper(GamepadInput.RIGHT_STICK_Y, AxisShaper.forDrive());
+        driver.setShaper(GamepadInput.LEFT_TRIGGER, AxisShaper.forPosition());
+
         // Send telemetry message to signify robot waiting;
         telemetry.addData("Status", "Initializing. Encoder drive is " + robot.encoderDriveIsEnabled);
         telemetry.update();
@@ -99,25 +109,30 @@ public class MiniDoppleBotTeleop extends OpMode{
         double right;
         double pusherLeftInput;
 
+        // start a new loop in the read cache; the telemetry and the recorder's measured
+        // channels below read each value from the hardware at most once
+        robot.refreshReads();
+
+        // sniper mode scales the drive sticks; a change is ramped in by the slew limit
+        double driveScale = sniperModeOn ? SNIPER_SCALE : 1.0;
+        driver.getShaper(GamepadInput.LEFT_STICK_Y).setScale(driveScale);
+        driver.getShaper(GamepadInput.RIGHT_STICK_Y).setScale(driveScale);
+
+        // read and shape the gamepad once
+        driver.update(gamepad1);
+
         // Run wheels in tank mode (note: The joystick goes negative when pushed forwards, so negate it)
-        left = gamepad1.left_stick_y;
-        right = gamepad1.right_stick_y;
-        pusherLeftInput = gamepad1.left_trigger;
-        if (!sniperModeOn) {
-            robot.frontLeftMotor.setPower(left);
-            robot.frontRightMotor.setPower(right);
-        }
-        else
-        {
-            robot.frontLeftMotor.setPower(left/3);
-            robot.frontRightMotor.setPower(right/3);
-        }
+        left = driver.leftStickY;
+        right = driver.rightStickY;
+        pusherLeftInput = driver.leftTrigger;
+        robot.frontLeftMotor.setPower(left);
+        robot.frontRightMotor.setPower(right);
 
-        if (gamepad1.x)
+        if (driver.wasPressed(GamepadInput.X))
         {
             sniperModeOn = true;
         }
-        if (gamepad1.y)
+        if (driver.wasPressed(GamepadInput.Y))
         {
             sniperModeOn = false;
         }
@@ -126,15 +141,15 @@ public class MiniDoppleBotTeleop extends OpMode{
 
         // Send telemetry message to signify robot running;
         //telemetry.addData("claw",  "Offset = %.2f", clawOffset);
-        telemetry.addData("left",  "left power %.2f  position %d", robot.frontLeftMotor.getPower(), robot.frontLeftMotor.getCurrentPosition());
-        telemetry.addData("right", "right power %.2f position %d", robot.frontRightMotor.getPower(), robot.frontRightMotor.getCurrentPosition());
-        telemetry.addData("light", "%f", robot.lightSensor.getLightDetected());
-        telemetry.addData("servo", "%.2f", robot.pusherLeft.getPosition());
+        HardwareReadCache reads = robot.reads();
+        telemetry.addData("left",  "left power %.2f  position %d", reads.getPower(robot.frontLeftMotor), reads.getCurrentPosition(robot.frontLeftMotor));
+        telemetry.addData("right", "right power %.2f position %d", reads.getPower(robot.frontRightMotor), reads.getCurrentPosition(robot.frontRightMotor));
+        telemetry.addData("light", "%f", reads.getLightDetected(robot.lightSensor));
+        telemetry.addData("servo", "%.2f", reads.getPosition(robot.pusherLeft));
         telemetry.update();
 
         if(robot.robotRecordingIsOn()) {
-            RobotLog.i(LOG_TAG + "update recording");
-            robot.updateRecording();
+            robot.updateRecording(gamepad1, gamepad2);
         }
     }
 
@@ -0,0 +1,51 @@
+package org.firstinspires.ftc.team4998;
+
+import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
+import com.qualcomm.robotcore.eventloop.opmode.Disabled;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import edu.berean.robotics.control.PathExecutor;
+import edu.berean.robotics.control.PathSegment;
+import edu.berean.robotics.robots.team4998.HardwareQDoppleBot;
+
+/**
+ * Drives the path described in QbotAutonomousTest using the drive encoders:
+ *   - Drive forward for 48 inches
+ *   - Spin right for 12 Inches
+ *   - Drive Backwards for 24 inches
+ */
+@Autonomous(name = "QDoppleBot: Encoder path", group = "QDoppleBot")
+@Disabled
+public class QDoppleBotAutoPath extends LinearOpMode {
+
+    private static String LOG_TAG = "QDOPPLEBOT PATH - ";
+
+    static final double     MAX_VELOCITY      = 24.0;   // inches per second
+    static final double     MAX_ACCELERATION  = 36.0;   // inches per second per second
+
+    HardwareQDoppleBot robot = new HardwareQDoppleBot();
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+
+        RobotLog.i(LOG_TAG + "initializing");
+        robot.initializeRobot(hardwareMap);
+        PathExecutor path = new PathExecutor(this, robot, MAX_VELOCITY, MAX_ACCELERATION);
+
+        telemetry.addData("Status", "Waiting to start");
+        telemetry.update();
+
+        waitForStart();
+
+        boolean completed = path.run(
+                PathSegment.drive(48),
+                new PathSegment(12, -12),
+                PathSegment.drive(-24));
+
+        telemetry.addData("Status", completed ? "Complete" : "Stopped");
+        telemetry.update();
+
+        robot.stopRobot();
+    }
+}
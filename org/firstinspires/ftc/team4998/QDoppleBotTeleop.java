@@ -37,8 +37,10 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.util.ElapsedTime;
-import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.control.ServoProfiler;
+import edu.berean.robotics.input.AxisShaper;
+import edu.berean.robotics.input.GamepadInput;
 import edu.berean.robotics.robots.team4998.HardwareQDoppleBot;
 
 /**
@@ -54,14 +56,17 @@ public class QDoppleBotTeleop extends OpMode{
     HardwareQDoppleBot robot = new HardwareQDoppleBot(); // use the class created to define a Aimbot's hardware
     double qermyStartPos = 0.49019608;
     double qermyEndPos = 0.07843137;
-    double qermyOffset = 0.49019608;
-    double qermySpeed = 0.01;
+    double qermySpeed = 0.5; // position units per second (was 0.01 per loop at ~50 loops per second)
+    ServoProfiler qermy;
     double pusherUpPos = 0.63921569;
     double pusherDownPos = 0;
 
     boolean delayOn = false;
     boolean readyForTimerReset = true;
     boolean readyCatapultMode = false;
+    GamepadInput driver = new GamepadInput();   // gamepad1
+    GamepadInput gunner = new GamepadInput();   // gamepad2
+    static final double CATAPULT_SCALE = 1.0 / 1.8;
     private ElapsedTime     runtime = new ElapsedTime();
     static final int        CATAPULT_LAUNCH_COUNT   = 435;
 
@@ -75,6 +80,14 @@ public class QDoppleBotTeleop extends OpMode{
          * The init() method of the hardware class does all the work here
          */
         robot.initializeRobot(hardwareMap);
+        qermy = new ServoProfiler(robot.Qermy, qermyStartPos, qermySpeed);
+
+        driver.setShaper(GamepadInput.LEFT_STICK_Y, AxisShaper.forDrive());
+        driver.setShaper(GamepadInput.RIGHT_STICK_Y, AxisShaper.forDrive());
+        AxisShaper catapultShaper = AxisShaper.forPower();
+        catapultShaper.setScale(CATAPULT_SCALE);
+        gunner.setShaper(GamepadInput.LEFT_STICK_Y, catapultShaper);
+        gunner.setShaper(GamepadInput.RIGHT_STICK_Y, AxisShaper.forPower());
 
         // Send telemetry message to signify robot waiting;
         telemetry.addData("Say", "Hello Driver");    //
@@ -108,22 +121,31 @@ public class QDoppleBotTeleop extends OpMode{
         double left;
         double right;
 
+        // start a new loop in the read cache; the comparisons, telemetry and the recorder's
+        // measured channels below read each value from the hardware at most once.  The pushers
+        // are written through the cache, since they are read through it.
+        robot.refreshReads();
+
+        // read and shape both gamepads once
+        driver.update(gamepad1);
+        gunner.update(gamepad2);
+
         // Run wheels in tank mode (note: The joystick goes negative when pushed forwards, so negate it)
-        catapultPower = -gamepad2.left_stick_y;
-        spinnerPower = -gamepad2.right_stick_y;
-        right = gamepad1.right_stick_y;
-        left = gamepad1.left_stick_y;
+        catapultPower = -gunner.leftStickY;     // already scaled by CATAPULT_SCALE
+        spinnerPower = -gunner.rightStickY;
+        right = driver.rightStickY;
+        left = driver.leftStickY;
         robot.spinner.setPower(spinnerPower);
         if (!readyCatapultMode)
         {
-            robot.catapultMotor.setPower(catapultPower/1.8);
+            robot.catapultMotor.setPower(catapultPower);
         }
         robot.front_right.setPower(right);
         robot.back_right.setPower (right);
         robot.front_left.setPower (left);
         robot.back_left.setPower (left);
         // Use gamepad left & right Bumpers to open and close the claw
-        if (gamepad2.dpad_up && !readyCatapultMode)
+        if (gunner.wasPressed(GamepadInput.DPAD_UP) && !readyCatapultMode)
         {
             readyCatapultMode = true;
             robot.catapultMotor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
@@ -141,31 +163,28 @@ public class QDoppleBotTeleop extends OpMode{
                 readyCatapultMode = false;
             }
         }
-        if (gamepad2.right_bumper)
+        if (gunner.isDown(GamepadInput.RIGHT_BUMPER))
         {
-            robot.pusherRight.setPosition(pusherUpPos);
+            robot.reads().setPosition(robot.pusherRight, pusherUpPos);
         }
-        else if (!gamepad2.right_bumper && robot.pusherRight.getPosition() != pusherDownPos)
+        else if (robot.reads().getPosition(robot.pusherRight) != pusherDownPos)
         {
-            robot.pusherRight.setPosition(pusherDownPos);
+            robot.reads().setPosition(robot.pusherRight, pusherDownPos);
         }
-        if (gamepad2.left_bumper)
+        if (gunner.isDown(GamepadInput.LEFT_BUMPER))
         {
-            robot.pusherLeft.setPosition(pusherUpPos);
+            robot.reads().setPosition(robot.pusherLeft, pusherUpPos);
         }
-        else if (!gamepad2.left_bumper && robot.pusherLeft.getPosition() != pusherDownPos)
+        else if (robot.reads().getPosition(robot.pusherLeft) != pusherDownPos)
         {
-            robot.pusherLeft.setPosition(pusherDownPos);
+            robot.reads().setPosition(robot.pusherLeft, pusherDownPos);
         }
-        if (gamepad2.a && !delayOn)
+        if (gunner.wasPressed(GamepadInput.A) && !delayOn)
         {
             delayOn = true;
+            qermy.setTarget(qermyEndPos);
         }
-        if (delayOn && qermyOffset > qermyEndPos)
-        {
-            qermyOffset -= qermySpeed;
-        }
-        if (delayOn && qermyOffset <= qermyEndPos)
+        if (delayOn && qermy.isAtTarget())
         {
             if (readyForTimerReset)
             {
@@ -175,27 +194,23 @@ public class QDoppleBotTeleop extends OpMode{
             if (runtime.seconds() > 1)
             {
                 delayOn = false;
+                readyForTimerReset = true;
+                qermy.setTarget(qermyStartPos);
             }
 
         }
-        if (qermyOffset < qermyStartPos && !delayOn)
-        {
-            readyForTimerReset = true;
-            qermyOffset += qermySpeed;
-        }
-        // Move both servos to new position.  Assume servos are mirror image of each other.
-        robot.Qermy.setPosition(qermyOffset);
+        // Move qermy toward its target; the servo is only written when the position changes.
+        qermy.update();
 
         // Send telemetry message to signify robot running;
         //telemetry.addData("claw",  "Offset = %.2f", clawOffset);
-        telemetry.addData("catapult", "catapult encoder: %d", robot.catapultMotor.getCurrentPosition());
+        telemetry.addData("catapult", "catapult encoder: %d", robot.reads().getCurrentPosition(robot.catapultMotor));
         telemetry.addData("spinner", "right: %.2f", right);
-        telemetry.addData("qermy", "%.2f", qermyOffset);
+        telemetry.addData("qermy", "%.2f", qermy.getPosition());
         updateTelemetry(telemetry);
 
         if(robot.robotRecordingIsOn()) {
-            RobotLog.i("update recording");
-            robot.updateRecording();
+            robot.updateRecording(gamepad1, gamepad2);
         }
     }
 
@@ -39,6 +39,9 @@ import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.util.ElapsedTime;
 import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.control.MotorMoveResult;
+import edu.berean.robotics.control.MotorMover;
+
 /**
  * This file illustrates the concept of driving a path based on encoder counts.
  * It uses the common Pushbot hardware class to define the drive on the robot.
@@ -74,6 +77,7 @@ public class QbotAutonomousTest extends LinearOpMode {
     /* Declare OpMode members. */
     private HardwareQBot robot   = new HardwareQBot();   // Use a qbot's hardware
     private ElapsedTime     runtime = new ElapsedTime();
+    private MotorMover      mover;
 
     static final int        COUNTS_PER_MOTOR_REV    = 1440 ;    // eg: TETRIX Motor Encoder
     static final int        CATAPULT_LAUNCH_COUNT   = 935;
@@ -88,6 +92,7 @@ public class QbotAutonomousTest extends LinearOpMode {
          * The init() method of the hardware class does all the work here
          */
         robot.init(hardwareMap);
+        mover = new MotorMover(this);
 
         // Send telemetry message to signify robot waiting;
         telemetry.addData("Status", "Waiting to start");    //
@@ -123,21 +128,13 @@ public class QbotAutonomousTest extends LinearOpMode {
         telemetry.addData("Catapult","Ready Position");
         telemetry.update();
 
-        robot.catapultMotor.setTargetPosition(CATAPULT_LAUNCH_COUNT);
-        robot.catapultMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        robot.catapultMotor.setPower(CATAPULT_READY_POWER);
-
-        while (opModeIsActive() && robot.catapultMotor.isBusy())
-        {
-            telemetry.addData("Catapult", "Position %d", robot.catapultMotor.getCurrentPosition());
-            telemetry.update();
-        }
+        MotorMoveResult result = mover.move(robot.catapultMotor, CATAPULT_LAUNCH_COUNT, CATAPULT_READY_POWER);
 
         //robot.catapultMotor.setPower(0);
 
-        telemetry.addData("Catapult","READIED!");
+        telemetry.addData("Catapult","READIED! %s", result);
         telemetry.update();
-        RobotLog.d("QbotAutonomousTest: Catapult READIED!");
+        RobotLog.d("QbotAutonomousTest: Catapult READIED! " + result);
     }
 
     private void encoderFire()
@@ -146,21 +143,13 @@ public class QbotAutonomousTest extends LinearOpMode {
         telemetry.addData("Catapult","Fire!");
         telemetry.update();
 
-        robot.catapultMotor.setTargetPosition(COUNTS_PER_MOTOR_REV);
-        robot.catapultMotor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        robot.catapultMotor.setPower(CATAPULT_FIRE_POWER);
-
-        while (opModeIsActive() && robot.catapultMotor.isBusy())
-        {
-            telemetry.addData("Catapult", "Position %d", robot.catapultMotor.getCurrentPosition());
-            telemetry.update();
-        }
+        MotorMoveResult result = mover.move(robot.catapultMotor, COUNTS_PER_MOTOR_REV, CATAPULT_FIRE_POWER);
 
         robot.catapultMotor.setPower(0);
 
-        telemetry.addData("Catapult","FIRED!");
+        telemetry.addData("Catapult","FIRED! %s", result);
         telemetry.update();
-        RobotLog.d("QbotAutonomousTest: Catapult FIRED!");
+        RobotLog.d("QbotAutonomousTest: Catapult FIRED! " + result);
     }
 
 }
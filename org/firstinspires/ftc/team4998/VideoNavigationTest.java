@@ -53,6 +53,10 @@ import org.firstinspires.ftc.robotcore.external.navigation.VuforiaTrackables;
 import java.util.ArrayList;
 import java.util.List;
 
+import edu.berean.robotics.navigation.Transform2d;
+import edu.berean.robotics.navigation.VisionPose;
+import edu.berean.robotics.navigation.VuforiaPoseTracker;
+
 /**
  * This OpMode illustrates the basics of using the Vuforia localizer to determine
  * positioning and orientation of robot on the FTC field.
@@ -90,8 +94,6 @@ public class VideoNavigationTest extends LinearOpMode {
 
     public static final String TAG = "Vuforia Sample";
 
-    OpenGLMatrix lastLocation = null;
-
     /**
      * {@link #vuforia} is the variable we will use to store our instance of the Vuforia
      * localization engine.
@@ -294,33 +296,43 @@ public class VideoNavigationTest extends LinearOpMode {
         /** Start tracking the data sets we care about. */
         stonesAndChips.activate();
 
+        /**
+         * The tracker polls the listeners on its own thread.  The loop below only picks up the
+         * latest pose it has published, so the vision work doesn't slow the loop down.
+         */
+        VuforiaPoseTracker tracker = new VuforiaPoseTracker(allTrackables);
+        tracker.start();
+
+        /**
+         * The bearing to the red target is worked out every pass, so it uses Transform2d on a
+         * reused array rather than OpenGLMatrix math, which would allocate new matrices each time.
+         */
+        double[] robotPose = new double[3];
+        float redTargetX = -mmFTCFieldWidth/2;
+        float redTargetY = 0;
+
         while (opModeIsActive()) {
 
-            for (VuforiaTrackable trackable : allTrackables) {
-                /**
-                 * getUpdatedRobotLocation() will return null if no new information is available since
-                 * the last time that call was made, or if the trackable is not currently visible.
-                 * getRobotLocation() will return null if the trackable is not currently visible.
-                 */
-                telemetry.addData(trackable.getName(), ((VuforiaTrackableDefaultListener)trackable.getListener()).isVisible() ? "Visible" : "Not Visible");    //
-
-                OpenGLMatrix robotLocationTransform = ((VuforiaTrackableDefaultListener)trackable.getListener()).getUpdatedRobotLocation();
-                if (robotLocationTransform != null) {
-                    lastLocation = robotLocationTransform;
-                }
-            }
+            VisionPose pose = tracker.latestPose();
+
             /**
              * Provide feedback as to where the robot was last located (if we know).
              */
-            if (lastLocation != null) {
-                //  RobotLog.vv(TAG, "robot=%s", format(lastLocation));
-                telemetry.addData("Pos", format(lastLocation));
+            telemetry.addData("Visible", "%d targets", tracker.getVisibleTargets());
+            if (pose != null) {
+                telemetry.addData("Pos", "%s, %d ms old", pose, pose.getAgeMs());
+                Transform2d.set(robotPose, pose.x, pose.y, pose.heading);
+                telemetry.addData("Red target", "%.1f deg, %.0f mm",
+                        Math.toDegrees(Transform2d.bearingTo(robotPose, redTargetX, redTargetY)),
+                        Transform2d.distanceTo(robotPose, redTargetX, redTargetY));
             } else {
                 telemetry.addData("Pos", "Unknown");
             }
             telemetry.update();
             idle();
         }
+
+        tracker.stop();
     }
 
     /**
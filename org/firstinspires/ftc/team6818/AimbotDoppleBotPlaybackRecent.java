@@ -41,6 +41,7 @@ import java.io.File;
 
 import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
 import edu.berean.robotics.dopple.util.DoppleBotHistoryHelper;
+import edu.berean.robotics.navigation.TankOdometry;
 import edu.berean.robotics.robots.team6818.HardwareDoppleBotAimbot;
 
 @Autonomous(name = "Aimbot: Play recent", group = "Aimbot")
@@ -57,6 +58,7 @@ public class AimbotDoppleBotPlaybackRecent extends LinearOpMode {
     private String LOG_TAG = "AIMBOT PLAYBACK FILE - ";
 
     protected HardwareDoppleBotAimbot robot = new HardwareDoppleBotAimbot();
+    protected TankOdometry odometry;
 
 
     /**
@@ -81,14 +83,22 @@ public class AimbotDoppleBotPlaybackRecent extends LinearOpMode {
         robot.initializeRobot(hardwareMap);
         File path = new File (Environment.getExternalStorageDirectory().getAbsolutePath() + ROBOT_HISTORY_DIRECTORY);
         File historyFile = DoppleBotHistoryHelper.lastFileModified(path.getAbsolutePath());
+        odometry = new TankOdometry(robot);
 
         waitForStart();
+        odometry.start();
 
         if (historyFile.exists()){
             DoppleBotHistoryRecord historyToPlay = DoppleBotHistoryHelper.getHistoryFromFile(historyFile);
             robot.startPlayback(historyToPlay, this);
         } else RobotLog.w(LOG_TAG + String.format("Couldn't load most recent file from %s", path.toString()));
 
+        odometry.stop();
+        // where playback left the robot, relative to where it started; compare runs to see the drift
+        RobotLog.i(LOG_TAG + "playback ended at " + odometry.getPose());
+        telemetry.addData("End pose", odometry.getPose().toString());
+        telemetry.update();
+
         robot.stopRobot();
 
 
@@ -36,7 +36,10 @@ import com.qualcomm.robotcore.eventloop.opmode.Disabled;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 import com.qualcomm.robotcore.util.Range;
+import com.qualcomm.robotcore.util.RobotLog;
 
+import edu.berean.robotics.input.AxisShaper;
+import edu.berean.robotics.input.GamepadInput;
 import edu.berean.robotics.robots.team6818.HardwareDoppleBotAimbot;
 
 
@@ -49,10 +52,20 @@ import edu.berean.robotics.robots.team6818.HardwareDoppleBotAimbot;
 // @Disabled
 public class AimbotTeleop extends OpMode{
 
+    private static String LOG_TAG = "AimbotTeleop - ";
+
     /* Declare OpMode members. */
 
     protected HardwareDoppleBotAimbot robot = new HardwareDoppleBotAimbot(); // use the class created to define a Aimbot's hardware
     protected boolean sniperModeOn = true;
+    protected boolean emergencyStopped = false;
+    protected GamepadInput driver = new GamepadInput();   // gamepad1
+    protected GamepadInput gunner = new GamepadInput();   // gamepad2
+
+    static final double SNIPER_SCALE = 1.0 / 3.0;
+
+    // events marked in recordings; the payload is 1 for on and 0 for off
+    public static final int SNIPER_MODE_EVENT = 1;
 
 
     /*
@@ -64,6 +77,14 @@ public class AimbotTeleop extends OpMode{
          * The init() method of the hardware class does all the work here
          */
         robot.initializeRobot(hardwareMap);
+        robot.startFlightRecorder();
+
+        driver.setShaper(GamepadInput.LEFT_STICK_Y, AxisShaper.forDrive());
+        driver.setShaper(GamepadInput.RIGHT_STICK_Y, AxisShaper.forDrive());
+        gunner.setShaper(GamepadInput.LEFT_STICK_Y, AxisShaper.forPower());
+        gunner.setShaper(GamepadInput.RIGHT_STICK_Y, AxisShaper.forPower());
+        gunner.setShaper(GamepadInput.LEFT_STICK_X, AxisShaper.forPosition());
+        gunner.setShaper(GamepadInput.RIGHT_STICK_X, AxisShaper.forPosition());
 
         // Send telemetry message to signify robot waiting;
         telemetry.addData("Say", "Hello Driver");    //
@@ -89,6 +110,41 @@ public class AimbotTeleop extends OpMode{
      */
     @Override
     public void loop() {
+        if (emergencyStopped) return;
+
+        // start a new loop in the read cache
+        robot.refreshReads();
+
+        // if the loop throws, stop the robot and save the last few seconds before the opmode
+        // dies.  The original exception is rethrown; if stopping fails too, that is logged.
+        try {
+            driveLoop();
+        } catch (RuntimeException e) {
+            try {
+                robot.emergencyStop("exception");
+            } catch (RuntimeException stopFailure) {
+                RobotLog.e(LOG_TAG + "emergency stop failed: " + stopFailure);
+            }
+            throw e;
+        }
+        robot.updateFlightRecorder();
+
+        // the driver's BACK button stops the robot; the gunner's saves the flight recorder
+        if (driver.wasPressed(GamepadInput.BACK)) {
+            emergencyStopped = true;
+            robot.emergencyStop("estop");
+            telemetry.addData("Status", "EMERGENCY STOP");
+            updateTelemetry(telemetry);
+        }
+        if (gunner.wasPressed(GamepadInput.BACK)) {
+            robot.dumpFlightRecorder("request");
+        }
+    }
+
+    /*
+     * Drive the robot from the gamepads, once a loop
+     */
+    protected void driveLoop() {
         double left;
         double right;
         double launcherpower;
@@ -97,33 +153,36 @@ public class AimbotTeleop extends OpMode{
         double LeftButtonPosition;
 
 
-        left = gamepad1.left_stick_y;
-        right = gamepad1.right_stick_y;
-        spinnerpower = gamepad2.right_stick_y;
-        launcherpower = gamepad2.left_stick_y;
-        RightButtonPosition = gamepad2.right_stick_x;
-        LeftButtonPosition = gamepad2.left_stick_x;
+        // sniper mode scales the drive sticks; a change is ramped in by the slew limit
+        double driveScale = sniperModeOn ? SNIPER_SCALE : 1.0;
+        driver.getShaper(GamepadInput.LEFT_STICK_Y).setScale(driveScale);
+        driver.getShaper(GamepadInput.RIGHT_STICK_Y).setScale(driveScale);
 
-        if (!sniperModeOn) {
-            robot.frontLeftMotor.setPower(left);
-            robot.backLeftMotor.setPower(left);
-            robot.frontRightMotor.setPower(right);
-            robot.backRightMotor.setPower(right);
-        }
-        else
-        {
-            robot.frontLeftMotor.setPower(left/3);
-            robot.backLeftMotor.setPower(left/3);
-            robot.frontRightMotor.setPower(right/3);
-            robot.backRightMotor.setPower(right/3);
-        }
-        if (gamepad1.right_bumper)
+        // read and shape both gamepads once
+        driver.update(gamepad1);
+        gunner.update(gamepad2);
+
+        left = driver.leftStickY;
+        right = driver.rightStickY;
+        spinnerpower = gunner.rightStickY;
+        launcherpower = gunner.leftStickY;
+        RightButtonPosition = gunner.rightStickX;
+        LeftButtonPosition = gunner.leftStickX;
+
+        robot.frontLeftMotor.setPower(left);
+        robot.backLeftMotor.setPower(left);
+        robot.frontRightMotor.setPower(right);
+        robot.backRightMotor.setPower(right);
+
+        if (driver.wasPressed(GamepadInput.RIGHT_BUMPER))
         {
             sniperModeOn = true;
+            robot.mark(SNIPER_MODE_EVENT, 1);
         }
-        if (gamepad1.left_bumper)
+        if (driver.wasPressed(GamepadInput.LEFT_BUMPER))
         {
             sniperModeOn = false;
+            robot.mark(SNIPER_MODE_EVENT, 0);
         }
         robot.spinner.setPower(spinnerpower);
         robot.launcher.setPower(launcherpower);
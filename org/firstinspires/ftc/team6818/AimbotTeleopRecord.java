@@ -33,6 +33,6 @@ public class AimbotTeleopRecord extends AimbotTeleop {
     public void loop()
     {
         super.loop();
-        robot.updateRecording();
+        robot.updateRecording(gamepad1, gamepad2);
     }
 }
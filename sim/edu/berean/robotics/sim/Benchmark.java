@@ -0,0 +1,157 @@
+package edu.berean.robotics.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+/**
+ * Benchmark is a small harness for timing code off the robot on a desktop JVM.  Each benchmark
+ * runs some warm up rounds (so the JIT has compiled it) and then some measured rounds; each round
+ * runs the body for a fixed number of operations.  The time per operation is reported as the mean,
+ * standard deviation and best of the measured rounds.
+ *
+ * Allocation is measured too, with the JVM's per thread allocation counter, when the JVM has one
+ * (HotSpot and OpenJDK do).  It counts everything the body allocates on the benchmark thread.
+ */
+public class Benchmark {
+
+    public static final int DEFAULT_WARMUP_ROUNDS = 5;
+    public static final int DEFAULT_MEASURED_ROUNDS = 10;
+
+    /**
+     * The code being measured.
+     */
+    public interface Body {
+        /**
+         * @param operations how many operations to run
+         */
+        void run(int operations) throws Exception;
+    }
+
+    public static class Result {
+        public final String name;
+        public final int operations;
+        public final int itemsPerOperation;   // e.g. rows per file parsed; 1 for plain operations
+        public final double meanNanos;        // per operation
+        public final double stdDevNanos;
+        public final double bestNanos;
+        public final double allocatedBytes;   // per operation; -1 when the JVM can't measure it
+
+        Result(String name, int operations, int itemsPerOperation, double meanNanos, double stdDevNanos,
+               double bestNanos, double allocatedBytes){
+            this.name = name;
+            this.operations = operations;
+            this.itemsPerOperation = itemsPerOperation;
+            this.meanNanos = meanNanos;
+            this.stdDevNanos = stdDevNanos;
+            this.bestNanos = bestNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * @return items (e.g. rows) per second at the mean time
+         */
+        public double getItemsPerSecond(){
+            return itemsPerOperation * 1e9 / meanNanos;
+        }
+
+        @Override
+        public String toString(){
+            String allocation = allocatedBytes < 0 ? "n/a" : String.format("%.1f B/op", allocatedBytes);
+            String throughput = itemsPerOperation > 1 ? String.format(", %.0f items/s", getItemsPerSecond()) : "";
+            return String.format("%-50s %12.1f ns/op +- %-10.1f (best %.1f)  %s%s",
+                    name, meanNanos, stdDevNanos, bestNanos, allocation, throughput);
+        }
+    }
+
+    private static Object threadBean;
+    private static Method allocatedBytesMethod;
+
+    static {
+        try {
+            Class<?> hotSpotBean = Class.forName("com.sun.management.ThreadMXBean");
+            threadBean = ManagementFactory.getThreadMXBean();
+            if (hotSpotBean.isInstance(threadBean)) {
+                allocatedBytesMethod = hotSpotBean.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (Exception e) {
+            allocatedBytesMethod = null;
+        }
+    }
+
+    private int warmupRounds;
+    private int measuredRounds;
+    private ArrayList<Result> results = new ArrayList<Result>();
+
+    public Benchmark(){
+        this(DEFAULT_WARMUP_ROUNDS, DEFAULT_MEASURED_ROUNDS);
+    }
+
+    public Benchmark(int warmupRounds, int measuredRounds){
+        this.warmupRounds = warmupRounds;
+        this.measuredRounds = measuredRounds;
+    }
+
+    public Result measure(String name, int operations, Body body) throws Exception {
+        return measure(name, operations, 1, body);
+    }
+
+    /**
+     * Measure a body.
+     *
+     * @param name what to call the result
+     * @param operations how many operations each round runs
+     * @param itemsPerOperation how many items (e.g. rows) one operation handles, for the throughput
+     * @param body the code to measure
+     * @return the result, which is also kept for getResults()
+     */
+    public Result measure(String name, int operations, int itemsPerOperation, Body body) throws Exception {
+
+        for (int i = 0; i < warmupRounds; i++) {
+            body.run(operations);
+        }
+
+        double[] roundNanos = new double[measuredRounds];
+        long allocated = 0;
+        for (int i = 0; i < measuredRounds; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            body.run(operations);
+            roundNanos[i] = (double) (System.nanoTime() - start) / operations;
+            allocated += allocatedBytes() - bytesBefore;
+        }
+
+        double mean = 0;
+        double best = Double.MAX_VALUE;
+        for (double nanos : roundNanos) {
+            mean += nanos / measuredRounds;
+            best = Math.min(best, nanos);
+        }
+        double variance = 0;
+        for (double nanos : roundNanos) {
+            variance += (nanos - mean) * (nanos - mean);
+        }
+        double stdDev = measuredRounds > 1 ? Math.sqrt(variance / (measuredRounds - 1)) : 0;
+        double bytesPerOp = allocatedBytesMethod == null ? -1 : (double) allocated / measuredRounds / operations;
+
+        Result result = new Result(name, operations, itemsPerOperation, mean, stdDev, best, bytesPerOp);
+        results.add(result);
+        return result;
+    }
+
+    public ArrayList<Result> getResults(){
+        return results;
+    }
+
+    /**
+     * @return bytes allocated by this thread so far, or 0 if the JVM can't tell
+     */
+    private static long allocatedBytes(){
+        if (allocatedBytesMethod == null) return 0;
+        try {
+            return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * The CommandLog is every command the simulated hardware was sent, in order, with the
+ * DoppleClock time it was sent at.  Commands are what a controller receives, after the SDK
+ * device has applied its direction and scaling, so a reversed motor logs negative power.
+ *
+ * Entries are kept in primitive arrays and devices are numbered, so logging a command doesn't
+ * allocate.  The log can be written out as rows of [time(ms), device, command, value].
+ */
+public class CommandLog {
+
+    private static String LOG_TAG = "CommandLog - ";
+
+    public enum Command {
+        POWER,
+        RUN_MODE,
+        TARGET_POSITION,
+        ZERO_POWER_BEHAVIOR,
+        MAX_SPEED,
+        SERVO_POSITION,
+        PWM_ENABLE
+    }
+
+    private static Command[] COMMANDS = Command.values();
+
+    private ArrayList<String> deviceNames = new ArrayList<String>();
+    private long[] times;
+    private int[] devices;
+    private byte[] commands;
+    private double[] values;
+    private int size = 0;
+
+    public CommandLog(){
+        this(4096);
+    }
+
+    public CommandLog(int initialCapacity){
+        times = new long[initialCapacity];
+        devices = new int[initialCapacity];
+        commands = new byte[initialCapacity];
+        values = new double[initialCapacity];
+    }
+
+    /**
+     * Give a device a number for logging.  Adding the same name again returns the same number.
+     */
+    public synchronized int addDevice(String name){
+        int device = deviceNames.indexOf(name);
+        if (device >= 0) return device;
+        deviceNames.add(name);
+        return deviceNames.size() - 1;
+    }
+
+    /**
+     * Log a command at the current DoppleClock time.
+     *
+     * @param device a number from addDevice()
+     * @param value the command's value; enum settings are logged as their ordinal
+     */
+    public void record(int device, Command command, double value){
+        add(DoppleClock.current().nanoTime(), device, command, value);
+    }
+
+    private synchronized void add(long timeNanos, int device, Command command, double value){
+        if (size == times.length) grow();
+        times[size] = timeNanos;
+        devices[size] = device;
+        commands[size] = (byte) command.ordinal();
+        values[size] = value;
+        size++;
+    }
+
+    private void grow(){
+        int capacity = Math.max(16, times.length * 2);
+        times = Arrays.copyOf(times, capacity);
+        devices = Arrays.copyOf(devices, capacity);
+        commands = Arrays.copyOf(commands, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    public synchronized void clear(){
+        size = 0;
+    }
+
+    public synchronized long getTimeNanos(int entry){
+        return times[entry];
+    }
+
+    public synchronized int getDevice(int entry){
+        return devices[entry];
+    }
+
+    public synchronized String getDeviceName(int entry){
+        return deviceNames.get(devices[entry]);
+    }
+
+    public synchronized Command getCommand(int entry){
+        return COMMANDS[commands[entry]];
+    }
+
+    public synchronized double getValue(int entry){
+        return values[entry];
+    }
+
+    /**
+     * @return how many commands of a kind a device was sent
+     */
+    public synchronized int count(String deviceName, Command command){
+        int device = deviceNames.indexOf(deviceName);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (devices[i] == device && commands[i] == command.ordinal()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Write the log to a file.
+     */
+    public synchronized void write(File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("[time(ms), device, command, value]\n");
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < size; i++) {
+                line.setLength(0);
+                line.append('[').append(times[i] / 1e6)
+                        .append(", ").append(deviceNames.get(devices[i]))
+                        .append(", ").append(COMMANDS[commands[i]])
+                        .append(", ").append(values[i]).append("]\n");
+                writer.write(line.toString());
+            }
+        } finally {
+            writer.close();
+        }
+        RobotLog.i(LOG_TAG + String.format("wrote %d commands to %s", size, file.getName()));
+    }
+
+    /**
+     * Read a log written by write().  Times are kept to the microsecond.
+     */
+    public static CommandLog read(File file) throws IOException {
+        CommandLog log = new CommandLog();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            reader.readLine();  // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] fields = line.substring(1, line.length() - 1).split(", ");
+                if (fields.length != 4) throw new IOException("bad command log line: " + line);
+                long timeNanos = Math.round(Double.parseDouble(fields[0]) * 1000) * 1000L;
+                log.add(timeNanos, log.addDevice(fields[1]), Command.valueOf(fields[2]), Double.parseDouble(fields[3]));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("bad command log " + file.getName() + ": " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return log;
+    }
+}
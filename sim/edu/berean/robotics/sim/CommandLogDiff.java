@@ -0,0 +1,124 @@
+package edu.berean.robotics.sim;
+
+import java.util.ArrayList;
+
+/**
+ * CommandLogDiff compares the commands in two CommandLogs, e.g. what a golden recording played
+ * back to when its expectation was made and what it plays back to now.  Commands are compared
+ * in order: the same device, command and value, sent within a timing tolerance of each other.
+ *
+ * When the commands stop lining up, the diff looks a few commands ahead in each log to find
+ * where they line up again, so one extra or missing command is reported as that rather than
+ * as every command after it being different.
+ */
+public class CommandLogDiff {
+
+    public static final double VALUE_TOLERANCE = 1e-6;
+    public static final int MAX_REPORTED = 10;
+    private static int LOOKAHEAD = 8;
+
+    private CommandLog expected;
+    private CommandLog actual;
+    private long toleranceNanos;
+
+    private int differenceCount = 0;
+    private long maxSkewNanos = 0;
+    private ArrayList<String> reported = new ArrayList<String>();
+
+    private CommandLogDiff(CommandLog expected, CommandLog actual, long toleranceNanos){
+        this.expected = expected;
+        this.actual = actual;
+        this.toleranceNanos = toleranceNanos;
+    }
+
+    /**
+     * @param toleranceMs how far apart in time two commands can be and still match
+     */
+    public static CommandLogDiff compare(CommandLog expected, CommandLog actual, long toleranceMs){
+        CommandLogDiff diff = new CommandLogDiff(expected, actual, toleranceMs * 1000000L);
+        diff.run();
+        return diff;
+    }
+
+    private void run(){
+
+        int e = 0;
+        int a = 0;
+        while (e < expected.size() && a < actual.size()) {
+
+            if (sameCommand(e, a)) {
+                long skew = Math.abs(actual.getTimeNanos(a) - expected.getTimeNanos(e));
+                maxSkewNanos = Math.max(maxSkewNanos, skew);
+                if (skew > toleranceNanos) difference(String.format("%s sent at %.1f ms, expected at %.1f ms",
+                        describe(actual, a), actual.getTimeNanos(a) / 1e6, expected.getTimeNanos(e) / 1e6));
+                e++;
+                a++;
+                continue;
+            }
+
+            int extra = findAhead(e, a, false);
+            int missing = findAhead(e, a, true);
+            if (extra > 0 && (missing < 0 || extra <= missing)) {
+                for (int i = 0; i < extra; i++, a++) difference("unexpected " + describe(actual, a));
+            } else if (missing > 0) {
+                for (int i = 0; i < missing; i++, e++) difference("missing " + describe(expected, e));
+            } else {
+                difference(String.format("%s, expected %s", describe(actual, a), describe(expected, e)));
+                e++;
+                a++;
+            }
+        }
+        for (; e < expected.size(); e++) difference("missing " + describe(expected, e));
+        for (; a < actual.size(); a++) difference("unexpected " + describe(actual, a));
+    }
+
+    /**
+     * @return how many commands to skip in one log to line up with the other again, or -1
+     */
+    private int findAhead(int e, int a, boolean inExpected){
+        for (int skip = 1; skip <= LOOKAHEAD; skip++) {
+            int ahead = inExpected ? e + skip : a + skip;
+            if (ahead >= (inExpected ? expected.size() : actual.size())) return -1;
+            if (inExpected ? sameCommand(ahead, a) : sameCommand(e, ahead)) return skip;
+        }
+        return -1;
+    }
+
+    private boolean sameCommand(int e, int a){
+        return expected.getCommand(e) == actual.getCommand(a)
+                && expected.getDeviceName(e).equals(actual.getDeviceName(a))
+                && Math.abs(expected.getValue(e) - actual.getValue(a)) <= VALUE_TOLERANCE;
+    }
+
+    private static String describe(CommandLog log, int entry){
+        return String.format("[%.1f ms] %s %s %s", log.getTimeNanos(entry) / 1e6, log.getDeviceName(entry),
+                log.getCommand(entry), log.getValue(entry));
+    }
+
+    private void difference(String description){
+        differenceCount++;
+        if (reported.size() < MAX_REPORTED) reported.add(description);
+    }
+
+    public boolean matches(){
+        return differenceCount == 0;
+    }
+
+    public int getDifferenceCount(){
+        return differenceCount;
+    }
+
+    /**
+     * @return the first MAX_REPORTED differences
+     */
+    public ArrayList<String> getDifferences(){
+        return reported;
+    }
+
+    /**
+     * @return the furthest apart in time two matching commands were, in milliseconds
+     */
+    public double getMaxSkewMs(){
+        return maxSkewNanos / 1e6;
+    }
+}
@@ -0,0 +1,264 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
+import edu.berean.robotics.dopple.DoppleBotPlayer;
+import edu.berean.robotics.dopple.DoppleBotRecorder;
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.dopple.DoppleDeviceSpec;
+import edu.berean.robotics.dopple.MeasuredChannel;
+import edu.berean.robotics.dopple.util.DoppleBotHistoryHelper;
+
+/**
+ * Benchmarks for the dopple record and playback core, run on stand-in hardware and a virtual
+ * clock.  Run it before and after a change to the dopple package and compare:
+ *
+ *   recorder update  - ns per loop of DoppleBotRecorder.update() with no state change and with
+ *                      a change on every update, for robots with 4, 9 and 16 components.  The
+ *                      recorder is built the way DoppleBot.startRecording() builds it, with the
+ *                      robot's read cache and measured channels, and the cache is refreshed
+ *                      every loop, as a teleop does.
+ *   parse            - DoppleBotHistoryHelper.getHistoryFromFile() on a small file and a
+ *                      season sized file, in rows per second
+ *   write            - DoppleBotRecorder.writeHistory() of the same histories, in rows per second
+ *   playback         - ns per row to set the robot to a recorded state (DoppleBotPlayer)
+ *
+ * From the command line:  DoppleBenchmarks [name filter]
+ */
+public class DoppleBenchmarks {
+
+    public static final int[] COMPONENT_COUNTS = {4, 9, 16};
+    public static final int SMALL_FILE_ROWS = 100;
+    public static final int SEASON_FILE_ROWS = 50000;
+
+    private static long LOOP_PERIOD_MS = 20;
+    private static long ENCODER_PERIOD_MS = 50;     // as the robots measure their drive encoders
+
+    /**
+     * A robot with a number of motors and servos on stand-in hardware.
+     */
+    static class BenchBot extends DoppleBot {
+
+        private int motorCount;
+        private int servoCount;
+        DcMotor[] motors;
+        ArrayList<MeasuredChannel> measuredChannels = new ArrayList<MeasuredChannel>();
+
+        BenchBot(int componentCount){
+            motorCount = (componentCount + 1) / 2;
+            servoCount = componentCount / 2;
+            SimHardware hardware = new SimHardware();
+            for (int i = 0; i < motorCount; i++) hardware.addMotor("motor" + i);
+            for (int i = 0; i < servoCount; i++) hardware.addServo("servo" + i);
+            initializeRobot(hardware.getHardwareMap());
+        }
+
+        public void initializeRobot(HardwareMap hardwareMap){
+            DoppleDeviceSpec[] specs = new DoppleDeviceSpec[motorCount + servoCount];
+            for (int i = 0; i < motorCount; i++) specs[i] = DoppleDeviceSpec.motor("motor" + i, false);
+            for (int i = 0; i < servoCount; i++) specs[motorCount + i] = DoppleDeviceSpec.servo("servo" + i, 0.5, false);
+            initializeDevices(hardwareMap, specs);
+            motors = new DcMotor[motorCount];
+            for (int i = 0; i < motorCount; i++) motors[i] = getMotor("motor" + i);
+
+            // the robots measure two drive encoders
+            for (int i = 0; i < Math.min(2, motorCount); i++) {
+                MeasuredChannel[] encoder = MeasuredChannel.encoder("motor" + i, motors[i], ENCODER_PERIOD_MS);
+                addMeasuredChannel(encoder);
+                measuredChannels.addAll(Arrays.asList(encoder));
+            }
+        }
+
+        public void startRobot(){
+        }
+
+        public void stopRobot(){
+        }
+
+        /**
+         * Change one motor, as a driver moving a stick would.
+         */
+        void step(int i){
+            motors[i % motorCount].setPower(((i % 20) - 10) / 10.0);
+        }
+    }
+
+    /** throws away what is written, so only the formatting is measured */
+    private static class NullWriter extends Writer {
+        public void write(char[] buffer, int offset, int length){
+        }
+        public void write(String string){
+        }
+        public void flush(){
+        }
+        public void close(){
+        }
+    }
+
+    private Benchmark benchmark;
+    private String filter;
+    private VirtualClock clock = new VirtualClock(0);
+    private File scratchDirectory;
+
+    public DoppleBenchmarks(Benchmark benchmark, String filter){
+        this.benchmark = benchmark;
+        this.filter = filter;
+    }
+
+    public void run() throws Exception {
+
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        scratchDirectory = createScratchDirectory();
+
+        try {
+            for (int components : COMPONENT_COUNTS) {
+                recorderBenchmarks(components);
+            }
+            fileBenchmarks(SMALL_FILE_ROWS, "small");
+            fileBenchmarks(SEASON_FILE_ROWS, "season");
+        } finally {
+            DoppleClock.setCurrent(previousClock);
+            for (File file : scratchDirectory.listFiles()) file.delete();
+            scratchDirectory.delete();
+        }
+    }
+
+    private void recorderBenchmarks(int components) throws Exception {
+
+        final BenchBot bot = new BenchBot(components);
+
+        if (selected("recorder update, no change")) {
+            final DoppleBotRecorder recorder = newRecorder(bot);
+            print(benchmark.measure(String.format("recorder update, no change (%d components)", components), 10000,
+                    new Benchmark.Body() {
+                        public void run(int operations) {
+                            for (int i = 0; i < operations; i++) {
+                                clock.advanceMillis(LOOP_PERIOD_MS);
+                                bot.refreshReads();
+                                recorder.update();
+                            }
+                        }
+                    }));
+        }
+
+        if (selected("recorder update, change")) {
+            // built once here, so only update() is timed; its history grows across the rounds
+            // as a recording's does
+            final DoppleBotRecorder recorder = newRecorder(bot);
+            print(benchmark.measure(String.format("recorder update, change (%d components)", components), 10000,
+                    new Benchmark.Body() {
+                        public void run(int operations) {
+                            for (int i = 0; i < operations; i++) {
+                                clock.advanceMillis(LOOP_PERIOD_MS);
+                                bot.refreshReads();
+                                bot.step(i);
+                                recorder.update();
+                            }
+                        }
+                    }));
+        }
+    }
+
+    private void fileBenchmarks(final int rows, String size) throws Exception {
+
+        final BenchBot bot = new BenchBot(9);
+        final DoppleBotRecorder recorder = record(bot, rows);
+        final File file = new File(scratchDirectory, size + ".txt");
+        FileWriter fileWriter = new FileWriter(file);
+        try {
+            recorder.writeHistory(fileWriter);
+        } finally {
+            fileWriter.close();
+        }
+        int operations = Math.max(1, 20000 / rows);
+
+        if (selected("parse")) {
+            print(benchmark.measure(String.format("parse %s file (%d rows)", size, rows), operations, rows,
+                    new Benchmark.Body() {
+                        public void run(int operations) {
+                            for (int i = 0; i < operations; i++) {
+                                DoppleBotHistoryHelper.getHistoryFromFile(file);
+                            }
+                        }
+                    }));
+        }
+
+        if (selected("write")) {
+            final Writer writer = new NullWriter();
+            print(benchmark.measure(String.format("write %s history (%d rows)", size, rows), operations, rows,
+                    new Benchmark.Body() {
+                        public void run(int operations) throws IOException {
+                            for (int i = 0; i < operations; i++) {
+                                recorder.writeHistory(writer);
+                            }
+                        }
+                    }));
+        }
+
+        if (selected("playback")) {
+            DoppleBotHistoryRecord history = DoppleBotHistoryHelper.getHistoryFromFile(file);
+            final DoppleBotPlayer player = new DoppleBotPlayer(bot, history);
+            print(benchmark.measure(String.format("playback row (%s file, 9 components)", size), 10000,
+                    new Benchmark.Body() {
+                        public void run(int operations) {
+                            int rowCount = player.getRowCount();
+                            for (int i = 0; i < operations; i++) {
+                                player.playRow(i % rowCount);
+                            }
+                        }
+                    }));
+        }
+    }
+
+    /**
+     * @return a recorder that has recorded a number of rows
+     */
+    private DoppleBotRecorder record(BenchBot bot, int rows){
+        DoppleBotRecorder recorder = newRecorder(bot);
+        for (int i = 0; recorder.getHistory().getValueRows().size() < rows; i++) {
+            clock.advanceMillis(LOOP_PERIOD_MS);
+            bot.refreshReads();
+            bot.step(i);
+            recorder.update();
+        }
+        return recorder;
+    }
+
+    /**
+     * @return a recorder for the robot, built the way DoppleBot.startRecording() builds one
+     */
+    private DoppleBotRecorder newRecorder(BenchBot bot){
+        DoppleBotRecorder recorder = new DoppleBotRecorder(bot.getRobotComponents(), bot.getComponentTracks(), bot.reads());
+        for (MeasuredChannel channel : bot.measuredChannels) recorder.addMeasuredChannel(channel);
+        return recorder;
+    }
+
+    private boolean selected(String name){
+        return filter == null || name.contains(filter);
+    }
+
+    private static void print(Benchmark.Result result){
+        System.out.println(result);
+    }
+
+    private static File createScratchDirectory() throws IOException {
+        File directory = File.createTempFile("dopple-bench", "");
+        if (!directory.delete() || !directory.mkdir()) throw new IOException("could not create " + directory);
+        return directory;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new DoppleBenchmarks(new Benchmark(), args.length > 0 ? args[0] : null).run();
+    }
+}
@@ -0,0 +1,208 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.dopple.util.DoppleBotHistoryHelper;
+
+/**
+ * The GoldenReplaySuite checks that recordings we already have still load and still play back
+ * to the same motor and servo commands, as the recording format, the parser and the player
+ * change.  Each golden recording is loaded with DoppleBotHistoryHelper, played back with
+ * DoppleBot.playHistory() on its robot's stand-in hardware and a VirtualClock, and the
+ * commands it sends are compared with the expectation saved for it (see CommandLogDiff).
+ * Only the playback is compared; the commands sent initializing the robot are not.
+ *
+ * The corpus is laid out by robot, with each expectation in an "expected" directory next to
+ * its recording, under the same file name:
+ *
+ *     corpus/minidopplebot/robotRec-....txt
+ *     corpus/minidopplebot/expected/robotRec-....txt
+ *
+ * Copy a recording from ROBO_DATA into the corpus and run with --update to make its
+ * expectation; check the expectation in with it.  For each file the suite also reports how
+ * long it took to load and the time spent playing back per row, which with a virtual clock is
+ * the player's own overhead.
+ *
+ * From the command line:  GoldenReplaySuite <corpus directory> [--update] [tolerance ms]
+ */
+public class GoldenReplaySuite {
+
+    private static String LOG_TAG = "GoldenReplaySuite - ";
+
+    public static final String EXPECTED_DIRECTORY = "expected";
+    public static final long DEFAULT_TOLERANCE_MS = 2;
+
+    public static class Result {
+        public final String robotName;
+        public final File recording;
+        public final int rows;
+        public final int commands;
+        public final double loadMs;
+        public final double dispatchMicrosPerRow;
+        public final CommandLogDiff diff;       // null if there is no expectation, or it was updated
+        public final String status;
+
+        Result(String robotName, File recording, int rows, int commands, double loadMs,
+               double dispatchMicrosPerRow, CommandLogDiff diff, String status){
+            this.robotName = robotName;
+            this.recording = recording;
+            this.rows = rows;
+            this.commands = commands;
+            this.loadMs = loadMs;
+            this.dispatchMicrosPerRow = dispatchMicrosPerRow;
+            this.diff = diff;
+            this.status = status;
+        }
+
+        public boolean passed(){
+            return diff == null ? !status.equals("NO EXPECTATION") : diff.matches();
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-6s %s/%s: %d rows, %d commands, load %.1f ms, dispatch %.1f us/row",
+                    status, robotName, recording.getName(), rows, commands, loadMs, dispatchMicrosPerRow);
+        }
+    }
+
+    private File corpus;
+    private boolean update;
+    private long toleranceMs = DEFAULT_TOLERANCE_MS;
+
+    /**
+     * @param corpus the corpus directory
+     * @param update true to save what each recording plays back to as its expectation
+     */
+    public GoldenReplaySuite(File corpus, boolean update){
+        this.corpus = corpus;
+        this.update = update;
+    }
+
+    public void setToleranceMs(long toleranceMs){
+        this.toleranceMs = toleranceMs;
+    }
+
+    public ArrayList<Result> run() throws IOException {
+
+        File[] robotDirectories = corpus.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        if (robotDirectories == null) throw new IOException("no corpus at " + corpus);
+        Arrays.sort(robotDirectories);
+
+        ArrayList<Result> results = new ArrayList<Result>();
+        for (File robotDirectory : robotDirectories) {
+            File[] recordings = robotDirectory.listFiles(new FileFilter() {
+                public boolean accept(File file) {
+                    return file.isFile();
+                }
+            });
+            Arrays.sort(recordings);
+            for (File recording : recordings) {
+                results.add(replay(robotDirectory.getName(), recording));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Play a golden recording back and compare it with, or save it as, its expectation.
+     */
+    public Result replay(String robotName, File recording) throws IOException {
+
+        long loadStart = System.nanoTime();
+        DoppleBotHistoryRecord history = DoppleBotHistoryHelper.getHistoryFromFile(recording);
+        double loadMs = (System.nanoTime() - loadStart) / 1e6;
+        if (history.getHeaderRow().isEmpty()) throw new IOException("could not load " + recording);
+        int rows = history.getValueRows().size();
+
+        SimHardware hardware = SimRobots.forName(robotName);
+        VirtualClock clock = new VirtualClock(0);
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        hardware.install();
+        long dispatchNanos;
+
+        try {
+            DoppleBot robot = SimRobots.robotForName(robotName);
+            robot.initializeRobot(hardware.getHardwareMap());
+            hardware.getCommandLog().clear();
+
+            long playStart = System.nanoTime();
+            robot.playHistory(history);
+            dispatchNanos = System.nanoTime() - playStart;
+        } finally {
+            hardware.uninstall();
+            DoppleClock.setCurrent(previousClock);
+        }
+
+        CommandLog actual = hardware.getCommandLog();
+        double dispatchMicrosPerRow = rows == 0 ? 0 : dispatchNanos / 1000.0 / rows;
+        File expectedFile = getExpectationFile(recording);
+
+        if (update) {
+            File directory = expectedFile.getParentFile();
+            if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("could not create " + directory);
+            actual.write(expectedFile);
+            return new Result(robotName, recording, rows, actual.size(), loadMs, dispatchMicrosPerRow, null, "SAVED");
+        }
+        if (!expectedFile.exists()) {
+            RobotLog.w(LOG_TAG + "no expectation for " + recording + "; run with --update to make one");
+            return new Result(robotName, recording, rows, actual.size(), loadMs, dispatchMicrosPerRow, null, "NO EXPECTATION");
+        }
+
+        CommandLogDiff diff = CommandLogDiff.compare(CommandLog.read(expectedFile), actual, toleranceMs);
+        return new Result(robotName, recording, rows, actual.size(), loadMs, dispatchMicrosPerRow, diff,
+                diff.matches() ? "PASS" : "FAIL");
+    }
+
+    /**
+     * @return where a golden recording's expectation is kept
+     */
+    public static File getExpectationFile(File recording){
+        return new File(new File(recording.getParentFile(), EXPECTED_DIRECTORY), recording.getName());
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.err.println("usage: GoldenReplaySuite <corpus directory> [--update] [tolerance ms]");
+            System.exit(2);
+        }
+
+        boolean update = false;
+        long toleranceMs = DEFAULT_TOLERANCE_MS;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--update")) update = true;
+            else toleranceMs = Long.parseLong(args[i]);
+        }
+
+        GoldenReplaySuite suite = new GoldenReplaySuite(new File(args[0]), update);
+        suite.setToleranceMs(toleranceMs);
+
+        int failures = 0;
+        for (Result result : suite.run()) {
+            System.out.println(result);
+            if (result.diff != null && !result.diff.matches()) {
+                System.out.println(String.format("       %d differences, max skew %.1f ms:",
+                        result.diff.getDifferenceCount(), result.diff.getMaxSkewMs()));
+                for (String difference : result.diff.getDifferences()) System.out.println("         " + difference);
+            }
+            if (!result.passed()) failures++;
+        }
+
+        System.out.println(failures == 0 ? "all recordings passed" : failures + " recordings failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
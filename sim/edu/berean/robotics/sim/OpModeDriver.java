@@ -0,0 +1,174 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.File;
+
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.input.InputTrack;
+
+/**
+ * The OpModeDriver runs an opmode off the robot, on stand-in hardware and a VirtualClock, the
+ * way the opmode manager runs it on the robot: init(), init_loop(), start(), loop() and stop().
+ *
+ * An iterative opmode gets one loop() per loop period of virtual time; the gamepads are left
+ * at rest (use OpModeReplay to drive one with recorded input).  A LinearOpMode runs on its own
+ * thread as usual and moves the virtual clock itself whenever it waits through DoppleClock
+ * (waitForTick(), MotorMover, DoppleBot playback), so an autonomous runs as fast as its code
+ * does.  A LinearOpMode that doesn't use DoppleClock (e.g. one spinning on opModeIsActive() and
+ * idle(), or waiting in LinearOpMode.sleep()) never moves the clock, so while it doesn't the
+ * driver moves it LINEAR_POLL_MS for each LINEAR_POLL_MS of real time; such an opmode runs in
+ * about real time.
+ *
+ * From the command line:
+ *     OpModeDriver <opmode class> <robot> [seconds | input track file] [command log file]
+ */
+public class OpModeDriver {
+
+    private static String LOG_TAG = "OpModeDriver - ";
+
+    public static final long DEFAULT_LOOP_PERIOD_MS = 20;
+    private static long LINEAR_POLL_MS = 5;
+
+    private OpMode opMode;
+    private SimHardware hardware;
+    private VirtualClock clock;
+    private SimOpModeServices services;
+    private long loopPeriodMs = DEFAULT_LOOP_PERIOD_MS;
+
+    private int loops = 0;
+    private long wallNanos = 0;
+
+    public OpModeDriver(OpMode opMode, SimHardware hardware){
+        this(opMode, hardware, new VirtualClock());
+    }
+
+    public OpModeDriver(OpMode opMode, SimHardware hardware, VirtualClock clock){
+        this.opMode = opMode;
+        this.hardware = hardware;
+        this.clock = clock;
+        this.services = attach(opMode, hardware);
+    }
+
+    /**
+     * Give an opmode the stand-in hardware, gamepads and opmode services.
+     */
+    static SimOpModeServices attach(OpMode opMode, SimHardware hardware){
+        SimOpModeServices services = new SimOpModeServices();
+        opMode.hardwareMap = hardware.getHardwareMap();
+        opMode.gamepad1 = new Gamepad();
+        opMode.gamepad2 = new Gamepad();
+        opMode.internalOpModeServices = services;
+        return services;
+    }
+
+    /**
+     * How much virtual time passes between calls to an iterative opmode's loop().
+     */
+    public void setLoopPeriodMs(long loopPeriodMs){
+        this.loopPeriodMs = loopPeriodMs;
+    }
+
+    /**
+     * Run the opmode until it stops itself or the virtual time runs out.
+     *
+     * @param durationMs how long to run after start(), in virtual milliseconds
+     * @throws InterruptedException
+     */
+    public void run(long durationMs) throws InterruptedException {
+
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        hardware.install();
+        long start = System.nanoTime();
+
+        try {
+            opMode.init();
+            opMode.init_loop();
+            opMode.start();
+            long end = clock.getElapsedMillis() + durationMs;
+
+            if (opMode instanceof LinearOpMode) {
+                // the opmode's thread moves the clock; check on it until it finishes or time is up.
+                // If it hasn't moved the clock since the last check, move it here, so an opmode
+                // that doesn't wait through DoppleClock still runs out of time.
+                long lastPollNanos = clock.nanoTime();
+                while (clock.getElapsedMillis() < end) {
+                    loops++;
+                    if (services.awaitStopRequest(LINEAR_POLL_MS)) break;
+                    if (clock.nanoTime() == lastPollNanos) clock.advanceMillis(LINEAR_POLL_MS);
+                    lastPollNanos = clock.nanoTime();
+                }
+            } else {
+                while (clock.getElapsedMillis() < end && !services.isStopRequested()) {
+                    clock.advanceMillis(loopPeriodMs);
+                    opMode.loop();
+                    loops++;
+                }
+            }
+
+            opMode.stop();
+        } finally {
+            wallNanos = System.nanoTime() - start;
+            hardware.uninstall();
+            DoppleClock.setCurrent(previousClock);
+        }
+
+        RobotLog.i(LOG_TAG + toString());
+    }
+
+    public VirtualClock getClock(){
+        return clock;
+    }
+
+    public SimOpModeServices getServices(){
+        return services;
+    }
+
+    public int getLoopCount(){
+        return loops;
+    }
+
+    /**
+     * @return how long the run took in real time, in milliseconds
+     */
+    public double getWallMs(){
+        return wallNanos / 1e6;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s: %d ms of virtual time in %.1f ms, %d loops, %d commands, %d telemetry updates",
+                opMode.getClass().getSimpleName(), clock.getElapsedMillis(), getWallMs(), loops,
+                hardware.getCommandLog().size(), services.getTelemetryCount());
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.err.println("usage: OpModeDriver <opmode class> <aimbot|qdopplebot|minidopplebot> [seconds | input track file] [command log file]");
+            System.exit(1);
+        }
+
+        OpMode opMode = (OpMode) Class.forName(args[0]).newInstance();
+        SimHardware hardware = SimRobots.forName(args[1]);
+        String report;
+
+        if (args.length > 2 && new File(args[2]).isFile()) {
+            OpModeReplay replay = new OpModeReplay(opMode, hardware, InputTrack.read(new File(args[2])));
+            replay.run();
+            report = replay.toString();
+        } else {
+            long seconds = args.length > 2 ? Long.parseLong(args[2]) : 30;
+            OpModeDriver driver = new OpModeDriver(opMode, hardware);
+            driver.run(seconds * 1000);
+            report = driver.toString();
+        }
+
+        System.out.println(report);
+        if (args.length > 3) hardware.getCommandLog().write(new File(args[3]));
+    }
+}
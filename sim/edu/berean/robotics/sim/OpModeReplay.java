@@ -0,0 +1,131 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.input.InputTrack;
+
+/**
+ * OpModeReplay runs a recorded teleop session through an opmode off the robot.  The opmode is
+ * given stand-in hardware (see SimHardware), a VirtualClock is installed, and
+ * then init(), start(), one loop() per recorded input sample, and stop() are called, with the
+ * gamepads and the clock set to the recorded values before each loop.
+ *
+ * Nothing waits for real time, so a two and a half minute match replays in however long the
+ * loops take to run.  The time spent in loop() is measured so the loop logic can be profiled.
+ */
+public class OpModeReplay {
+
+    private static String LOG_TAG = "OpModeReplay - ";
+
+    private OpMode opMode;
+    private SimHardware hardware;
+    private InputTrack input;
+    private VirtualClock clock;
+    private SimOpModeServices services;
+
+    private int loops = 0;
+    private long loopNanos = 0;
+    private long maxLoopNanos = 0;
+    private long wallNanos = 0;
+
+    /**
+     * @param opMode a new (not yet initialized) opmode
+     * @param hardware the stand-in hardware the opmode should use
+     * @param input the recorded driver input
+     */
+    public OpModeReplay(OpMode opMode, SimHardware hardware, InputTrack input){
+        this(opMode, hardware, input, new VirtualClock());
+    }
+
+    public OpModeReplay(OpMode opMode, SimHardware hardware, InputTrack input, VirtualClock clock){
+        this.opMode = opMode;
+        this.hardware = hardware;
+        this.input = input;
+        this.clock = clock;
+        this.services = OpModeDriver.attach(opMode, hardware);
+    }
+
+    /**
+     * Run the whole session.
+     */
+    public void run(){
+
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        hardware.install();
+        long start = System.nanoTime();
+
+        try {
+            opMode.init();
+            opMode.init_loop();
+            if (input.size() > 0) input.applyTo(0, opMode.gamepad1, opMode.gamepad2);
+            opMode.start();
+
+            for (int i = 0; i < input.size(); i++) {
+                clock.setElapsedMillis(input.getTimeMs(i));
+                input.applyTo(i, opMode.gamepad1, opMode.gamepad2);
+
+                long loopStart = System.nanoTime();
+                opMode.loop();
+                long elapsed = System.nanoTime() - loopStart;
+
+                loops++;
+                loopNanos += elapsed;
+                if (elapsed > maxLoopNanos) maxLoopNanos = elapsed;
+            }
+
+            opMode.stop();
+        } finally {
+            wallNanos = System.nanoTime() - start;
+            hardware.uninstall();
+            DoppleClock.setCurrent(previousClock);
+        }
+
+        RobotLog.i(LOG_TAG + toString());
+    }
+
+    public VirtualClock getClock(){
+        return clock;
+    }
+
+    public SimOpModeServices getServices(){
+        return services;
+    }
+
+    public int getLoopCount(){
+        return loops;
+    }
+
+    /**
+     * @return the mean time spent in loop(), in microseconds
+     */
+    public double getMeanLoopMicros(){
+        return loops == 0 ? 0 : loopNanos / 1000.0 / loops;
+    }
+
+    public double getMaxLoopMicros(){
+        return maxLoopNanos / 1000.0;
+    }
+
+    /**
+     * @return how long the replay took in real time, in milliseconds
+     */
+    public double getWallMs(){
+        return wallNanos / 1e6;
+    }
+
+    /**
+     * @return how much recorded time was replayed, in milliseconds
+     */
+    public long getVirtualMs(){
+        return clock.getElapsedMillis();
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s: %d loops, %d ms of session in %.1f ms (loop mean %.1f us, max %.1f us)",
+                opMode.getClass().getSimpleName(), loops, getVirtualMs(), getWallMs(), getMeanLoopMicros(), getMaxLoopMicros());
+    }
+}
@@ -0,0 +1,155 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.dopple.DoppleBotHistoryRecord;
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.dopple.util.DoppleBotHistoryHelper;
+import edu.berean.robotics.input.InputTrack;
+
+/**
+ * PlaybackEvaluator measures how well a recording plays back, off the robot.  For a recording
+ * with an input track it drives the robot twice on a TankDriveSim:
+ *
+ *   session  - the teleop the recording was made with, replayed from the driver's input
+ *   playback - the recording played back with DoppleBot.playHistory()
+ *
+ * and scores the playback's path against the session's.  Both run on a VirtualClock, so a
+ * match length recording is evaluated in well under a second and a directory of them can be
+ * used to compare changes to the recorder or the player.
+ *
+ * From the command line:  PlaybackEvaluator <robot> <recording file or directory>
+ */
+public class PlaybackEvaluator {
+
+    private static String LOG_TAG = "PlaybackEvaluator - ";
+
+    /** how long the robot is left to coast after the motors stop */
+    public static final long SETTLE_MS = 1000;
+
+    private String robotName;
+
+    /**
+     * @param robotName the robot the recordings were made on: aimbot, qdopplebot or minidopplebot
+     */
+    public PlaybackEvaluator(String robotName){
+        this.robotName = robotName;
+    }
+
+    /**
+     * @return where the driver drove the robot
+     */
+    public PoseTrajectory simulateSession(InputTrack input){
+
+        SimHardware hardware = SimRobots.forName(robotName);
+        VirtualClock clock = new VirtualClock(0);
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+
+        try {
+            TankDriveSim drive = SimRobots.driveForName(robotName, hardware);
+            drive.attach(clock);
+
+            new OpModeReplay(SimRobots.recordingTeleopForName(robotName), hardware, input, clock).run();
+
+            settle(hardware, clock);
+            drive.detach(clock);
+            return drive.getTrajectory();
+        } finally {
+            DoppleClock.setCurrent(previousClock);
+        }
+    }
+
+    /**
+     * @return where the recording drove the robot
+     */
+    public PoseTrajectory simulatePlayback(DoppleBotHistoryRecord history){
+
+        SimHardware hardware = SimRobots.forName(robotName);
+        VirtualClock clock = new VirtualClock(0);
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        hardware.install();
+
+        try {
+            DoppleBot robot = SimRobots.robotForName(robotName);
+            robot.initializeRobot(hardware.getHardwareMap());
+            TankDriveSim drive = SimRobots.driveForName(robotName, hardware);
+            drive.attach(clock);
+
+            robot.playHistory(history);
+
+            settle(hardware, clock);
+            drive.detach(clock);
+            return drive.getTrajectory();
+        } finally {
+            hardware.uninstall();
+            DoppleClock.setCurrent(previousClock);
+        }
+    }
+
+    private static void settle(SimHardware hardware, VirtualClock clock){
+        hardware.stopMotors();
+        clock.advanceMillis(SETTLE_MS);
+    }
+
+    /**
+     * Score a recording's playback against the session it was recorded in.
+     */
+    public TrajectoryScore evaluate(File historyFile) throws IOException {
+        File inputFile = DoppleBotHistoryHelper.getInputTrackFile(historyFile);
+        if (!inputFile.exists()) throw new IOException("no input track for " + historyFile);
+
+        PoseTrajectory session = simulateSession(InputTrack.read(inputFile));
+        PoseTrajectory playback = simulatePlayback(DoppleBotHistoryHelper.getHistoryFromFile(historyFile));
+        return TrajectoryScore.compare(session, playback);
+    }
+
+    /**
+     * @return the recordings in a directory that have an input track
+     */
+    public static File[] recordingsIn(File directory){
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && DoppleBotHistoryHelper.getInputTrackFile(file).exists();
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 2) {
+            System.err.println("usage: PlaybackEvaluator <robot> <recording file or directory>");
+            System.exit(2);
+        }
+
+        PlaybackEvaluator evaluator = new PlaybackEvaluator(args[0]);
+        File target = new File(args[1]);
+        File[] files = target.isDirectory() ? recordingsIn(target) : new File[] {target};
+
+        ArrayList<TrajectoryScore> scores = new ArrayList<TrajectoryScore>();
+        long start = System.nanoTime();
+        for (File file : files) {
+            try {
+                TrajectoryScore score = evaluator.evaluate(file);
+                scores.add(score);
+                System.out.println(file.getName() + ": " + score);
+            } catch (IOException e) {
+                RobotLog.w(LOG_TAG + "skipping " + file + ": " + e.getMessage());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double meanRms = 0;
+        for (TrajectoryScore score : scores) meanRms += score.rmsPositionError / scores.size();
+        System.out.println(String.format("%d recordings in %.1f s (%.0f per minute), mean position rms %.2f in",
+                scores.size(), seconds, scores.size() * 60 / seconds, meanRms));
+    }
+}
@@ -0,0 +1,86 @@
+package edu.berean.robotics.sim;
+
+import java.util.Arrays;
+
+import edu.berean.robotics.navigation.Pose2d;
+
+/**
+ * A PoseTrajectory is where a robot was over time: a list of poses, kept in primitive arrays so a
+ * long simulation doesn't allocate a Pose2d per sample.  Times are nanoseconds from the start of
+ * the trajectory and must be added in order.
+ */
+public class PoseTrajectory {
+
+    private long[] times = new long[1024];
+    private double[] xs = new double[1024];
+    private double[] ys = new double[1024];
+    private double[] headings = new double[1024];
+    private int size = 0;
+
+    public void add(long timeNanos, double x, double y, double heading){
+        if (size == times.length) {
+            int capacity = times.length * 2;
+            times = Arrays.copyOf(times, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            headings = Arrays.copyOf(headings, capacity);
+        }
+        times[size] = timeNanos;
+        xs[size] = x;
+        ys[size] = y;
+        headings[size] = heading;
+        size++;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public long getTimeNanos(int sample){
+        return times[sample];
+    }
+
+    public double getX(int sample){
+        return xs[sample];
+    }
+
+    public double getY(int sample){
+        return ys[sample];
+    }
+
+    public double getHeading(int sample){
+        return headings[sample];
+    }
+
+    /**
+     * @return how long the trajectory lasts, in nanoseconds
+     */
+    public long getDurationNanos(){
+        return size == 0 ? 0 : times[size - 1];
+    }
+
+    /**
+     * @return the pose at a time, interpolated between samples.  Times before the first sample or
+     * after the last give the first or last pose.
+     */
+    public Pose2d poseAt(long timeNanos){
+        if (size == 0) throw new IllegalStateException("the trajectory is empty");
+        if (timeNanos <= times[0]) return pose(0);
+        if (timeNanos >= times[size - 1]) return pose(size - 1);
+
+        int after = Arrays.binarySearch(times, 0, size, timeNanos);
+        if (after >= 0) return pose(after);
+        after = -after - 1;
+        int before = after - 1;
+
+        double fraction = (double) (timeNanos - times[before]) / (times[after] - times[before]);
+        double turn = Pose2d.normalizeAngle(headings[after] - headings[before]);
+        return new Pose2d(xs[before] + (xs[after] - xs[before]) * fraction,
+                ys[before] + (ys[after] - ys[before]) * fraction,
+                Pose2d.normalizeAngle(headings[before] + turn * fraction), timeNanos);
+    }
+
+    private Pose2d pose(int sample){
+        return new Pose2d(xs[sample], ys[sample], headings[sample], times[sample]);
+    }
+}
@@ -0,0 +1,130 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.HardwareDevice;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.berean.robotics.dopple.DoppleBotRecorder;
+import edu.berean.robotics.dopple.DoppleClock;
+import edu.berean.robotics.dopple.FlightRecorder;
+import edu.berean.robotics.sensors.HardwareReadCache;
+
+/**
+ * RecordingChecks runs the recorders on stand-in hardware and a VirtualClock and checks that
+ * they record what the loop commanded.  The case that matters is a loop that reads a device
+ * through the read cache and then writes it: the write has to be recorded in that loop, not
+ * the next.
+ *
+ * From the command line:  RecordingChecks
+ */
+public class RecordingChecks {
+
+    private static String SERVO_NAME = "pusher";
+    private static double START_POSITION = 0.1;
+    private static double MOVED_POSITION = 0.8;
+    private static long LOOP_MS = 100;
+
+    private ArrayList<String> failures = new ArrayList<String>();
+
+    /**
+     * @return what failed; empty if every check passed
+     */
+    public ArrayList<String> run() throws IOException {
+        failures.clear();
+        checkCacheWrite();
+        checkRecorderWrite();
+        checkFlightRecorderWrite();
+        return failures;
+    }
+
+    // a write through the cache is what the cache reads afterwards
+    private void checkCacheWrite(){
+        Servo servo = servo(new SimHardware());
+        HardwareReadCache reads = new HardwareReadCache();
+        reads.add(servo);
+
+        reads.refresh();
+        reads.getPosition(servo);
+        reads.setPosition(servo, MOVED_POSITION);
+        check("cache write", MOVED_POSITION, reads.getPosition(servo));
+    }
+
+    // a servo read through the cache and then moved is recorded as moved, in the same loop
+    private void checkRecorderWrite(){
+        VirtualClock clock = new VirtualClock(0);
+        DoppleClock previousClock = DoppleClock.current();
+        DoppleClock.setCurrent(clock);
+        try {
+            Servo servo = servo(new SimHardware());
+            HardwareReadCache reads = new HardwareReadCache();
+            reads.add(servo);
+            DoppleBotRecorder recorder = new DoppleBotRecorder(components(servo), new HashMap<String, String>(), reads);
+            recorder.setIdleResidualMs(DoppleBotRecorder.KEEP_IDLE);
+
+            reads.refresh();
+            reads.getPosition(servo);
+            servo.setPosition(MOVED_POSITION);
+            recorder.update();
+            clock.advanceMillis(LOOP_MS);
+            reads.refresh();
+            recorder.finish();
+
+            ArrayList<ArrayList> rows = recorder.getHistory().getValueRows();
+            check("recorder rows", 2, rows.size());
+            if (rows.size() == 2) {
+                check("recorder change time", 0, ((Number) rows.get(0).get(0)).longValue());
+                check("recorder position", MOVED_POSITION, (Double) rows.get(1).get(1));
+            }
+        } finally {
+            DoppleClock.setCurrent(previousClock);
+        }
+    }
+
+    // the flight recorder's sample for the loop has the write
+    private void checkFlightRecorderWrite() throws IOException {
+        Servo servo = servo(new SimHardware());
+        HardwareReadCache reads = new HardwareReadCache();
+        reads.add(servo);
+        FlightRecorder flightRecorder = new FlightRecorder(components(servo));
+
+        reads.refresh();
+        reads.getPosition(servo);
+        servo.setPosition(MOVED_POSITION);
+        flightRecorder.update();
+
+        StringWriter writer = new StringWriter();
+        flightRecorder.write(writer);
+        String[] lines = writer.toString().split("\n");
+        String last = lines[lines.length - 1];
+        check("flight recorder position", MOVED_POSITION, Double.parseDouble(last.substring(1, last.length() - 1).split(", ")[1]));
+    }
+
+    private static Servo servo(SimHardware hardware){
+        Servo servo = hardware.addServo(SERVO_NAME);
+        servo.setPosition(START_POSITION);
+        return servo;
+    }
+
+    private static HashMap<String, HardwareDevice> components(Servo servo){
+        HashMap<String, HardwareDevice> components = new HashMap<String, HardwareDevice>();
+        components.put(SERVO_NAME, servo);
+        return components;
+    }
+
+    private void check(String name, double expected, double actual){
+        if (Math.abs(expected - actual) > CommandLogDiff.VALUE_TOLERANCE)
+            failures.add(String.format("%s: expected %s, got %s", name, expected, actual));
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        ArrayList<String> failures = new RecordingChecks().run();
+        for (String failure : failures) System.out.println("FAIL   " + failure);
+        System.out.println(failures.isEmpty() ? "all checks passed" : failures.size() + " checks failed");
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,50 @@
+package edu.berean.robotics.sim;
+
+import java.io.File;
+
+import edu.berean.robotics.dopple.DoppleBotRecorder;
+import edu.berean.robotics.dopple.util.DoppleBotHistoryTrimmer;
+
+/**
+ * RecordingTrimmer trims the idle lead-in and tail from a recording made before the recorder
+ * trimmed them, with DoppleBotHistoryTrimmer.  The trimmed copy is written next to the
+ * recording with "-trimmed" in its name unless an output is given; an input track next to the
+ * recording is trimmed along with it.
+ *
+ * From the command line:  RecordingTrimmer <recording> [output] [residual ms]
+ */
+public class RecordingTrimmer {
+
+    private static String TRIMMED_SUFFIX = "-trimmed";
+
+    /**
+     * @return where the trimmed copy of a recording goes when no output is given
+     */
+    public static File getTrimmedFile(File recording){
+        String name = recording.getName();
+        int dot = name.lastIndexOf('.');
+        String trimmedName = dot < 0 ? name + TRIMMED_SUFFIX : name.substring(0, dot) + TRIMMED_SUFFIX + name.substring(dot);
+        return new File(recording.getParentFile(), trimmedName);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length < 1) {
+            System.err.println("usage: RecordingTrimmer <recording> [output] [residual ms]");
+            System.exit(2);
+        }
+
+        File recording = new File(args[0]);
+        File output = args.length > 1 ? new File(args[1]) : getTrimmedFile(recording);
+        long residualMs = args.length > 2 ? Long.parseLong(args[2]) : DoppleBotRecorder.DEFAULT_IDLE_RESIDUAL_MS;
+        if (output.getCanonicalPath().equals(recording.getCanonicalPath())) {
+            System.err.println("the output can't be the recording itself");
+            System.exit(2);
+        }
+
+        DoppleBotHistoryTrimmer trimmer = new DoppleBotHistoryTrimmer(residualMs);
+        long trimmedMs = trimmer.trim(recording, output);
+        System.out.println(String.format("%s: trimmed %d ms, kept %d to %d ms, wrote %s", recording.getName(),
+                trimmedMs, trimmer.getTrimStartMs(), trimmer.getTrimEndMs(), output.getPath()));
+    }
+}
@@ -0,0 +1,183 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * A stand-in motor controller with two ports, like a Modern Robotics controller.  The SDK's own
+ * DcMotorImpl runs on top of it, so direction and run mode handling is the real thing; every
+ * command that reaches the controller goes into the CommandLog.
+ *
+ * Each motor's encoder moves at power * max speed counts per second of DoppleClock time,
+ * toward the target in RUN_TO_POSITION.  The position is brought up to date whenever the motor
+ * is touched, so nothing has to step the simulation.  A port can instead be driven by a
+ * simulation (see TankDriveSim), which then sets the encoder itself.
+ */
+public class SimDcMotorController implements DcMotorController {
+
+    public static final int PORTS = 2;
+    public static final int DEFAULT_MAX_SPEED = 4000;   // encoder counts per second, as the SDK
+    public static final int BUSY_TOLERANCE = 5;         // encoder counts
+
+    private String name;
+    private CommandLog log;
+
+    // indexed by port; ports are numbered from 1
+    private int[] logDevices = new int[PORTS + 1];
+    private DcMotor.RunMode[] modes = new DcMotor.RunMode[PORTS + 1];
+    private DcMotor.ZeroPowerBehavior[] zeroPowerBehaviors = new DcMotor.ZeroPowerBehavior[PORTS + 1];
+    private double[] powers = new double[PORTS + 1];
+    private int[] targets = new int[PORTS + 1];
+    private int[] maxSpeeds = new int[PORTS + 1];
+    private double[] positions = new double[PORTS + 1];
+    private long[] lastUpdateNanos = new long[PORTS + 1];
+    private boolean[] externallyDriven = new boolean[PORTS + 1];
+
+    public SimDcMotorController(String name, CommandLog log){
+        this.name = name;
+        this.log = log;
+        for (int port = 1; port <= PORTS; port++) {
+            logDevices[port] = log.addDevice(name + ":" + port);
+            modes[port] = DcMotor.RunMode.RUN_WITHOUT_ENCODER;
+            zeroPowerBehaviors[port] = DcMotor.ZeroPowerBehavior.FLOAT;
+            maxSpeeds[port] = DEFAULT_MAX_SPEED;
+            lastUpdateNanos[port] = -1;
+        }
+    }
+
+    /**
+     * Log a port's commands under the name of the motor on it.
+     */
+    public void setPortName(int port, String motorName){
+        logDevices[port] = log.addDevice(motorName);
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Leave a motor's encoder to a simulation, which moves it with setEncoderPosition().
+     */
+    public synchronized void setExternallyDriven(int port, boolean driven){
+        advance(port);
+        externallyDriven[port] = driven;
+    }
+
+    /**
+     * Bring a motor's encoder up to the current time.
+     */
+    protected synchronized void advance(int port){
+        long now = DoppleClock.current().nanoTime();
+        long last = lastUpdateNanos[port];
+        lastUpdateNanos[port] = now;
+        if (last < 0 || now <= last || externallyDriven[port]) return;
+
+        if (modes[port] == DcMotor.RunMode.STOP_AND_RESET_ENCODER) {
+            positions[port] = 0;
+            return;
+        }
+
+        double counts = powers[port] * maxSpeeds[port] * (now - last) / 1e9;
+        if (modes[port] == DcMotor.RunMode.RUN_TO_POSITION) {
+            double remaining = targets[port] - positions[port];
+            double step = Math.min(Math.abs(counts), Math.abs(remaining));
+            positions[port] += Math.signum(remaining) * step;
+        } else {
+            positions[port] += counts;
+        }
+    }
+
+    /**
+     * Move a motor's encoder directly, e.g. to put the robot somewhere for a test.
+     */
+    public synchronized void setEncoderPosition(int port, double position){
+        advance(port);
+        positions[port] = position;
+    }
+
+    public synchronized void setMotorMode(int motor, DcMotor.RunMode mode){
+        advance(motor);
+        modes[motor] = mode;
+        if (mode == DcMotor.RunMode.STOP_AND_RESET_ENCODER) positions[motor] = 0;
+        log.record(logDevices[motor], CommandLog.Command.RUN_MODE, mode.ordinal());
+    }
+
+    public synchronized DcMotor.RunMode getMotorMode(int motor){
+        return modes[motor];
+    }
+
+    public synchronized void setMotorPower(int motor, double power){
+        advance(motor);
+        powers[motor] = power;
+        log.record(logDevices[motor], CommandLog.Command.POWER, power);
+    }
+
+    public synchronized double getMotorPower(int motor){
+        return powers[motor];
+    }
+
+    public synchronized void setMotorMaxSpeed(int motor, int encoderTicksPerSecond){
+        advance(motor);
+        maxSpeeds[motor] = encoderTicksPerSecond;
+        log.record(logDevices[motor], CommandLog.Command.MAX_SPEED, encoderTicksPerSecond);
+    }
+
+    public synchronized int getMotorMaxSpeed(int motor){
+        return maxSpeeds[motor];
+    }
+
+    public synchronized boolean isBusy(int motor){
+        advance(motor);
+        return modes[motor] == DcMotor.RunMode.RUN_TO_POSITION && powers[motor] != 0
+                && Math.abs(targets[motor] - positions[motor]) > BUSY_TOLERANCE;
+    }
+
+    public synchronized void setMotorZeroPowerBehavior(int motor, DcMotor.ZeroPowerBehavior zeroPowerBehavior){
+        zeroPowerBehaviors[motor] = zeroPowerBehavior;
+        log.record(logDevices[motor], CommandLog.Command.ZERO_POWER_BEHAVIOR, zeroPowerBehavior.ordinal());
+    }
+
+    public synchronized DcMotor.ZeroPowerBehavior getMotorZeroPowerBehavior(int motor){
+        return zeroPowerBehaviors[motor];
+    }
+
+    public synchronized boolean getMotorPowerFloat(int motor){
+        return zeroPowerBehaviors[motor] == DcMotor.ZeroPowerBehavior.FLOAT && powers[motor] == 0;
+    }
+
+    public synchronized void setMotorTargetPosition(int motor, int position){
+        advance(motor);
+        targets[motor] = position;
+        log.record(logDevices[motor], CommandLog.Command.TARGET_POSITION, position);
+    }
+
+    public synchronized int getMotorTargetPosition(int motor){
+        return targets[motor];
+    }
+
+    public synchronized int getMotorCurrentPosition(int motor){
+        advance(motor);
+        return (int) Math.round(positions[motor]);
+    }
+
+    public String getDeviceName(){
+        return "Simulated DC Motor Controller";
+    }
+
+    public String getConnectionInfo(){
+        return name;
+    }
+
+    public int getVersion(){
+        return 1;
+    }
+
+    public void resetDeviceConfigurationForOpMode(){
+    }
+
+    public void close(){
+    }
+}
@@ -0,0 +1,149 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorImpl;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.I2cAddr;
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.hardware.ServoImpl;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.berean.robotics.dopple.DoppleDeviceSpec;
+import edu.berean.robotics.sensors.I2cRegisters;
+import edu.berean.robotics.sensors.I2cSensorPoller;
+
+/**
+ * SimHardware builds a HardwareMap of stand-in devices, the way the robot configuration on the
+ * phone does for the real ones.  Motors are DcMotorImpls on SimDcMotorControllers (two to a
+ * controller) and servos are ServoImpls on SimServoControllers (six to a controller), all
+ * logging into one CommandLog.  Light sensors and raw i2c devices can be added too.
+ *
+ * Call install() before running an opmode so that I2cSensorPollers open the stand-in i2c
+ * devices, and uninstall() afterwards.  OpModeDriver and OpModeReplay do this.
+ */
+public class SimHardware {
+
+    private static String LOG_TAG = "SimHardware - ";
+
+    private HardwareMap hardwareMap;
+    private CommandLog log = new CommandLog();
+
+    private ArrayList<SimDcMotorController> motorControllers = new ArrayList<SimDcMotorController>();
+    private ArrayList<SimServoController> servoControllers = new ArrayList<SimServoController>();
+    private ArrayList<DcMotor> motors = new ArrayList<DcMotor>();
+    private HashMap<String, SimI2cRegisters> i2cDevices = new HashMap<String, SimI2cRegisters>();
+    private int nextMotorPort = SimDcMotorController.PORTS + 1;
+    private int nextServoPort = SimServoController.PORTS + 1;
+
+    private I2cSensorPoller.Opener i2cOpener = new I2cSensorPoller.Opener() {
+        public I2cRegisters open(HardwareMap hardwareMap, String name, I2cAddr address) {
+            SimI2cRegisters device = i2cDevices.get(name);
+            if (device == null) throw new IllegalArgumentException("no i2c device named " + name);
+            return device;
+        }
+    };
+
+    public SimHardware(){
+        hardwareMap = new HardwareMap(null);    // there is no app context off the robot
+    }
+
+    public DcMotor addMotor(String name){
+        if (nextMotorPort > SimDcMotorController.PORTS) {
+            SimDcMotorController controller = new SimDcMotorController("motor_controller_" + (motorControllers.size() + 1), log);
+            motorControllers.add(controller);
+            hardwareMap.dcMotorController.put(controller.getName(), controller);
+            nextMotorPort = 1;
+        }
+        SimDcMotorController controller = motorControllers.get(motorControllers.size() - 1);
+        controller.setPortName(nextMotorPort, name);
+        DcMotor motor = new DcMotorImpl(controller, nextMotorPort++);
+        hardwareMap.dcMotor.put(name, motor);
+        motors.add(motor);
+        return motor;
+    }
+
+    public Servo addServo(String name){
+        if (nextServoPort > SimServoController.PORTS) {
+            SimServoController controller = new SimServoController("servo_controller_" + (servoControllers.size() + 1), log);
+            servoControllers.add(controller);
+            hardwareMap.servoController.put(controller.getName(), controller);
+            nextServoPort = 1;
+        }
+        SimServoController controller = servoControllers.get(servoControllers.size() - 1);
+        controller.setPortName(nextServoPort, name);
+        Servo servo = new ServoImpl(controller, nextServoPort++);
+        hardwareMap.servo.put(name, servo);
+        return servo;
+    }
+
+    /**
+     * Add a motor or servo for each spec, e.g. the specs a DoppleBot initializes.
+     */
+    public void addDevices(DoppleDeviceSpec... specs){
+        for (DoppleDeviceSpec spec : specs) {
+            if (spec.type == DoppleDeviceSpec.Type.MOTOR) addMotor(spec.name);
+            else addServo(spec.name);
+        }
+    }
+
+    public SimLightSensor addLightSensor(String name){
+        SimLightSensor sensor = new SimLightSensor(name);
+        hardwareMap.lightSensor.put(name, sensor);
+        return sensor;
+    }
+
+    /**
+     * Add a raw i2c device for the I2cSensorPoller.  These are not in the hardware map; the
+     * poller finds them once install() has been called.
+     */
+    public SimI2cRegisters addI2cDevice(String name){
+        SimI2cRegisters device = new SimI2cRegisters(name);
+        i2cDevices.put(name, device);
+        return device;
+    }
+
+    public SimI2cRegisters getI2cDevice(String name){
+        return i2cDevices.get(name);
+    }
+
+    /**
+     * @return the stand-in controller a motor from this hardware map is on
+     */
+    public SimDcMotorController getController(DcMotor motor){
+        return (SimDcMotorController) motor.getController();
+    }
+
+    /**
+     * Set every motor's power to 0, as the SDK does when an opmode stops.
+     */
+    public void stopMotors(){
+        for (DcMotor motor : motors) motor.setPower(0);
+    }
+
+    public HardwareMap getHardwareMap(){
+        return hardwareMap;
+    }
+
+    public CommandLog getCommandLog(){
+        return log;
+    }
+
+    /**
+     * Have I2cSensorPollers open this hardware's i2c devices.
+     */
+    public void install(){
+        I2cSensorPoller.setOpener(i2cOpener);
+        RobotLog.i(LOG_TAG + String.format("installed: %d motor controllers, %d servo controllers, %d i2c devices",
+                motorControllers.size(), servoControllers.size(), i2cDevices.size()));
+    }
+
+    /**
+     * Put I2cSensorPollers back on the real hardware.
+     */
+    public void uninstall(){
+        I2cSensorPoller.setOpener(I2cSensorPoller.SYNCH_OPENER);
+    }
+}
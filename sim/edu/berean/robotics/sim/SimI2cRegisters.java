@@ -0,0 +1,55 @@
+package edu.berean.robotics.sim;
+
+import java.util.Arrays;
+
+import edu.berean.robotics.sensors.I2cRegisters;
+
+/**
+ * A stand-in i2c device for the I2cSensorPoller: 256 registers that read back whatever was last
+ * written, by the opmode or by the simulation (e.g. the color number a color sensor sees).
+ */
+public class SimI2cRegisters implements I2cRegisters {
+
+    private String name;
+    private byte[] registers = new byte[256];
+    private boolean engaged = false;
+
+    public SimI2cRegisters(String name){
+        this.name = name;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Set a register, e.g. the reading a sensor should return.
+     */
+    public synchronized void setRegister(int register, int value){
+        registers[register] = (byte) value;
+    }
+
+    public synchronized int getRegister(int register){
+        return registers[register] & 0xFF;
+    }
+
+    public synchronized boolean isEngaged(){
+        return engaged;
+    }
+
+    public synchronized void engage(){
+        engaged = true;
+    }
+
+    public synchronized void write8(int register, int value){
+        registers[register] = (byte) value;
+    }
+
+    public synchronized byte[] read(int register, int count){
+        return Arrays.copyOfRange(registers, register, register + count);
+    }
+
+    public synchronized void close(){
+        engaged = false;
+    }
+}
@@ -0,0 +1,66 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.LightSensor;
+
+/**
+ * A stand-in light sensor.  It reads whatever it was last set to.
+ */
+public class SimLightSensor implements LightSensor {
+
+    private String name;
+    private volatile double lightDetected = 0;
+    private volatile boolean ledOn = false;
+
+    public SimLightSensor(String name){
+        this.name = name;
+    }
+
+    /**
+     * @param lightDetected the reading, 0 - 1
+     */
+    public void setLightDetected(double lightDetected){
+        this.lightDetected = lightDetected;
+    }
+
+    public boolean isLedOn(){
+        return ledOn;
+    }
+
+    public double getLightDetected(){
+        return lightDetected;
+    }
+
+    public double getRawLightDetected(){
+        return lightDetected * getRawLightDetectedMax();
+    }
+
+    public double getRawLightDetectedMax(){
+        return 1023;
+    }
+
+    public void enableLed(boolean enable){
+        ledOn = enable;
+    }
+
+    public String status(){
+        return name + ": " + lightDetected;
+    }
+
+    public String getDeviceName(){
+        return "Simulated Light Sensor";
+    }
+
+    public String getConnectionInfo(){
+        return name;
+    }
+
+    public int getVersion(){
+        return 1;
+    }
+
+    public void resetDeviceConfigurationForOpMode(){
+    }
+
+    public void close(){
+    }
+}
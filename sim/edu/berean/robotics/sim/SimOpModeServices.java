@@ -0,0 +1,59 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpModeServices;
+import com.qualcomm.robotcore.robocol.TelemetryMessage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stands in for the opmode manager's services to an opmode off the robot.  Telemetry that the
+ * opmode sends is kept (the latest message, and a count) instead of going to the driver
+ * station, and a request to stop (a LinearOpMode finishing runOpMode()) is noted.
+ */
+public class SimOpModeServices implements OpModeServices {
+
+    private int telemetryCount = 0;
+    private Map<String, String> telemetry = new LinkedHashMap<String, String>();
+    private boolean stopRequested = false;
+
+    public synchronized void refreshUserTelemetry(TelemetryMessage telemetryMessage, double sInterval){
+        telemetryCount++;
+        telemetry = new LinkedHashMap<String, String>(telemetryMessage.getDataStrings());
+    }
+
+    public synchronized void requestOpModeStop(OpMode opModeToStopIfActive){
+        stopRequested = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isStopRequested(){
+        return stopRequested;
+    }
+
+    /**
+     * Wait (in real time) for the opmode to ask to stop.
+     *
+     * @return true if it has asked to stop
+     * @throws InterruptedException
+     */
+    public synchronized boolean awaitStopRequest(long timeoutMs) throws InterruptedException {
+        if (!stopRequested) wait(timeoutMs);
+        return stopRequested;
+    }
+
+    /**
+     * @return how many times the opmode has sent telemetry
+     */
+    public synchronized int getTelemetryCount(){
+        return telemetryCount;
+    }
+
+    /**
+     * @return the captions and values of the last telemetry the opmode sent
+     */
+    public synchronized Map<String, String> getTelemetry(){
+        return new LinkedHashMap<String, String>(telemetry);
+    }
+}
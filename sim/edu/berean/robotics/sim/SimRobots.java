@@ -0,0 +1,128 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.firstinspires.ftc.team4998.MiniDoppleBotTeleop;
+import org.firstinspires.ftc.team4998.QDoppleBotTeleop;
+import org.firstinspires.ftc.team6818.AimbotTeleopRecord;
+
+import edu.berean.robotics.control.TankDrive;
+import edu.berean.robotics.dopple.DoppleBot;
+import edu.berean.robotics.robots.team4998.HardwareMiniDoppleBot;
+import edu.berean.robotics.robots.team4998.HardwareQDoppleBot;
+import edu.berean.robotics.robots.team6818.HardwareDoppleBotAimbot;
+
+/**
+ * Stand-in hardware for each of our robots, with the same device names as the robot
+ * configurations on the phones.  Keep these in step with the robot configurations.
+ */
+public class SimRobots {
+
+    /**
+     * @return team 6818's AimBot (HardwareDoppleBotAimbot).  There is no core device
+     * interface, so the LEDs are off.
+     */
+    public static SimHardware aimbot(){
+        SimHardware hardware = new SimHardware();
+        hardware.addMotor("left_front");
+        hardware.addMotor("right_front");
+        hardware.addMotor("left_back");
+        hardware.addMotor("right_back");
+        hardware.addMotor("robot_spinner");
+        hardware.addMotor("launcher");
+        hardware.addServo("right_button_push");
+        hardware.addServo("left_button_push");
+        hardware.addI2cDevice("cc");
+        return hardware;
+    }
+
+    /**
+     * @return team 4998's Q DoppleBot (HardwareQDoppleBot)
+     */
+    public static SimHardware qDoppleBot(){
+        SimHardware hardware = new SimHardware();
+        hardware.addMotor("meme");
+        hardware.addMotor("front_right");
+        hardware.addMotor("front_left");
+        hardware.addMotor("back_right");
+        hardware.addMotor("back_left");
+        hardware.addMotor("spinner");
+        hardware.addServo("qermy");
+        hardware.addServo("pusher1");
+        hardware.addServo("pusher2");
+        hardware.addI2cDevice("cc");
+        return hardware;
+    }
+
+    /**
+     * @return team 4998's Mini DoppleBot (HardwareMiniDoppleBot)
+     */
+    public static SimHardware miniDoppleBot(){
+        SimHardware hardware = new SimHardware();
+        hardware.addMotor("left_front");
+        hardware.addMotor("right_front");
+        hardware.addServo("servo");
+        hardware.addServo("pusher2");
+        hardware.addLightSensor("light");
+        return hardware;
+    }
+
+    /**
+     * @param name aimbot, qdopplebot or minidopplebot
+     */
+    public static SimHardware forName(String name){
+        if (name.equalsIgnoreCase("aimbot")) return aimbot();
+        if (name.equalsIgnoreCase("qdopplebot")) return qDoppleBot();
+        if (name.equalsIgnoreCase("minidopplebot")) return miniDoppleBot();
+        throw new IllegalArgumentException("unknown robot: " + name);
+    }
+
+    /**
+     * @return a new, uninitialized robot of the named kind
+     */
+    public static DoppleBot robotForName(String name){
+        if (name.equalsIgnoreCase("aimbot")) return new HardwareDoppleBotAimbot();
+        if (name.equalsIgnoreCase("qdopplebot")) return new HardwareQDoppleBot();
+        if (name.equalsIgnoreCase("minidopplebot")) return new HardwareMiniDoppleBot();
+        throw new IllegalArgumentException("unknown robot: " + name);
+    }
+
+    /**
+     * @return a new instance of the teleop the named robot records with
+     */
+    public static OpMode recordingTeleopForName(String name){
+        if (name.equalsIgnoreCase("aimbot")) return new AimbotTeleopRecord();
+        if (name.equalsIgnoreCase("qdopplebot")) return new QDoppleBotTeleop();
+        if (name.equalsIgnoreCase("minidopplebot")) return new MiniDoppleBotTeleop();
+        throw new IllegalArgumentException("unknown robot: " + name);
+    }
+
+    /**
+     * @return a simulation of the named robot's drive train on its stand-in hardware.  The
+     * robot doesn't have to be initialized on the hardware; the motors are found by name.
+     */
+    public static TankDriveSim driveForName(String name, SimHardware hardware){
+        TankDrive geometry = (TankDrive) robotForName(name);
+        String[] left;
+        String[] right;
+        if (name.equalsIgnoreCase("aimbot")) {
+            left = new String[] {"left_front", "left_back"};
+            right = new String[] {"right_front", "right_back"};
+        } else if (name.equalsIgnoreCase("qdopplebot")) {
+            left = new String[] {"front_left", "back_left"};
+            right = new String[] {"front_right", "back_right"};
+        } else {
+            left = new String[] {"left_front"};
+            right = new String[] {"right_front"};
+        }
+        return new TankDriveSim(motors(hardware, left), motors(hardware, right), geometry.getDriveCountsPerInch(),
+                geometry.getTrackWidthInches(), geometry.getMaxDriveCountsPerSecond());
+    }
+
+    private static DcMotor[] motors(SimHardware hardware, String[] names){
+        DcMotor[] motors = new DcMotor[names.length];
+        for (int i = 0; i < names.length; i++) motors[i] = hardware.getHardwareMap().dcMotor.get(names[i]);
+        return motors;
+    }
+}
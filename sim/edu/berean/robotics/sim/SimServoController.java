@@ -0,0 +1,86 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.ServoController;
+
+/**
+ * A stand-in servo controller with six ports, like a Modern Robotics controller.  The SDK's own
+ * ServoImpl runs on top of it, so direction and range scaling is the real thing; every position
+ * that reaches the controller goes into the CommandLog.  Servos are taken to be wherever they
+ * were last told to go.
+ */
+public class SimServoController implements ServoController {
+
+    public static final int PORTS = 6;
+
+    private String name;
+    private CommandLog log;
+    private int controllerDevice;
+
+    // indexed by port; ports are numbered from 1
+    private int[] logDevices = new int[PORTS + 1];
+    private double[] positions = new double[PORTS + 1];
+    private PwmStatus pwmStatus = PwmStatus.DISABLED;
+
+    public SimServoController(String name, CommandLog log){
+        this.name = name;
+        this.log = log;
+        controllerDevice = log.addDevice(name);
+        for (int port = 1; port <= PORTS; port++) {
+            logDevices[port] = log.addDevice(name + ":" + port);
+        }
+    }
+
+    /**
+     * Log a port's commands under the name of the servo on it.
+     */
+    public void setPortName(int port, String servoName){
+        logDevices[port] = log.addDevice(servoName);
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public synchronized void pwmEnable(){
+        pwmStatus = PwmStatus.ENABLED;
+        log.record(controllerDevice, CommandLog.Command.PWM_ENABLE, 1);
+    }
+
+    public synchronized void pwmDisable(){
+        pwmStatus = PwmStatus.DISABLED;
+        log.record(controllerDevice, CommandLog.Command.PWM_ENABLE, 0);
+    }
+
+    public synchronized PwmStatus getPwmStatus(){
+        return pwmStatus;
+    }
+
+    public synchronized void setServoPosition(int servo, double position){
+        // like the real controller, commanding a servo turns the pwm on
+        pwmStatus = PwmStatus.ENABLED;
+        positions[servo] = position;
+        log.record(logDevices[servo], CommandLog.Command.SERVO_POSITION, position);
+    }
+
+    public synchronized double getServoPosition(int servo){
+        return positions[servo];
+    }
+
+    public String getDeviceName(){
+        return "Simulated Servo Controller";
+    }
+
+    public String getConnectionInfo(){
+        return name;
+    }
+
+    public int getVersion(){
+        return 1;
+    }
+
+    public void resetDeviceConfigurationForOpMode(){
+    }
+
+    public void close(){
+    }
+}
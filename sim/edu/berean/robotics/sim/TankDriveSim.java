@@ -0,0 +1,284 @@
+package edu.berean.robotics.sim;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.util.Range;
+
+import edu.berean.robotics.control.TankDrive;
+import edu.berean.robotics.navigation.Pose2d;
+
+/**
+ * TankDriveSim is a simple, deterministic physics model of a tank (differential) drive on
+ * stand-in motors.  Attached to a VirtualClock, it runs in fixed one millisecond steps whenever
+ * the clock moves, reading what the motors were told to do from their SimDcMotorControllers and
+ * moving their encoders by how far the wheels turned.
+ *
+ * Each step:
+ *
+ *   effort     - what each motor is driven with, -1 to 1.  RUN_USING_ENCODER and
+ *                RUN_TO_POSITION are taken to be regulated perfectly, up to the battery's limit.
+ *   motor lag  - each side's wheel speed moves toward effort * free speed with a first order lag
+ *   battery    - the free speed drops with the battery voltage, which sags with the current
+ *                the drive motors draw (more when stalled or accelerating) and slowly discharges
+ *   wheel slip - the robot's speed over the ground follows the wheel speed, but can change only
+ *                as fast as traction allows; the encoders count the wheel, not the ground
+ *   pose       - the robot's position and heading are integrated from the ground speeds, with
+ *                a scrub factor for the extra resistance of skid steering in a turn
+ *
+ * The pose is sampled into a PoseTrajectory every 10 ms.  Distances are in inches, speeds in
+ * inches per second and the heading in radians, counter clockwise positive.
+ */
+public class TankDriveSim implements VirtualClock.Listener {
+
+    public static final long STEP_NANOS = 1000000L;
+    public static final long SAMPLE_NANOS = 10000000L;
+
+    public static final double DEFAULT_SPEED_HEADROOM = 1.25;           // free speed / regulated max speed
+    public static final double DEFAULT_MOTOR_TIME_CONSTANT = 0.1;       // seconds
+    public static final double DEFAULT_BATTERY_VOLTS = 13.0;            // fully charged 12V battery
+    public static final double NOMINAL_VOLTS = 12.0;
+    public static final double DEFAULT_BATTERY_RESISTANCE = 0.03;       // ohms, battery and wiring
+    public static final double DEFAULT_DISCHARGE_VOLTS_PER_AMP_SECOND = 0.0002;
+    public static final double DEFAULT_STALL_CURRENT = 11.5;            // amps per motor
+    public static final double DEFAULT_TRACTION_ACCELERATION = 300;     // inches/s^2, about 0.8 g
+    public static final double DEFAULT_SCRUB_FACTOR = 1.15;
+
+    private DcMotor[] leftMotors;
+    private DcMotor[] rightMotors;
+    private double countsPerInch;
+    private double trackWidthInches;
+    private double maxCountsPerSecond;
+
+    private double speedHeadroom = DEFAULT_SPEED_HEADROOM;
+    private double motorTimeConstant = DEFAULT_MOTOR_TIME_CONSTANT;
+    private double openCircuitVolts = DEFAULT_BATTERY_VOLTS;
+    private double batteryResistance = DEFAULT_BATTERY_RESISTANCE;
+    private double dischargeVoltsPerAmpSecond = DEFAULT_DISCHARGE_VOLTS_PER_AMP_SECOND;
+    private double stallCurrent = DEFAULT_STALL_CURRENT;
+    private double tractionAcceleration = DEFAULT_TRACTION_ACCELERATION;
+    private double scrubFactor = DEFAULT_SCRUB_FACTOR;
+
+    // state
+    private long simulatedNanos;
+    private long startNanos;
+    private long nextSampleNanos;
+    private double batteryVolts;
+    private double leftWheelSpeed = 0;      // wheel surface speed
+    private double rightWheelSpeed = 0;
+    private double leftGroundSpeed = 0;     // speed over the ground
+    private double rightGroundSpeed = 0;
+    private double x = 0;
+    private double y = 0;
+    private double heading = 0;
+    private double[] leftEncoders;          // raw controller counts, per motor
+    private double[] rightEncoders;
+    private double minBatteryVolts;
+
+    private PoseTrajectory trajectory = new PoseTrajectory();
+
+    /**
+     * @param leftMotors the stand-in motors on the left side
+     * @param rightMotors the stand-in motors on the right side
+     * @param countsPerInch encoder counts per inch of wheel travel
+     * @param trackWidthInches the distance between the left and right wheels
+     * @param maxCountsPerSecond the encoder speed the drive motors are regulated to at full power
+     */
+    public TankDriveSim(DcMotor[] leftMotors, DcMotor[] rightMotors, double countsPerInch,
+                        double trackWidthInches, double maxCountsPerSecond){
+        this.leftMotors = leftMotors;
+        this.rightMotors = rightMotors;
+        this.countsPerInch = countsPerInch;
+        this.trackWidthInches = trackWidthInches;
+        this.maxCountsPerSecond = maxCountsPerSecond;
+        leftEncoders = new double[leftMotors.length];
+        rightEncoders = new double[rightMotors.length];
+    }
+
+    /**
+     * @return a simulation of an initialized robot's drive train
+     */
+    public static TankDriveSim forDrive(TankDrive drive){
+        return new TankDriveSim(drive.getLeftDriveMotors(), drive.getRightDriveMotors(),
+                drive.getDriveCountsPerInch(), drive.getTrackWidthInches(), drive.getMaxDriveCountsPerSecond());
+    }
+
+    public void setSpeedHeadroom(double speedHeadroom){
+        this.speedHeadroom = speedHeadroom;
+    }
+
+    public void setMotorTimeConstant(double seconds){
+        this.motorTimeConstant = seconds;
+    }
+
+    /**
+     * @param volts the battery's voltage with no load
+     * @param resistance the battery and wiring resistance, in ohms
+     */
+    public void setBattery(double volts, double resistance){
+        this.openCircuitVolts = volts;
+        this.batteryResistance = resistance;
+    }
+
+    public void setTractionAcceleration(double inchesPerSecondSquared){
+        this.tractionAcceleration = inchesPerSecondSquared;
+    }
+
+    public void setScrubFactor(double scrubFactor){
+        this.scrubFactor = scrubFactor;
+    }
+
+    /**
+     * Start simulating on a clock.  The robot starts at rest at (0, 0) facing along +x.
+     */
+    public void attach(VirtualClock clock){
+        simulatedNanos = clock.nanoTime();
+        startNanos = simulatedNanos;
+        nextSampleNanos = simulatedNanos;
+        batteryVolts = openCircuitVolts;
+        minBatteryVolts = openCircuitVolts;
+        for (int i = 0; i < leftMotors.length; i++) leftEncoders[i] = takeOver(leftMotors[i]);
+        for (int i = 0; i < rightMotors.length; i++) rightEncoders[i] = takeOver(rightMotors[i]);
+        clock.addListener(this);
+    }
+
+    public void detach(VirtualClock clock){
+        clock.removeListener(this);
+        for (DcMotor motor : leftMotors) controller(motor).setExternallyDriven(motor.getPortNumber(), false);
+        for (DcMotor motor : rightMotors) controller(motor).setExternallyDriven(motor.getPortNumber(), false);
+    }
+
+    private double takeOver(DcMotor motor){
+        SimDcMotorController controller = controller(motor);
+        int port = motor.getPortNumber();
+        controller.setExternallyDriven(port, true);
+        int direction = motor.getDirection() == DcMotor.Direction.REVERSE ? -1 : 1;
+        return direction * controller.getMotorCurrentPosition(port);
+    }
+
+    private static SimDcMotorController controller(DcMotor motor){
+        return (SimDcMotorController) motor.getController();
+    }
+
+    public synchronized void clockAdvanced(long fromNanos, long toNanos){
+
+        if (simulatedNanos + STEP_NANOS > toNanos) return;
+
+        while (simulatedNanos + STEP_NANOS <= toNanos) {
+            step(STEP_NANOS / 1e9);
+            simulatedNanos += STEP_NANOS;
+            if (simulatedNanos >= nextSampleNanos) {
+                trajectory.add(simulatedNanos - startNanos, x, y, heading);
+                nextSampleNanos += SAMPLE_NANOS;
+            }
+        }
+
+        writeEncoders(leftMotors, leftEncoders);
+        writeEncoders(rightMotors, rightEncoders);
+    }
+
+    private void step(double dt){
+
+        double voltageFactor = batteryVolts / NOMINAL_VOLTS;
+        double freeSpeed = maxCountsPerSecond * speedHeadroom / countsPerInch;
+
+        double leftEffort = sideEffort(leftMotors, leftEncoders, voltageFactor);
+        double rightEffort = sideEffort(rightMotors, rightEncoders, voltageFactor);
+
+        // battery: current rises with the difference between the drive and the back emf
+        double current = leftMotors.length * stallCurrent * Math.abs(leftEffort * voltageFactor - leftWheelSpeed / freeSpeed)
+                + rightMotors.length * stallCurrent * Math.abs(rightEffort * voltageFactor - rightWheelSpeed / freeSpeed);
+        openCircuitVolts -= dischargeVoltsPerAmpSecond * current * dt;
+        batteryVolts = openCircuitVolts - batteryResistance * current;
+        minBatteryVolts = Math.min(minBatteryVolts, batteryVolts);
+
+        // motor lag
+        double lag = dt / (motorTimeConstant + dt);
+        leftWheelSpeed += (leftEffort * voltageFactor * freeSpeed - leftWheelSpeed) * lag;
+        rightWheelSpeed += (rightEffort * voltageFactor * freeSpeed - rightWheelSpeed) * lag;
+
+        // slip: the ground speed can only change as fast as traction allows
+        double maxChange = tractionAcceleration * dt;
+        leftGroundSpeed += Range.clip(leftWheelSpeed - leftGroundSpeed, -maxChange, maxChange);
+        rightGroundSpeed += Range.clip(rightWheelSpeed - rightGroundSpeed, -maxChange, maxChange);
+
+        // pose, integrated at the middle of the step's heading change
+        double speed = (leftGroundSpeed + rightGroundSpeed) / 2;
+        double turnRate = (rightGroundSpeed - leftGroundSpeed) / (trackWidthInches * scrubFactor);
+        double midHeading = heading + turnRate * dt / 2;
+        x += speed * Math.cos(midHeading) * dt;
+        y += speed * Math.sin(midHeading) * dt;
+        heading = Pose2d.normalizeAngle(heading + turnRate * dt);
+
+        // the encoders count the wheels
+        double leftCounts = leftWheelSpeed * dt * countsPerInch;
+        double rightCounts = rightWheelSpeed * dt * countsPerInch;
+        for (int i = 0; i < leftEncoders.length; i++) leftEncoders[i] += leftCounts;
+        for (int i = 0; i < rightEncoders.length; i++) rightEncoders[i] += rightCounts;
+    }
+
+    /**
+     * @return the mean effort of a side's motors, forward positive
+     */
+    private double sideEffort(DcMotor[] motors, double[] encoders, double voltageFactor){
+
+        double total = 0;
+        for (int i = 0; i < motors.length; i++) {
+            SimDcMotorController controller = controller(motors[i]);
+            int port = motors[i].getPortNumber();
+            int direction = motors[i].getDirection() == DcMotor.Direction.REVERSE ? -1 : 1;
+
+            // the controller holds raw values; turn them into the robot's forward direction
+            double power = direction * controller.getMotorPower(port);
+            double maxSpeed = controller.getMotorMaxSpeed(port);
+            double freeCounts = maxCountsPerSecond * speedHeadroom * voltageFactor;
+            double effort;
+
+            switch (controller.getMotorMode(port)) {
+                case RUN_USING_ENCODER:
+                    effort = power * maxSpeed / freeCounts;
+                    break;
+                case RUN_TO_POSITION:
+                    double error = direction * controller.getMotorTargetPosition(port) - encoders[i];
+                    double speed = Range.clip(error * 10, -Math.abs(power) * maxSpeed, Math.abs(power) * maxSpeed);
+                    effort = speed / freeCounts;
+                    break;
+                case STOP_AND_RESET_ENCODER:
+                    encoders[i] = 0;
+                    effort = 0;
+                    break;
+                default:
+                    effort = power;
+            }
+            total += Range.clip(effort, -1.0, 1.0);
+        }
+        return total / motors.length;
+    }
+
+    private static void writeEncoders(DcMotor[] motors, double[] encoders){
+        for (int i = 0; i < motors.length; i++) {
+            int direction = motors[i].getDirection() == DcMotor.Direction.REVERSE ? -1 : 1;
+            controller(motors[i]).setEncoderPosition(motors[i].getPortNumber(), direction * encoders[i]);
+        }
+    }
+
+    /**
+     * @return where the robot is, with the time since the simulation was attached
+     */
+    public synchronized Pose2d getPose(){
+        return new Pose2d(x, y, heading, simulatedNanos - startNanos);
+    }
+
+    public synchronized PoseTrajectory getTrajectory(){
+        return trajectory;
+    }
+
+    /**
+     * @return the lowest battery voltage under load so far
+     */
+    public synchronized double getMinBatteryVolts(){
+        return minBatteryVolts;
+    }
+
+    public synchronized double getBatteryVolts(){
+        return batteryVolts;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.berean.robotics.sim;
+
+import edu.berean.robotics.navigation.Pose2d;
+
+/**
+ * How far a trajectory strayed from a reference, e.g. a playback from the driving session it
+ * was recorded in.  The candidate is compared to the reference at each of the reference's
+ * samples, by time since each started.  Distances are in inches, angles in degrees.
+ */
+public class TrajectoryScore {
+
+    public final double rmsPositionError;
+    public final double maxPositionError;
+    public final double finalPositionError;    // where each ended up, whatever the timing
+    public final double rmsHeadingError;
+    public final double finalHeadingError;
+    public final double referencePathLength;
+    public final double durationErrorMs;       // candidate duration - reference duration
+
+    private TrajectoryScore(double rmsPositionError, double maxPositionError, double finalPositionError,
+                            double rmsHeadingError, double finalHeadingError, double referencePathLength,
+                            double durationErrorMs){
+        this.rmsPositionError = rmsPositionError;
+        this.maxPositionError = maxPositionError;
+        this.finalPositionError = finalPositionError;
+        this.rmsHeadingError = rmsHeadingError;
+        this.finalHeadingError = finalHeadingError;
+        this.referencePathLength = referencePathLength;
+        this.durationErrorMs = durationErrorMs;
+    }
+
+    public static TrajectoryScore compare(PoseTrajectory reference, PoseTrajectory candidate){
+
+        if (reference.size() == 0 || candidate.size() == 0)
+            throw new IllegalArgumentException("can't score an empty trajectory");
+
+        double positionSquares = 0;
+        double headingSquares = 0;
+        double maxPosition = 0;
+        double pathLength = 0;
+
+        for (int i = 0; i < reference.size(); i++) {
+            Pose2d pose = candidate.poseAt(reference.getTimeNanos(i));
+            double distance = Math.hypot(pose.x - reference.getX(i), pose.y - reference.getY(i));
+            double turn = Math.toDegrees(Pose2d.normalizeAngle(pose.heading - reference.getHeading(i)));
+            positionSquares += distance * distance;
+            headingSquares += turn * turn;
+            maxPosition = Math.max(maxPosition, distance);
+            if (i > 0) pathLength += Math.hypot(reference.getX(i) - reference.getX(i - 1), reference.getY(i) - reference.getY(i - 1));
+        }
+
+        int last = reference.size() - 1;
+        int candidateLast = candidate.size() - 1;
+        double finalPosition = Math.hypot(candidate.getX(candidateLast) - reference.getX(last),
+                candidate.getY(candidateLast) - reference.getY(last));
+        double finalHeading = Math.toDegrees(Pose2d.normalizeAngle(candidate.getHeading(candidateLast) - reference.getHeading(last)));
+
+        return new TrajectoryScore(Math.sqrt(positionSquares / reference.size()), maxPosition, finalPosition,
+                Math.sqrt(headingSquares / reference.size()), finalHeading, pathLength,
+                (candidate.getDurationNanos() - reference.getDurationNanos()) / 1e6);
+    }
+
+    @Override
+    public String toString(){
+        return String.format("position rms %.2f in, max %.2f in, final %.2f in; heading rms %.1f deg, final %.1f deg; " +
+                        "path %.1f in; duration %+.0f ms",
+                rmsPositionError, maxPositionError, finalPositionError, rmsHeadingError, finalHeadingError,
+                referencePathLength, durationErrorMs);
+    }
+}
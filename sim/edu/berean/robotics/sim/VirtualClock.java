@@ -0,0 +1,101 @@
+package edu.berean.robotics.sim;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.berean.robotics.dopple.DoppleClock;
+
+/**
+ * A VirtualClock only moves when it is told to.  Installed as the DoppleClock, it lets a
+ * recorded session be run through an opmode with exactly the recorded timing, as fast as
+ * the computer can go.
+ *
+ * Sleeping on a virtual clock moves it forward by the length of the sleep, so a LinearOpMode
+ * that waits through DoppleClock (waitForTick(), playback, MotorMover) runs its waits
+ * instantly.  The clock may be read and moved from more than one thread, but it is only
+ * deterministic when one thread moves it.
+ *
+ * Simulations that need to run as time passes (see TankDriveSim) listen to the clock and are
+ * told every time it moves.
+ */
+public class VirtualClock extends DoppleClock {
+
+    /**
+     * Told whenever the clock moves forward.  Called on the thread that moved the clock.
+     */
+    public interface Listener {
+        void clockAdvanced(long fromNanos, long toNanos);
+    }
+
+    private long startMillis;
+    private volatile long elapsedNanos = 0;
+    private CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Creates a clock that starts at the current wall clock time.
+     */
+    public VirtualClock(){
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param startMillis the wall clock time the clock starts at; this only affects
+     *                    currentTimeMillis(), e.g. the date in a recording's file name
+     */
+    public VirtualClock(long startMillis){
+        this.startMillis = startMillis;
+    }
+
+    public long nanoTime(){
+        return elapsedNanos;
+    }
+
+    public long currentTimeMillis(){
+        return startMillis + elapsedNanos / 1000000L;
+    }
+
+    /**
+     * Move the clock forward.
+     */
+    public void advanceMillis(long millis){
+        advanceNanos(millis * 1000000L);
+    }
+
+    public synchronized void advanceNanos(long nanos){
+        if (nanos < 0) throw new IllegalArgumentException("a virtual clock can't go backwards");
+        moveTo(elapsedNanos + nanos);
+    }
+
+    public void sleepNanos(long nanos) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (nanos > 0) advanceNanos(nanos);
+    }
+
+    /**
+     * Move the clock to a time since it started.  Times before the current time are ignored,
+     * so the clock never goes backwards.
+     */
+    public synchronized void setElapsedMillis(long millis){
+        long nanos = millis * 1000000L;
+        if (nanos > elapsedNanos) moveTo(nanos);
+    }
+
+    private void moveTo(long nanos){
+        long from = elapsedNanos;
+        elapsedNanos = nanos;
+        for (Listener listener : listeners) {
+            listener.clockAdvanced(from, nanos);
+        }
+    }
+
+    public void addListener(Listener listener){
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener){
+        listeners.remove(listener);
+    }
+
+    public long getElapsedMillis(){
+        return elapsedNanos / 1000000L;
+    }
+}